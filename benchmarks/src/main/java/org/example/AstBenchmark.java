@@ -0,0 +1,111 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * AST footprint, traversal and output. Run with -prof gc: gc.alloc.rate.norm of the build benchmarks is
+ * the number of bytes allocated to build one tree, and the footprint counters report the bytes the arena
+ * keeps per statement. The dump benchmarks write the same text to each kind of destination.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AstBenchmark {
+    private AbstractSyntaxTree.NodeProgram program; // parsed once for the traversal benchmarks
+    private final StringBuilder sb = new StringBuilder(); // reused by the in memory dumps
+
+    /**
+     * Retained size of the arena, reported next to the scores
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public double arenaBytesPerStatement;
+    }
+
+    @Setup(Level.Trial)
+    public void parse(GeneratedProgram source) {
+        program = source.parse();
+    }
+
+    @Benchmark
+    public ArenaAst buildArena(Footprint footprint, GeneratedProgram source) {
+        ArenaAst arena = ArenaAst.from(program);
+        arena.trim();
+        footprint.arenaBytesPerStatement = (double) arena.footprint() / source.statements;
+        return arena;
+    }
+
+    @Benchmark
+    public int walk() {
+        int[] count = new int[1];
+        new AstWalker().walk(program, new AstVisitor<Void>() {
+            @Override
+            public Void visitDefault(AbstractSyntaxTree.NodeBase node) {
+                count[0]++;
+                return null;
+            }
+        }, null);
+        return count[0];
+    }
+
+    @Benchmark
+    public void dump() {
+        AstDumper.dump(program, Writer.nullWriter());
+    }
+
+    @Benchmark
+    public void dumpPrintStream() {
+        PrintStream out = new PrintStream(OutputStream.nullOutputStream(), true); // flushed per write, like System.out
+        AstDumper.dump(program, out);
+    }
+
+    @Benchmark
+    public void dumpBufferedWriter() throws IOException {
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(OutputStream.nullOutputStream()));
+        AstDumper.dump(program, out);
+        out.flush();
+    }
+
+    @Benchmark
+    public int dumpStringBuilder() {
+        sb.setLength(0);
+        AstDumper.dump(program, sb);
+        return sb.length();
+    }
+
+    @Benchmark
+    public int json() {
+        sb.setLength(0);
+        AstEmitter.json(program, sb);
+        return sb.length();
+    }
+
+    @Benchmark
+    public int sexpr() {
+        sb.setLength(0);
+        AstEmitter.sexpr(program, sb);
+        return sb.length();
+    }
+}
@@ -0,0 +1,54 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compiler batches: one operation compiles 20,000 small programs on the given number of threads
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private final List<String> programs = new ArrayList<>();
+    private Compiler compiler;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        for (int i = 0; i < 20_000; i++) {
+            ProgramGenerator generator = new ProgramGenerator(i);
+            generator.setDeclarations(10 + i % 20);
+            generator.setStatements(20 + i % 120); // a few hundred bytes to a few KB each
+            programs.add(generator.generate());
+        }
+        compiler = new Compiler(threads, false);
+    }
+
+    @Benchmark
+    public int compileSources() {
+        int ok = 0;
+        for (Compiler.Compilation compilation : compiler.compileSources(programs)) {
+            ok += compilation.isSuccess() ? 1 : 0;
+        }
+        return ok;
+    }
+}
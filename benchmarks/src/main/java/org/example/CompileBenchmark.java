@@ -0,0 +1,44 @@
+package org.example;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end: compile the generated program from its text, with and without metrics, then compile and run it
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompileBenchmark {
+    private final Compiler compiler = new Compiler(1, false);
+    private final Compiler measured = new Compiler(1, false, new CompilerMetrics()); // times its phases while parsing
+    private final OutputBuffer out = new OutputBuffer();
+
+    @Benchmark
+    public Compiler.Compilation compile(GeneratedProgram program) {
+        return compiler.compile("generated", CharSource.of(program.text));
+    }
+
+    @Benchmark
+    public Compiler.Compilation compileMeasured(GeneratedProgram program) {
+        return measured.compile("generated", CharSource.of(program.text));
+    }
+
+    @Benchmark
+    public int compileAndRun(GeneratedProgram program) {
+        Compiler.Compilation compilation = compiler.compile("generated", CharSource.of(program.text));
+        out.reset();
+        return compilation.getExecutable().run(compilation.getExecutable().newFrame(), out);
+    }
+}
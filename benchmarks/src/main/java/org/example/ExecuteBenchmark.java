@@ -0,0 +1,62 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Warm execution on each backend, one operation runs the generated program once from a zeroed frame
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecuteBenchmark {
+    private final OutputBuffer out = new OutputBuffer();
+    private ExecutableProgram interpreter;
+    private ExecutableProgram jit;
+    private ExecutableProgram registerVm;
+    private int[] frame;
+
+    @Setup(Level.Trial)
+    public void prepare(GeneratedProgram source) {
+        AbstractSyntaxTree.NodeProgram program = source.parse();
+        interpreter = new Interpreter(program);
+        jit = JitCompiler.compile(program);
+        registerVm = new RegisterVM(RegisterCode.lower(program));
+        frame = interpreter.newFrame();
+    }
+
+    @Benchmark
+    public int interpreter() {
+        return run(interpreter);
+    }
+
+    @Benchmark
+    public int jit() {
+        return run(jit);
+    }
+
+    @Benchmark
+    public int registerVm() {
+        return run(registerVm);
+    }
+
+    private int run(ExecutableProgram executable) {
+        Arrays.fill(frame, 0);
+        out.reset();
+        return executable.run(frame, out);
+    }
+}
@@ -0,0 +1,62 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark input: a program from ProgramGenerator with a fixed seed, so every run and every
+ * benchmark sees the same text for the same parameters.
+ */
+@State(Scope.Benchmark)
+public class GeneratedProgram {
+    /**
+     * flat: sets, calcs and prints only; nested: ifs nested 4 deep; longsums: calcs with 32 operands
+     */
+    @Param({"flat", "nested", "longsums"})
+    public String shape;
+
+    @Param({"100000"})
+    public int statements;
+
+    public String text;
+    public char[] chars;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        ProgramGenerator generator = new ProgramGenerator(42);
+        generator.setDeclarations(500);
+        generator.setStatements(statements);
+        switch (shape) {
+            case "flat" -> {
+                generator.setMix(3, 3, 1, 0);
+                generator.setIfs(0, 1);
+            }
+            case "nested" -> {
+                generator.setMix(2, 2, 1, 2);
+                generator.setIfs(4, 4);
+            }
+            case "longsums" -> {
+                generator.setMix(1, 6, 1, 0);
+                generator.setSumLength(32);
+            }
+            default -> throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+        text = generator.generate();
+        chars = text.toCharArray();
+    }
+
+    /**
+     * Parses the program, for benchmarks of the later phases
+     * @return the root of the AST
+     */
+    public AbstractSyntaxTree.NodeProgram parse() {
+        MyParser parser = new MyParser();
+        if (!parser.parse(text)) {
+            throw new IllegalStateException("Generated program does not parse: " + parser.getDiagnostics());
+        }
+        return parser.getAst().getRoot();
+    }
+}
@@ -0,0 +1,65 @@
+package org.example;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One character edits in the values of set statements spread over the generated program, reparsed
+ * incrementally, against a full reparse with recovery
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IncrementalBenchmark {
+    private static final int EDITS = 1000; // edited places, each is typed into and then deleted
+
+    private final int[] offsets = new int[EDITS]; // positions of the values of set statements
+    private IncrementalParser parser;
+
+    @Setup(Level.Trial)
+    public void edits(GeneratedProgram program) {
+        String text = program.text;
+        for (int i = 0; i < offsets.length; i++) {
+            int at = (int) ((long) text.length() * i / offsets.length);
+            int from = text.indexOf("set ", at);
+            if (from < 0) {
+                from = text.lastIndexOf("set ", at); // no set statement after the last places
+            }
+            offsets[i] = text.indexOf(" = ", from) + 3;
+        }
+        parser = new IncrementalParser(text);
+    }
+
+    @Benchmark
+    public boolean fullReparse(GeneratedProgram program) {
+        MyParser full = new MyParser();
+        full.setRecovery(true);
+        return full.parse(program.text);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2 * EDITS)
+    public long edit() {
+        long reparsed = 0;
+        for (int offset : offsets) {
+            parser.edit(offset, 0, "1"); // type a digit
+            reparsed += parser.getReparsed();
+            parser.edit(offset, 1, ""); // and delete it again
+        }
+        return reparsed;
+    }
+}
@@ -0,0 +1,94 @@
+package org.example;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of classifying one word, the perfect hash lookup against the list and equals chain MyScanner
+ * used before it
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeywordBenchmark {
+    private static final String[] WORDS = {"declare", "x", "print", "set", "total", "if", "then", "endif", "calc",
+            "int", "counter", "setx", "prints", "a", "endiff", "calculate"};
+    private static final List<String> RESERVED = List.of("declare", "int", "print", "set", "if", "then", "endif", "calc");
+
+    private final char[] text = String.join(" ", WORDS).toCharArray();
+    private final CharSource source = CharSource.of(text);
+    private final int[] starts = new int[WORDS.length]; // position of each word in the text
+    private final int[] hashes = new int[WORDS.length]; // hash of each word
+    private final StringBuilder buffer = new StringBuilder(); // lexeme copied out for the list lookup
+
+    public KeywordBenchmark() {
+        for (int i = 1; i < WORDS.length; i++) {
+            starts[i] = starts[i - 1] + WORDS[i - 1].length() + 1;
+        }
+        for (int i = 0; i < WORDS.length; i++) {
+            hashes[i] = SymbolPool.hash(WORDS[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(16)
+    public long perfectHash() {
+        long found = 0;
+        for (int i = 0; i < WORDS.length; i++) {
+            MyScanner.TOKEN token = MyScanner.keyword(source, starts[i], starts[i] + WORDS[i].length(), hashes[i]);
+            found += token == null ? 1 : token.ordinal();
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(16)
+    public long listAndEqualsChain() {
+        long found = 0;
+        for (int i = 0; i < WORDS.length; i++) {
+            buffer.setLength(0);
+            buffer.append(text, starts[i], WORDS[i].length());
+            found += legacyKeyword(buffer.toString());
+        }
+        return found;
+    }
+
+    /**
+     * The keyword check MyScanner used before the perfect hash table, kept as the baseline
+     */
+    private static int legacyKeyword(String lexeme) {
+        if (RESERVED.contains(lexeme)) {
+            if (lexeme.equals("declare")) {
+                return MyScanner.TOKEN.DECLARE.ordinal();
+            } else if (lexeme.equals("int")) {
+                return MyScanner.TOKEN.INTDATATYPE.ordinal();
+            } else if (lexeme.equals("print")) {
+                return MyScanner.TOKEN.PRINT.ordinal();
+            } else if (lexeme.equals("set")) {
+                return MyScanner.TOKEN.SET.ordinal();
+            } else if (lexeme.equals("if")) {
+                return MyScanner.TOKEN.IF.ordinal();
+            } else if (lexeme.equals("then")) {
+                return MyScanner.TOKEN.THEN.ordinal();
+            } else if (lexeme.equals("endif")) {
+                return MyScanner.TOKEN.ENDIF.ordinal();
+            } else if (lexeme.equals("calc")) {
+                return MyScanner.TOKEN.CALC.ordinal();
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,77 @@
+package org.example;
+
+import java.io.PushbackReader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lexing throughput over each kind of CharSource, one operation scans the whole generated program
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LexBenchmark {
+    private final TokenStream tokens = new TokenStream(); // reused, like a compiler server would
+    private ByteBuffer bytes; // the program as ASCII bytes outside the heap, like a mapped file
+
+    @Setup(Level.Trial)
+    public void encode(GeneratedProgram program) {
+        bytes = ByteBuffer.allocateDirect(program.text.length());
+        bytes.put(program.text.getBytes(StandardCharsets.US_ASCII)).flip();
+    }
+
+    @Benchmark
+    public int scanPushbackReader(GeneratedProgram program) {
+        return drain(new MyScanner(new PushbackReader(new StringReader(program.text))));
+    }
+
+    @Benchmark
+    public int scanString(GeneratedProgram program) {
+        return drain(new MyScanner(CharSource.of(program.text)));
+    }
+
+    @Benchmark
+    public int scanCharArray(GeneratedProgram program) {
+        return drain(new MyScanner(CharSource.of(program.chars)));
+    }
+
+    @Benchmark
+    public int scanByteBuffer() {
+        return drain(new MyScanner(CharSource.of(bytes)));
+    }
+
+    @Benchmark
+    public int tokenStream(GeneratedProgram program) {
+        tokens.lex(new MyScanner(CharSource.of(program.chars)));
+        return tokens.size();
+    }
+
+    /**
+     * Counts the tokens of a source
+     * @param scanner scanner over the source
+     * @return the number of tokens
+     */
+    static int drain(MyScanner scanner) {
+        int count = 0;
+        while (scanner.scan() != MyScanner.TOKEN.SCANEOF) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,88 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building and optimizing the SSA form of the generated program, and running the register code lowered
+ * from the AST, from the SSA form, from the optimized SSA form and from the SSA form optimized with
+ * its variables kept. Driver --optimize --time prints the instruction counts and what each pass removed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OptimizeBenchmark {
+    private final OutputBuffer out = new OutputBuffer();
+    private AbstractSyntaxTree.NodeProgram program;
+    private RegisterVM ast;
+    private RegisterVM ssa;
+    private RegisterVM optimized;
+    private RegisterVM kept;
+    private int[] frame;
+
+    @Setup(Level.Trial)
+    public void lower(GeneratedProgram source) {
+        program = source.parse();
+        ast = new RegisterVM(RegisterCode.lower(program));
+        ssa = new RegisterVM(SsaProgram.build(program).lower());
+        SsaProgram all = SsaProgram.build(program);
+        new Optimizer().optimize(all);
+        optimized = new RegisterVM(all.lower());
+        SsaProgram keeping = SsaProgram.build(program);
+        Optimizer optimizer = new Optimizer();
+        optimizer.setKeepVariables(true);
+        optimizer.optimize(keeping);
+        kept = new RegisterVM(keeping.lower());
+        frame = ast.newFrame();
+    }
+
+    @Benchmark
+    public SsaProgram build() {
+        return SsaProgram.build(program);
+    }
+
+    @Benchmark
+    public int buildAndOptimize() {
+        return new Optimizer().optimize(SsaProgram.build(program));
+    }
+
+    @Benchmark
+    public int runAst() {
+        return run(ast);
+    }
+
+    @Benchmark
+    public int runSsa() {
+        return run(ssa);
+    }
+
+    @Benchmark
+    public int runOptimized() {
+        return run(optimized);
+    }
+
+    @Benchmark
+    public int runKept() {
+        return run(kept);
+    }
+
+    private int run(RegisterVM vm) {
+        Arrays.fill(frame, 0);
+        out.reset();
+        return vm.run(frame, out);
+    }
+}
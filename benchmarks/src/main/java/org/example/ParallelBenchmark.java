@@ -0,0 +1,57 @@
+package org.example;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lexing a program into a TokenStream and parsing the lexed program on the given number of threads,
+ * 1 being the sequential lexer and parser
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelBenchmark {
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private ParallelLexer lexer;
+    private ParallelParser parser;
+    private TokenStream tokens; // the program lexed once, for the parse benchmark
+
+    @Setup(Level.Trial)
+    public void prepare(GeneratedProgram program) {
+        lexer = new ParallelLexer(threads);
+        parser = new ParallelParser(threads);
+        tokens = TokenStream.lex(CharSource.of(program.chars));
+    }
+
+    @Benchmark
+    public int lex(GeneratedProgram program) {
+        if (threads == 1) {
+            return TokenStream.lex(CharSource.of(program.chars)).size();
+        }
+        return lexer.lex(CharSource.of(program.chars)).size();
+    }
+
+    @Benchmark
+    public boolean parse() {
+        if (threads == 1) {
+            return new MyParser().parse(tokens);
+        }
+        return parser.parse(tokens);
+    }
+}
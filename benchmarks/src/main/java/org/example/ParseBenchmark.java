@@ -0,0 +1,75 @@
+package org.example;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parse throughput, one operation parses the whole generated program
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+    private TokenStream tokens; // the program lexed once, for parsing without scanning
+
+    @Setup(Level.Trial)
+    public void lex(GeneratedProgram program) {
+        tokens = TokenStream.lex(CharSource.of(program.text));
+    }
+
+    @Benchmark
+    public AbstractSyntaxTree parse(GeneratedProgram program) {
+        MyParser parser = new MyParser();
+        parser.parse(program.text);
+        return parser.getAst();
+    }
+
+    @Benchmark
+    public AbstractSyntaxTree parseCounting(GeneratedProgram program) {
+        MyParser parser = new MyParser();
+        parser.setListener(new ParseCounter());
+        parser.parse(program.text);
+        return parser.getAst();
+    }
+
+    @Benchmark
+    public AbstractSyntaxTree parseTracing(GeneratedProgram program) {
+        MyParser parser = new MyParser();
+        parser.setListener(new ParseTracer()); // into a StringBuilder
+        parser.parse(program.text);
+        return parser.getAst();
+    }
+
+    @Benchmark
+    public AbstractSyntaxTree parseTokenStream() {
+        MyParser parser = new MyParser();
+        parser.parse(tokens);
+        return parser.getAst();
+    }
+
+    @Benchmark
+    public ParseException validate(GeneratedProgram program) {
+        return new MyParser().validate(CharSource.of(program.text));
+    }
+
+    @Benchmark
+    public AbstractSyntaxTree parseLazyBodies(GeneratedProgram program) {
+        MyParser parser = new MyParser();
+        parser.setLazyBodies(true);
+        parser.parse(program.text);
+        return parser.getAst();
+    }
+}
@@ -0,0 +1,75 @@
+package org.example;
+
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing with the scanner on the same thread and on a thread of its own, from memory and from a
+ * reader that waits 1 ms for every block of 64K characters, like a pipe fed by a slow producer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+    private final MyParser sequential = new MyParser();
+    private final MyParser pipelined = new MyParser();
+
+    public PipelineBenchmark() {
+        pipelined.setPipelined(true);
+    }
+
+    @Benchmark
+    public boolean sequentialString(GeneratedProgram program) {
+        return sequential.parse(program.text);
+    }
+
+    @Benchmark
+    public boolean pipelinedString(GeneratedProgram program) {
+        return pipelined.parse(program.text);
+    }
+
+    @Benchmark
+    public boolean sequentialSlowReader(GeneratedProgram program) {
+        return sequential.parse(CharSource.of(slowReader(program.text)));
+    }
+
+    @Benchmark
+    public boolean pipelinedSlowReader(GeneratedProgram program) {
+        return pipelined.parse(CharSource.of(slowReader(program.text)));
+    }
+
+    private static Reader slowReader(String text) {
+        return new Reader() {
+            private final CharBuffer in = CharBuffer.wrap(text);
+
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                int n = Math.min(Math.min(length, 8192), in.remaining());
+                if (n == 0) {
+                    return -1;
+                }
+                LockSupport.parkNanos(125_000); // 1 ms per 64K characters, 8K at a time
+                in.get(buffer, offset, n);
+                return n;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,47 @@
+package org.example;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resolution of programs of the same length with more and more variables
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResolveBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int variables;
+
+    private final Resolver resolver = new Resolver();
+    private AbstractSyntaxTree.NodeProgram program;
+
+    @Setup(Level.Trial)
+    public void parse() {
+        ProgramGenerator generator = new ProgramGenerator(42);
+        generator.setDeclarations(variables);
+        generator.setStatements(200_000);
+        MyParser parser = new MyParser();
+        parser.parse(generator.generate());
+        program = parser.getAst().getRoot();
+    }
+
+    @Benchmark
+    public int resolve() {
+        return resolver.resolve(program);
+    }
+}
@@ -0,0 +1,66 @@
+package org.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Short lived programs: one operation prepares a small program for a backend and runs it once
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StartupBenchmark {
+    private final OutputBuffer out = new OutputBuffer();
+    private AbstractSyntaxTree.NodeProgram program;
+    private byte[] code; // the register code as it would be loaded from a file
+
+    @Setup(Level.Trial)
+    public void prepare() throws IOException {
+        ProgramGenerator generator = new ProgramGenerator(42);
+        generator.setDeclarations(20);
+        generator.setStatements(100);
+        MyParser parser = new MyParser();
+        parser.parse(generator.generate());
+        program = parser.getAst().getRoot();
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        RegisterCode.lower(program).write(new DataOutputStream(serialized));
+        code = serialized.toByteArray();
+    }
+
+    @Benchmark
+    public int interpreter() {
+        out.reset();
+        return new Interpreter(program).run(out).length;
+    }
+
+    @Benchmark
+    public int registerVm() throws IOException {
+        out.reset();
+        RegisterCode loaded = RegisterCode.read(new DataInputStream(new ByteArrayInputStream(code)));
+        return new RegisterVM(loaded).run(out).length;
+    }
+
+    @Benchmark
+    public int jit() {
+        out.reset();
+        return JitCompiler.compile(program).run(out).length;
+    }
+}
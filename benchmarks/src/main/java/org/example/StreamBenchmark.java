@@ -0,0 +1,64 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PipedReader;
+import java.io.PipedWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The streaming runner on the generated program from memory and piped in by another thread, against
+ * parsing the whole program and then interpreting it
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamBenchmark {
+    private final StreamingRunner runner = new StreamingRunner(new OutputBuffer(Writer.nullWriter()));
+
+    @Benchmark
+    public long streamString(GeneratedProgram program) {
+        runner.run(CharSource.of(program.text));
+        return runner.getStatements();
+    }
+
+    @Benchmark
+    public long streamPipe(GeneratedProgram program) throws IOException, InterruptedException {
+        try (PipedReader reader = new PipedReader(1 << 16)) {
+            PipedWriter writer = new PipedWriter(reader);
+            Thread producer = new Thread(() -> {
+                try (Writer out = new BufferedWriter(writer, 1 << 16)) {
+                    out.write(program.text);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, "generator");
+            producer.start();
+            runner.run(CharSource.of(reader));
+            producer.join();
+            return runner.getStatements();
+        }
+    }
+
+    @Benchmark
+    public int parseThenInterpret(GeneratedProgram program) {
+        MyParser parser = new MyParser();
+        parser.parse(program.text);
+        Interpreter interpreter = new Interpreter(parser.getAst().getRoot());
+        return interpreter.run(interpreter.newFrame(), new OutputBuffer(Writer.nullWriter()));
+    }
+}
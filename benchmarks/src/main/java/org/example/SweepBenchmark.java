@@ -0,0 +1,87 @@
+package org.example;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One program run over 100,000 initial assignments: one instance at a time on the interpreter and on
+ * the register VM, then as a batch with the scalar and with the SIMD kernels
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class SweepBenchmark {
+    private final OutputBuffer out = new OutputBuffer();
+    private final int[][] initial = new int[100_000][];
+    private ExecutableProgram interpreter;
+    private ExecutableProgram registerVm;
+    private BatchExecutor scalar;
+    private BatchExecutor vector;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        ProgramGenerator generator = new ProgramGenerator(7);
+        generator.setDeclarations(16);
+        generator.setStatements(200);
+        MyParser parser = new MyParser();
+        parser.parse(generator.generate());
+        AbstractSyntaxTree.NodeProgram program = parser.getAst().getRoot();
+        Random random = new Random(1);
+        for (int i = 0; i < initial.length; i++) {
+            initial[i] = random.ints(16, 0, 4).toArray(); // small values, so ifs split the instances
+        }
+        interpreter = new Interpreter(program);
+        registerVm = new RegisterVM(RegisterCode.lower(program));
+        scalar = new BatchExecutor(program);
+        scalar.setVectorized(false);
+        vector = new BatchExecutor(program);
+        if (!BatchExecutor.isVectorAvailable()) {
+            throw new IllegalStateException("jdk.incubator.vector is not available");
+        }
+    }
+
+    @Benchmark
+    public long interpreter() {
+        return oneByOne(interpreter);
+    }
+
+    @Benchmark
+    public long registerVm() {
+        return oneByOne(registerVm);
+    }
+
+    @Benchmark
+    public int batchScalar() {
+        return scalar.run(initial).getExecuted(0);
+    }
+
+    @Benchmark
+    public int batchVector() {
+        return vector.run(initial).getExecuted(0);
+    }
+
+    private long oneByOne(ExecutableProgram executable) {
+        int[] frame = executable.newFrame();
+        long executed = 0;
+        for (int[] row : initial) {
+            System.arraycopy(row, 0, frame, 0, row.length);
+            out.reset();
+            executed += executable.run(frame, out);
+        }
+        return executed;
+    }
+}
@@ -1,9 +1,17 @@
 package org.example;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 public class AbstractSyntaxTree {
     NodeProgram root; // root node of the AST
+    private int nodeCount; // nodes created in this tree, for instrumentation
+    private SymbolPool symbols; // pool the symbol ids of the NodeIds refer to, null if they have none
 
     public NodeProgram getRoot() {
         return root;
@@ -13,23 +21,82 @@ public class AbstractSyntaxTree {
         this.root = root;
     }
 
+    /**
+     * Returns the number of nodes created in this tree, lazily parsed if bodies are not counted
+     * @return the count
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    SymbolPool getSymbolPool() {
+        return symbols;
+    }
+
+    void setSymbolPool(SymbolPool symbols) {
+        this.symbols = symbols;
+    }
+
     /**
      * abstract class NodeBase
      */
     abstract class NodeBase {
-        public abstract void display(); // method to display node information
+        NodeBase() {
+            nodeCount++;
+        }
+
+        /**
+         * Returns the tree the node was created in
+         * @return the tree
+         */
+        AbstractSyntaxTree getTree() {
+            return AbstractSyntaxTree.this;
+        }
+
+        /**
+         * Calls the visitor method for the type of this node
+         * @param visitor the visitor
+         * @return the result of the visitor method
+         */
+        public abstract <R> R accept(AstVisitor<R> visitor);
+
+        /**
+         * Method to display node information, writes the dump of the subtree to System.out in one go
+         */
+        public void display() {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+            AstDumper.dump(this, out);
+            try {
+                out.flush(); // System.out stays open
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
 
     /**
      * abstract class NodeExpr
      */
     abstract class NodeExpr extends NodeBase {
+        /**
+         * Evaluates the expression
+         * @param frame variable values indexed by slot
+         * @return the value of the expression
+         */
+        public abstract int evaluate(int[] frame);
     }
 
     /**
      * abstract class NodeStmt
      */
     abstract class NodeStmt extends NodeBase {
+        /**
+         * Executes the statement
+         * @param frame variable values indexed by slot
+         * @param out buffer for printed values
+         * @return the number of statements executed
+         */
+        public abstract int execute(int[] frame, OutputBuffer out);
     }
 
     /**
@@ -37,14 +104,31 @@ public class AbstractSyntaxTree {
      */
     class NodeId extends NodeExpr {
         String name;
+        int symbol = -1; // id of the name in the SymbolPool of the tree, -1 if it has none
+        int slot = -1; // index of the variable in the frame, set when the program is resolved
 
         public NodeId(String name) {
             this.name = name;
         }
 
+        /**
+         * Constructor for a name the scanner interned
+         * @param name the canonical name, from the SymbolPool of the tree
+         * @param symbol the id of the name in that pool
+         */
+        NodeId(String name, int symbol) {
+            this.name = name;
+            this.symbol = symbol;
+        }
+
         @Override
-        public void display() {
-            System.out.println("AST id " + name);
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitId(this);
+        }
+
+        @Override
+        public int evaluate(int[] frame) {
+            return frame[slot];
         }
     }
 
@@ -59,31 +143,70 @@ public class AbstractSyntaxTree {
         }
 
         @Override
-        public void display() {
-            System.out.println("AST int literal " + intLiteral);
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitIntLiteral(this);
+        }
+
+        @Override
+        public int evaluate(int[] frame) {
+            return intLiteral;
+        }
+    }
+
+    /**
+     * Node representing a sum of any number of operands. Operands are ids and int literals, never
+     * another sum, and adjacent literals have already been added up by the parser. A calc sum used to
+     * be a right-leaning chain of binary NodePlus nodes; it is now one NodeSum.
+     */
+    class NodeSum extends NodeExpr {
+        NodeExpr[] operands;
+
+        public NodeSum(NodeExpr[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitSum(this);
+        }
+
+        @Override
+        public int evaluate(int[] frame) {
+            int sum = 0;
+            for (NodeExpr operand : operands) {
+                sum += operand.evaluate(frame);
+            }
+            return sum;
         }
     }
 
     /**
-     * Node representing an addition expression
+     * Node representing an addition expression, the binary node sums were parsed into before NodeSum.
+     * Kept for code that builds trees by hand: it is a NodeSum of the operands of lhs and rhs, so a
+     * chain of NodePlus is still one flat sum.
+     * @deprecated build a NodeSum of every operand instead
      */
-    class NodePlus extends NodeExpr {
+    @Deprecated
+    class NodePlus extends NodeSum {
         NodeExpr lhs;
         NodeExpr rhs;
 
         public NodePlus(NodeExpr lhs, NodeExpr rhs) {
+            super(concat(lhs, rhs));
             this.lhs = lhs;
             this.rhs = rhs;
         }
+    }
 
-        @Override
-        public void display() {
-            System.out.println("AST sum");
-            System.out.print("LHS: ");
-            lhs.display();
-            System.out.print("RHS: ");
-            rhs.display();
-        }
+    /**
+     * Joins the operands of two expressions, a sum contributes its operands and anything else itself
+     */
+    private static NodeExpr[] concat(NodeExpr lhs, NodeExpr rhs) {
+        NodeExpr[] left = lhs instanceof NodeSum sum ? sum.operands : new NodeExpr[] {lhs};
+        NodeExpr[] right = rhs instanceof NodeSum sum ? sum.operands : new NodeExpr[] {rhs};
+        NodeExpr[] operands = Arrays.copyOf(left, left.length + right.length);
+        System.arraycopy(right, 0, operands, left.length, right.length);
+        return operands;
     }
 
     /**
@@ -97,9 +220,14 @@ public class AbstractSyntaxTree {
         }
 
         @Override
-        public void display() {
-            System.out.println("AST print");
-            id.display();
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitPrint(this);
+        }
+
+        @Override
+        public int execute(int[] frame, OutputBuffer out) {
+            out.println(frame[id.slot]);
+            return 1;
         }
     }
 
@@ -116,10 +244,14 @@ public class AbstractSyntaxTree {
         }
 
         @Override
-        public void display() {
-            System.out.println("AST set");
-            id.display();
-            intLiteral.display();
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitSet(this);
+        }
+
+        @Override
+        public int execute(int[] frame, OutputBuffer out) {
+            frame[id.slot] = intLiteral.intLiteral;
+            return 1;
         }
     }
 
@@ -136,10 +268,14 @@ public class AbstractSyntaxTree {
         }
 
         @Override
-        public void display() {
-            System.out.println("AST calc");
-            id.display();
-            expr.display();
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitCalc(this);
+        }
+
+        @Override
+        public int execute(int[] frame, OutputBuffer out) {
+            frame[id.slot] = expr.evaluate(frame);
+            return 1;
         }
     }
 
@@ -154,11 +290,22 @@ public class AbstractSyntaxTree {
         }
 
         @Override
-        public void display() {
-            System.out.println("AST Statements");
-            for (NodeStmt stmt : stmts) {
-                stmt.display();
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitStmts(this);
+        }
+
+        /**
+         * Executes the statements in order
+         * @param frame variable values indexed by slot
+         * @param out buffer for printed values
+         * @return the number of statements executed
+         */
+        public int execute(int[] frame, OutputBuffer out) {
+            int executed = 0;
+            for (int i = 0, n = stmts.size(); i < n; i++) {
+                executed += stmts.get(i).execute(frame, out);
             }
+            return executed;
         }
     }
 
@@ -168,7 +315,8 @@ public class AbstractSyntaxTree {
     class NodeIf extends NodeStmt {
         NodeId lhs;
         NodeId rhs;
-        NodeStmts stmts;
+        private NodeStmts stmts; // null until a lazy body is parsed
+        private MyParser.LazyBody body; // where a lazy body is parsed from, null once it is parsed
 
         public NodeIf(NodeId lhs, NodeId rhs, NodeStmts stmts) {
             this.lhs = lhs;
@@ -176,18 +324,44 @@ public class AbstractSyntaxTree {
             this.stmts = stmts;
         }
 
+        NodeIf(NodeId lhs, NodeId rhs, MyParser.LazyBody body) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+            this.body = body;
+        }
+
+        /**
+         * Returns the statements of the if, a lazy body is parsed the first time. A lazy body must
+         * not be read by several threads before it has been parsed.
+         * @return the statements
+         */
+        public NodeStmts getStmts() {
+            if (stmts == null) {
+                stmts = body.parse();
+                body = null; // the source can be released
+            }
+            return stmts;
+        }
+
+        /**
+         * Tells whether the body has been parsed, always true unless the parser had lazy bodies on
+         * @return true if the statements are in memory
+         */
+        public boolean isParsed() {
+            return stmts != null;
+        }
+
         @Override
-        public void display() {
-            System.out.println("AST if");
-            System.out.print("LHS: ");
-            lhs.display();
-            System.out.print("RHS: ");
-            rhs.display();
-
-            for (NodeStmt stmt : stmts.stmts) {
-                stmt.display();
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitIf(this);
+        }
+
+        @Override
+        public int execute(int[] frame, OutputBuffer out) {
+            if (frame[lhs.slot] == frame[rhs.slot]) {
+                return 1 + getStmts().execute(frame, out);
             }
-            System.out.println("AST endif");
+            return 1;
         }
     }
 
@@ -202,11 +376,8 @@ public class AbstractSyntaxTree {
         }
 
         @Override
-        public void display() {
-            System.out.println("AST Declarations");
-            for (NodeId id : decls) {
-                id.display();
-            }
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitDecls(this);
         }
     }
 
@@ -223,9 +394,8 @@ public class AbstractSyntaxTree {
         }
 
         @Override
-        public void display() {
-            decls.display();
-            stmts.display();
+        public <R> R accept(AstVisitor<R> visitor) {
+            return visitor.visitProgram(this);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,295 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Compact alternative to AbstractSyntaxTree. Nodes live in parallel primitive arrays and are referred
+ * to by int handles, so a node costs 17 bytes and no object header or outer instance pointer.
+ *
+ * Every node has a first child (child0) and a next sibling (child1), which is enough for every node
+ * kind: PROGRAM has DECLS then STMTS as children, DECLS has IDs, STMTS and SUM have their statements
+ * and operands. Variables used by statements are stored inline as symbol ids instead of ID nodes:
+ * SET, CALC and PRINT keep their variable in symbolId, IF keeps its lhs in symbolId and its rhs in
+ * intValue. SET and INT keep their value in intValue, CALC has its expression and IF its STMTS as child.
+ */
+public class ArenaAst {
+    static final byte PROGRAM = 0;
+    static final byte DECLS = 1;
+    static final byte STMTS = 2;
+    static final byte SET = 3;
+    static final byte CALC = 4;
+    static final byte PRINT = 5;
+    static final byte IF = 6;
+    static final byte SUM = 7;
+    static final byte ID = 8;
+    static final byte INT = 9;
+    static final int NONE = -1; // handle of a missing child
+
+    byte[] kind = new byte[256];
+    int[] child0 = new int[256]; // first child
+    int[] child1 = new int[256]; // next sibling
+    int[] symbolId = new int[256];
+    int[] intValue = new int[256];
+    private int size; // number of nodes
+    private final SymbolPool symbols; // names of the symbol ids
+    private int root = NONE;
+
+    /**
+     * One parameter constructor
+     * @param symbols pool the symbol ids of the nodes refer to
+     */
+    ArenaAst(SymbolPool symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Adds a node without children
+     * @return the handle of the node
+     */
+    int add(byte nodeKind, int symbol, int value) {
+        if (size == kind.length) {
+            grow(Math.max(1, size * 2)); // trim() may have left no room at all
+        }
+        kind[size] = nodeKind;
+        child0[size] = NONE;
+        child1[size] = NONE;
+        symbolId[size] = symbol;
+        intValue[size] = value;
+        return size++;
+    }
+
+    private void grow(int capacity) {
+        kind = Arrays.copyOf(kind, capacity);
+        child0 = Arrays.copyOf(child0, capacity);
+        child1 = Arrays.copyOf(child1, capacity);
+        symbolId = Arrays.copyOf(symbolId, capacity);
+        intValue = Arrays.copyOf(intValue, capacity);
+    }
+
+    /**
+     * Shrinks the arrays to the number of nodes
+     */
+    public void trim() {
+        grow(size);
+    }
+
+    /**
+     * Returns the number of bytes used by the node arrays
+     * @return the footprint in bytes
+     */
+    public long footprint() {
+        long arrays = 5 * 16; // array headers
+        return arrays + kind.length + 4L * (child0.length + child1.length + symbolId.length + intValue.length);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Node getRoot() {
+        return root == NONE ? null : new Node(root);
+    }
+
+    SymbolPool getSymbolPool() {
+        return symbols;
+    }
+
+    /**
+     * Converts an object tree into an arena
+     * @param program root of the object tree
+     * @return the arena
+     */
+    public static ArenaAst from(AbstractSyntaxTree.NodeProgram program) {
+        ArenaAst arena = new ArenaAst(new SymbolPool());
+        int decls = arena.add(DECLS, NONE, 0);
+        int last = NONE;
+        for (AbstractSyntaxTree.NodeId id : program.decls.decls) {
+            last = arena.append(decls, last, arena.add(ID, arena.symbols.intern(id.name), 0));
+        }
+        int stmts = arena.statements(program.stmts);
+        arena.child1[decls] = stmts;
+        arena.root = arena.add(PROGRAM, NONE, 0);
+        arena.child0[arena.root] = decls;
+        return arena;
+    }
+
+    /**
+     * Links a child after the last child of a parent
+     * @return the new last child
+     */
+    private int append(int parent, int last, int child) {
+        if (last == NONE) {
+            child0[parent] = child;
+        } else {
+            child1[last] = child;
+        }
+        return child;
+    }
+
+    private int statements(AbstractSyntaxTree.NodeStmts stmts) {
+        int list = add(STMTS, NONE, 0);
+        int last = NONE;
+        for (AbstractSyntaxTree.NodeStmt stmt : stmts.stmts) {
+            int node;
+            if (stmt instanceof AbstractSyntaxTree.NodeSet set) {
+                node = add(SET, symbols.intern(set.id.name), set.intLiteral.intLiteral);
+            } else if (stmt instanceof AbstractSyntaxTree.NodeCalc calc) {
+                node = add(CALC, symbols.intern(calc.id.name), 0);
+                int expr = expression(calc.expr); // before indexing child0, adding nodes can replace the array
+                child0[node] = expr;
+            } else if (stmt instanceof AbstractSyntaxTree.NodePrint print) {
+                node = add(PRINT, symbols.intern(print.id.name), 0);
+            } else {
+                AbstractSyntaxTree.NodeIf nodeIf = (AbstractSyntaxTree.NodeIf) stmt;
+                node = add(IF, symbols.intern(nodeIf.lhs.name), symbols.intern(nodeIf.rhs.name));
+                int body = statements(nodeIf.getStmts());
+                child0[node] = body;
+            }
+            last = append(list, last, node);
+        }
+        return list;
+    }
+
+    private int expression(AbstractSyntaxTree.NodeExpr expr) {
+        if (expr instanceof AbstractSyntaxTree.NodeSum sum) {
+            int node = add(SUM, NONE, 0);
+            int last = NONE;
+            for (AbstractSyntaxTree.NodeExpr operand : sum.operands) {
+                last = append(node, last, expression(operand)); // operands are never sums
+            }
+            return node;
+        }
+        if (expr instanceof AbstractSyntaxTree.NodeId id) {
+            return add(ID, symbols.intern(id.name), 0);
+        }
+        return add(INT, NONE, ((AbstractSyntaxTree.NodeIntLiteral) expr).intLiteral);
+    }
+
+    /**
+     * Converts the arena back into an object tree
+     * @return the object tree, with its root set
+     */
+    public AbstractSyntaxTree toTree() {
+        AbstractSyntaxTree ast = new AbstractSyntaxTree();
+        Node program = getRoot();
+        AbstractSyntaxTree.NodeDecls decls = ast.new NodeDecls();
+        for (Node id = program.firstChild().firstChild(); id != null; id = id.next()) {
+            decls.addDecl(ast.new NodeId(id.name()));
+        }
+        ast.setRoot(ast.new NodeProgram(decls, toStatements(ast, program.firstChild().next())));
+        return ast;
+    }
+
+    private AbstractSyntaxTree.NodeStmts toStatements(AbstractSyntaxTree ast, Node list) {
+        AbstractSyntaxTree.NodeStmts stmts = ast.new NodeStmts();
+        for (Node stmt = list.firstChild(); stmt != null; stmt = stmt.next()) {
+            switch (stmt.kind()) {
+                case SET:
+                    stmts.addStmt(ast.new NodeSet(ast.new NodeId(stmt.name()), ast.new NodeIntLiteral(stmt.value())));
+                    break;
+                case CALC:
+                    stmts.addStmt(ast.new NodeCalc(ast.new NodeId(stmt.name()), toExpression(ast, stmt.firstChild())));
+                    break;
+                case PRINT:
+                    stmts.addStmt(ast.new NodePrint(ast.new NodeId(stmt.name())));
+                    break;
+                default:
+                    stmts.addStmt(ast.new NodeIf(ast.new NodeId(stmt.name()), ast.new NodeId(stmt.rhsName()),
+                            toStatements(ast, stmt.firstChild())));
+                    break;
+            }
+        }
+        return stmts;
+    }
+
+    private AbstractSyntaxTree.NodeExpr toExpression(AbstractSyntaxTree ast, Node expr) {
+        if (expr.kind() == SUM) {
+            int count = 0;
+            for (Node operand = expr.firstChild(); operand != null; operand = operand.next()) {
+                count++;
+            }
+            AbstractSyntaxTree.NodeExpr[] operands = new AbstractSyntaxTree.NodeExpr[count];
+            int i = 0;
+            for (Node operand = expr.firstChild(); operand != null; operand = operand.next()) {
+                operands[i++] = toExpression(ast, operand);
+            }
+            return ast.new NodeSum(operands);
+        }
+        if (expr.kind() == ID) {
+            return ast.new NodeId(expr.name());
+        }
+        return ast.new NodeIntLiteral(expr.value());
+    }
+
+    /**
+     * Typed view of one node of the arena, a handle that knows its arena
+     */
+    public class Node {
+        final int handle;
+
+        Node(int handle) {
+            this.handle = handle;
+        }
+
+        /**
+         * Returns the kind of the node, one of the ArenaAst constants
+         * @return the kind
+         */
+        public byte kind() {
+            return kind[handle];
+        }
+
+        /**
+         * Returns the first child: the declarations of PROGRAM, the first element of a list, the
+         * expression of CALC or the body of IF
+         * @return the child, or null if there is none
+         */
+        public Node firstChild() {
+            return child0[handle] == NONE ? null : new Node(child0[handle]);
+        }
+
+        /**
+         * Returns the next element of the list this node belongs to
+         * @return the sibling, or null if this is the last element
+         */
+        public Node next() {
+            return child1[handle] == NONE ? null : new Node(child1[handle]);
+        }
+
+        /**
+         * Returns the symbol id of ID, SET, CALC and PRINT, or of the lhs of IF
+         * @return the symbol id
+         */
+        public int symbol() {
+            return symbolId[handle];
+        }
+
+        /**
+         * Returns the variable name of ID, SET, CALC and PRINT, or of the lhs of IF
+         * @return the name
+         */
+        public String name() {
+            return symbols.name(symbolId[handle]);
+        }
+
+        /**
+         * Returns the name of the rhs of IF
+         * @return the name
+         */
+        public String rhsName() {
+            return symbols.name(intValue[handle]);
+        }
+
+        /**
+         * Returns the value of INT and SET
+         * @return the value
+         */
+        public int value() {
+            return intValue[handle];
+        }
+
+        public int handle() {
+            return handle;
+        }
+    }
+}
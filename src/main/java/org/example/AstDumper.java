@@ -0,0 +1,120 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes the text dump of an AST, the format display() has always printed, to any Appendable.
+ * It walks the tree with an AstWalker, so deep trees do not overflow the stack.
+ */
+public class AstDumper implements AstVisitor<Void> {
+    private final Appendable out; // destination of the dump
+    private final AstWalker walker = new AstWalker();
+
+    private final AstVisitor<Void> exit = new AstVisitor<>() {
+        @Override
+        public Void visitIf(AbstractSyntaxTree.NodeIf node) {
+            return line("AST endif");
+        }
+    };
+
+    /**
+     * One parameter constructor
+     * @param out destination of the dump, use a buffered one
+     */
+    public AstDumper(Appendable out) {
+        this.out = out;
+    }
+
+    /**
+     * Dumps a subtree
+     * @param root root of the subtree
+     * @param out destination of the dump
+     */
+    public static void dump(AbstractSyntaxTree.NodeBase root, Appendable out) {
+        AstDumper dumper = new AstDumper(out);
+        dumper.walker.walk(root, dumper, dumper.exit);
+    }
+
+    @Override
+    public Void visitDecls(AbstractSyntaxTree.NodeDecls node) {
+        return line("AST Declarations");
+    }
+
+    @Override
+    public Void visitStmts(AbstractSyntaxTree.NodeStmts node) {
+        if (walker.parent() instanceof AbstractSyntaxTree.NodeIf) {
+            return null; // an if body has no header
+        }
+        return line("AST Statements");
+    }
+
+    @Override
+    public Void visitSet(AbstractSyntaxTree.NodeSet node) {
+        return line("AST set");
+    }
+
+    @Override
+    public Void visitCalc(AbstractSyntaxTree.NodeCalc node) {
+        return line("AST calc");
+    }
+
+    @Override
+    public Void visitPrint(AbstractSyntaxTree.NodePrint node) {
+        return line("AST print");
+    }
+
+    @Override
+    public Void visitIf(AbstractSyntaxTree.NodeIf node) {
+        return line("AST if");
+    }
+
+    @Override
+    public Void visitId(AbstractSyntaxTree.NodeId node) {
+        prefix();
+        return line("AST id ", node.name);
+    }
+
+    @Override
+    public Void visitIntLiteral(AbstractSyntaxTree.NodeIntLiteral node) {
+        prefix();
+        return line("AST int literal ", Integer.toString(node.intLiteral));
+    }
+
+    /**
+     * Writes the LHS/RHS labels of if conditions, and of sums, which are shown as a chain of binary sums
+     */
+    private void prefix() {
+        AbstractSyntaxTree.NodeBase parent = walker.parent();
+        int i = walker.childIndex();
+        if (parent instanceof AbstractSyntaxTree.NodeIf) {
+            append(i == 0 ? "LHS: " : "RHS: ");
+        } else if (parent instanceof AbstractSyntaxTree.NodeSum sum) {
+            if (i > 0) {
+                append("RHS: ");
+            }
+            if (i < sum.operands.length - 1) {
+                append("AST sum\nLHS: ");
+            }
+        }
+    }
+
+    private Void line(String text) {
+        return line(text, "");
+    }
+
+    private Void line(String text, String value) {
+        append(text);
+        append(value);
+        append("\n");
+        return null;
+    }
+
+    private void append(String text) {
+        try {
+            out.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Streams an AST as JSON or as an S-expression to an Appendable. Nodes are written as soon as the
+ * AstWalker enters and leaves them, so nothing but the walker stack is held in memory.
+ *
+ * JSON: every node is an object with a "node" member naming its type, ids have a "name", literals a
+ * "value" and all other nodes a "children" array in source order.
+ * S-expression: (program (decls x y) (stmts (set x 5) (calc y (+ x 4)) (if x y (stmts (print y)))))
+ */
+public class AstEmitter implements AstVisitor<Void> {
+    private final Appendable out; // destination
+    private final boolean json; // JSON when true, S-expression otherwise
+    private final AstWalker walker = new AstWalker();
+
+    private final AstVisitor<Void> exit = new AstVisitor<>() {
+        @Override
+        public Void visitDefault(AbstractSyntaxTree.NodeBase node) {
+            append(json ? "]}" : ")");
+            return null;
+        }
+
+        @Override
+        public Void visitId(AbstractSyntaxTree.NodeId node) {
+            return null; // leaves are written whole on entry
+        }
+
+        @Override
+        public Void visitIntLiteral(AbstractSyntaxTree.NodeIntLiteral node) {
+            return null;
+        }
+    };
+
+    private AstEmitter(Appendable out, boolean json) {
+        this.out = out;
+        this.json = json;
+    }
+
+    /**
+     * Writes a subtree as JSON
+     * @param root root of the subtree
+     * @param out destination, use a buffered one
+     */
+    public static void json(AbstractSyntaxTree.NodeBase root, Appendable out) {
+        AstEmitter emitter = new AstEmitter(out, true);
+        emitter.walker.walk(root, emitter, emitter.exit);
+    }
+
+    /**
+     * Writes a subtree as an S-expression
+     * @param root root of the subtree
+     * @param out destination, use a buffered one
+     */
+    public static void sexpr(AbstractSyntaxTree.NodeBase root, Appendable out) {
+        AstEmitter emitter = new AstEmitter(out, false);
+        emitter.walker.walk(root, emitter, emitter.exit);
+    }
+
+    @Override
+    public Void visitProgram(AbstractSyntaxTree.NodeProgram node) {
+        return open("program");
+    }
+
+    @Override
+    public Void visitDecls(AbstractSyntaxTree.NodeDecls node) {
+        return open("decls");
+    }
+
+    @Override
+    public Void visitStmts(AbstractSyntaxTree.NodeStmts node) {
+        return open("stmts");
+    }
+
+    @Override
+    public Void visitSet(AbstractSyntaxTree.NodeSet node) {
+        return open("set");
+    }
+
+    @Override
+    public Void visitCalc(AbstractSyntaxTree.NodeCalc node) {
+        return open("calc");
+    }
+
+    @Override
+    public Void visitPrint(AbstractSyntaxTree.NodePrint node) {
+        return open("print");
+    }
+
+    @Override
+    public Void visitIf(AbstractSyntaxTree.NodeIf node) {
+        return open("if");
+    }
+
+    @Override
+    public Void visitSum(AbstractSyntaxTree.NodeSum node) {
+        return open(json ? "sum" : "+");
+    }
+
+    @Override
+    public Void visitId(AbstractSyntaxTree.NodeId node) {
+        separator();
+        if (json) {
+            append("{\"node\":\"id\",\"name\":\"");
+            append(node.name); // identifiers are letters only, nothing to escape
+            append("\"}");
+        } else {
+            append(node.name);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitIntLiteral(AbstractSyntaxTree.NodeIntLiteral node) {
+        separator();
+        if (json) {
+            append("{\"node\":\"int\",\"value\":");
+            append(Integer.toString(node.intLiteral));
+            append("}");
+        } else {
+            append(Integer.toString(node.intLiteral));
+        }
+        return null;
+    }
+
+    /**
+     * Starts a node with children, closed by the exit visitor
+     */
+    private Void open(String type) {
+        separator();
+        if (json) {
+            append("{\"node\":\"");
+            append(type);
+            append("\",\"children\":[");
+        } else {
+            append("(");
+            append(type);
+        }
+        return null;
+    }
+
+    /**
+     * Separates a node from the previous child of its parent
+     */
+    private void separator() {
+        if (json) {
+            if (walker.childIndex() > 0) {
+                append(",");
+            }
+        } else if (walker.parent() != null) {
+            append(" ");
+        }
+    }
+
+    private void append(String text) {
+        try {
+            out.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.example;
+
+/**
+ * Visitor over the nodes of an AbstractSyntaxTree, called through NodeBase.accept(). Every method
+ * falls back to visitDefault(), so a visitor only overrides the node types it handles.
+ * @param <R> result type of the visit methods
+ */
+public interface AstVisitor<R> {
+    /**
+     * Called for every node type the visitor does not override
+     * @param node the node
+     * @return the result, null unless overridden
+     */
+    default R visitDefault(AbstractSyntaxTree.NodeBase node) {
+        return null;
+    }
+
+    default R visitProgram(AbstractSyntaxTree.NodeProgram node) {
+        return visitDefault(node);
+    }
+
+    default R visitDecls(AbstractSyntaxTree.NodeDecls node) {
+        return visitDefault(node);
+    }
+
+    default R visitStmts(AbstractSyntaxTree.NodeStmts node) {
+        return visitDefault(node);
+    }
+
+    default R visitSet(AbstractSyntaxTree.NodeSet node) {
+        return visitDefault(node);
+    }
+
+    default R visitCalc(AbstractSyntaxTree.NodeCalc node) {
+        return visitDefault(node);
+    }
+
+    default R visitPrint(AbstractSyntaxTree.NodePrint node) {
+        return visitDefault(node);
+    }
+
+    default R visitIf(AbstractSyntaxTree.NodeIf node) {
+        return visitDefault(node);
+    }
+
+    default R visitSum(AbstractSyntaxTree.NodeSum node) {
+        return visitDefault(node);
+    }
+
+    default R visitId(AbstractSyntaxTree.NodeId node) {
+        return visitDefault(node);
+    }
+
+    default R visitIntLiteral(AbstractSyntaxTree.NodeIntLiteral node) {
+        return visitDefault(node);
+    }
+}
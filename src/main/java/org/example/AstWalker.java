@@ -0,0 +1,103 @@
+package org.example;
+
+/**
+ * Depth first traversal of an AbstractSyntaxTree with an explicit stack, so the depth of the tree is
+ * not limited by the Java call stack. Each node is visited with the enter visitor before its children
+ * and with the exit visitor after them. While a visitor runs it can ask the walker for the parent of
+ * the node and the position of the node among the children of its parent.
+ */
+public class AstWalker {
+    private AbstractSyntaxTree.NodeBase[] nodes = new AbstractSyntaxTree.NodeBase[16]; // path from the root
+    private int[] nextChild = new int[16]; // index of the next child to visit, per node on the path
+    private int depth; // number of nodes on the path
+
+    /**
+     * Walks a subtree
+     * @param root the root of the subtree
+     * @param enter visitor called before the children of a node
+     * @param exit visitor called after the children of a node, or null
+     */
+    public void walk(AbstractSyntaxTree.NodeBase root, AstVisitor<?> enter, AstVisitor<?> exit) {
+        depth = 0;
+        push(root);
+        root.accept(enter);
+        while (depth > 0) {
+            AbstractSyntaxTree.NodeBase node = nodes[depth - 1];
+            AbstractSyntaxTree.NodeBase child = child(node, nextChild[depth - 1]++);
+            if (child != null) {
+                push(child);
+                child.accept(enter);
+            } else {
+                if (exit != null) {
+                    node.accept(exit);
+                }
+                nodes[--depth] = null;
+            }
+        }
+    }
+
+    private void push(AbstractSyntaxTree.NodeBase node) {
+        if (depth == nodes.length) {
+            AbstractSyntaxTree.NodeBase[] newNodes = new AbstractSyntaxTree.NodeBase[depth * 2];
+            System.arraycopy(nodes, 0, newNodes, 0, depth);
+            nodes = newNodes;
+            int[] newNextChild = new int[depth * 2];
+            System.arraycopy(nextChild, 0, newNextChild, 0, depth);
+            nextChild = newNextChild;
+        }
+        nodes[depth] = node;
+        nextChild[depth] = 0;
+        depth++;
+    }
+
+    /**
+     * Returns the parent of the node being visited
+     * @return the parent, or null for the root
+     */
+    public AbstractSyntaxTree.NodeBase parent() {
+        return depth > 1 ? nodes[depth - 2] : null;
+    }
+
+    /**
+     * Returns the position of the node being visited among the children of its parent
+     * @return the child index, 0 for the root
+     */
+    public int childIndex() {
+        return depth > 1 ? nextChild[depth - 2] - 1 : 0;
+    }
+
+    /**
+     * Returns the number of ancestors of the node being visited
+     * @return the depth, 0 for the root
+     */
+    public int depth() {
+        return depth - 1;
+    }
+
+    /**
+     * Returns a child of a node in source order
+     * @param node the node
+     * @param i index of the child
+     * @return the child, or null if the node has no more children
+     */
+    static AbstractSyntaxTree.NodeBase child(AbstractSyntaxTree.NodeBase node, int i) {
+        if (node instanceof AbstractSyntaxTree.NodeStmts stmts) {
+            return i < stmts.stmts.size() ? stmts.stmts.get(i) : null;
+        } else if (node instanceof AbstractSyntaxTree.NodeSum sum) {
+            return i < sum.operands.length ? sum.operands[i] : null;
+        } else if (node instanceof AbstractSyntaxTree.NodeSet set) {
+            return i == 0 ? set.id : i == 1 ? set.intLiteral : null;
+        } else if (node instanceof AbstractSyntaxTree.NodeCalc calc) {
+            return i == 0 ? calc.id : i == 1 ? calc.expr : null;
+        } else if (node instanceof AbstractSyntaxTree.NodePrint print) {
+            return i == 0 ? print.id : null;
+        } else if (node instanceof AbstractSyntaxTree.NodeIf nodeIf) {
+            return i == 0 ? nodeIf.lhs : i == 1 ? nodeIf.rhs : i == 2 ? nodeIf.getStmts() : null;
+        } else if (node instanceof AbstractSyntaxTree.NodeDecls decls) {
+            return i < decls.decls.size() ? decls.decls.get(i) : null;
+        } else if (node instanceof AbstractSyntaxTree.NodeProgram program) {
+            return i == 0 ? program.decls : i == 1 ? program.stmts : null;
+        }
+        return null; // ids and int literals are leaves
+    }
+}
@@ -0,0 +1,297 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs one program over many initial variable assignments at once, for parameter sweeps. Each
+ * register of the program's register code is a column with one int per instance, and each
+ * instruction is applied to a whole column, on SIMD lanes through the Vector API when it is available.
+ * An if computes the mask of the instances whose operands are equal; its body runs with that mask,
+ * writing only the masked lanes, and is skipped when no lane is set.
+ *
+ * Instances are run in tiles of TILE lanes, so the columns a tile uses stay in cache. The columns
+ * are TILE ints long and reused by every tile; only the final values of the variables are kept for
+ * all instances, so memory grows with slots, not registers, times instances. The results of every
+ * instance are the same as running it alone with the Interpreter, with or without the Vector API.
+ * The Vector API is an incubator module: java needs --add-modules jdk.incubator.vector, otherwise
+ * the scalar kernels are used.
+ */
+public class BatchExecutor {
+    private static final int TILE = 4096; // instances run through the whole program at a time
+    private static final BatchKernels SCALAR = new BatchKernels();
+
+    private final RegisterCode program; // the code to run, with nested ifs
+    private boolean vectorized = isVectorAvailable(); // use VectorKernels
+
+    /**
+     * Constructor from a parsed program
+     * @param program root of the AST
+     * @throws IllegalStateException if the program uses a variable it does not declare
+     */
+    public BatchExecutor(AbstractSyntaxTree.NodeProgram program) {
+        this(RegisterCode.lower(program));
+    }
+
+    /**
+     * Constructor from register code, such as SsaProgram.lower() gives for an optimized program
+     * @param program the code, every jump must skip the body of an if nested in the enclosing ones
+     * @throws IllegalArgumentException if the jumps are not nested
+     */
+    public BatchExecutor(RegisterCode program) {
+        checkNesting(program.code);
+        this.program = program;
+    }
+
+    /**
+     * Checks that every JNE jumps forward, to the end of a body inside the body it is in
+     */
+    private static void checkNesting(int[] code) {
+        int[] ends = new int[16];
+        int depth = 0;
+        for (int pc = 0; pc < code.length; pc += RegisterCode.LENGTH[code[pc]]) {
+            while (depth > 0 && ends[depth - 1] == pc) {
+                depth--;
+            }
+            if (code[pc] == RegisterCode.JNE) {
+                int target = code[pc + 3];
+                if (target <= pc || depth > 0 && target > ends[depth - 1]) {
+                    throw new IllegalArgumentException("Jump at " + pc + " is not the end of a nested body");
+                }
+                if (depth == ends.length) {
+                    ends = Arrays.copyOf(ends, depth * 2);
+                }
+                ends[depth++] = target;
+            }
+        }
+    }
+
+    /**
+     * Tells whether the Vector API can be used, that is whether java was started with --add-modules
+     * jdk.incubator.vector
+     * @return true if it is present
+     */
+    public static boolean isVectorAvailable() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+
+    /**
+     * Chooses between the Vector API and the scalar kernels, the Vector API is used when available
+     * @param vectorized true for SIMD
+     * @throws IllegalStateException if the Vector API is not available
+     */
+    public void setVectorized(boolean vectorized) {
+        if (vectorized && !isVectorAvailable()) {
+            throw new IllegalStateException("The Vector API needs java --add-modules jdk.incubator.vector");
+        }
+        this.vectorized = vectorized;
+    }
+
+    public boolean isVectorized() {
+        return vectorized;
+    }
+
+    public int getSlots() {
+        return program.slots;
+    }
+
+    /**
+     * Runs the program once per row of initial values
+     * @param initial one row per instance, the initial value of every variable indexed by slot
+     * @return the final values, statement counts and output of every instance
+     * @throws IllegalArgumentException if a row does not have one value per variable
+     */
+    public Result run(int[][] initial) {
+        int instances = initial.length;
+        for (int i = 0; i < instances; i++) {
+            if (initial[i].length != program.slots) {
+                throw new IllegalArgumentException("Row " + i + " has " + initial[i].length + " values for "
+                        + program.slots + " variables");
+            }
+        }
+        Result result = new Result(program.slots, instances);
+        BatchKernels kernels = vectorized ? VectorKernels.create() : SCALAR;
+        int width = Math.min(TILE, instances);
+        int[][] tile = new int[program.registers][width]; // every register for one tile, reused by the next
+        int[] executed = new int[width];
+        List<boolean[]> masks = new ArrayList<>(); // mask of each if depth, allocated when first reached
+        for (int from = 0; from < instances; from += TILE) {
+            int lanes = Math.min(TILE, instances - from);
+            for (int lane = 0; lane < lanes; lane++) {
+                int[] row = initial[from + lane];
+                for (int slot = 0; slot < program.slots; slot++) {
+                    tile[slot][lane] = row[slot]; // rows to columns
+                }
+            }
+            Arrays.fill(executed, 0);
+            List<Printed> printed = new ArrayList<>();
+            run(kernels, tile, executed, masks, printed, from, lanes);
+            for (int slot = 0; slot < program.slots; slot++) {
+                System.arraycopy(tile[slot], 0, result.registers[slot], from, lanes); // only variables are kept
+            }
+            System.arraycopy(executed, 0, result.executed, from, lanes);
+            result.printed.add(printed);
+        }
+        return result;
+    }
+
+    /**
+     * Runs the program over one tile of instances, lanes 0 to lanes of the columns
+     */
+    private void run(BatchKernels kernels, int[][] r, int[] executed, List<boolean[]> masks, List<Printed> printed,
+                     int from, int lanes) {
+        int[] code = program.code;
+        int[] ends = new int[16]; // end of the body of each open if
+        boolean[][] open = new boolean[16][]; // mask of each open if, null if every lane of the tile is set
+        int depth = 0;
+        boolean[] mask = null; // lanes running the current instruction
+        int pc = 0;
+        while (pc < code.length) {
+            while (depth > 0 && ends[depth - 1] == pc) {
+                depth--;
+                mask = depth == 0 ? null : open[depth - 1];
+            }
+            switch (code[pc]) {
+                case RegisterCode.LOADI:
+                    kernels.set(r[code[pc + 1]], code[pc + 2], mask, 0, lanes);
+                    pc += 3;
+                    break;
+                case RegisterCode.MOV:
+                    kernels.copy(r[code[pc + 1]], r[code[pc + 2]], mask, 0, lanes);
+                    pc += 3;
+                    break;
+                case RegisterCode.ADD:
+                    kernels.add(r[code[pc + 1]], r[code[pc + 2]], r[code[pc + 3]], mask, 0, lanes);
+                    pc += 4;
+                    break;
+                case RegisterCode.ADDI:
+                    kernels.add(r[code[pc + 1]], r[code[pc + 2]], code[pc + 3], mask, 0, lanes);
+                    pc += 4;
+                    break;
+                case RegisterCode.JNE:
+                    if (depth == masks.size()) {
+                        masks.add(new boolean[executed.length]);
+                    }
+                    boolean[] taken = masks.get(depth);
+                    int count = kernels.equal(r[code[pc + 1]], r[code[pc + 2]], mask, taken, 0, lanes);
+                    if (count == 0) {
+                        pc = code[pc + 3]; // no instance runs the body
+                        break;
+                    }
+                    if (depth == ends.length) {
+                        ends = Arrays.copyOf(ends, depth * 2);
+                        open = Arrays.copyOf(open, depth * 2);
+                    }
+                    mask = count == lanes ? null : taken; // every instance runs it
+                    ends[depth] = code[pc + 3];
+                    open[depth++] = mask;
+                    pc += 4;
+                    break;
+                case RegisterCode.PRINT:
+                    int[] values = Arrays.copyOf(r[code[pc + 1]], lanes);
+                    boolean[] lanesPrinted = mask == null ? null : Arrays.copyOf(mask, lanes);
+                    printed.add(new Printed(from, values, lanesPrinted));
+                    pc += 2;
+                    break;
+                case RegisterCode.COUNT:
+                    kernels.add(executed, executed, code[pc + 1], mask, 0, lanes);
+                    pc += 2;
+                    break;
+                default:
+                    throw new IllegalStateException("Bad opcode at " + pc); // verified code never gets here
+            }
+        }
+    }
+
+    /**
+     * Values one print statement printed for the instances of a tile
+     */
+    private static class Printed {
+        final int from; // first instance of the tile
+        final int[] values; // the value of each instance of the tile
+        final boolean[] mask; // the instances that printed, null if all of them did
+
+        Printed(int from, int[] values, boolean[] mask) {
+            this.from = from;
+            this.values = values;
+            this.mask = mask;
+        }
+    }
+
+    /**
+     * Results of a batch run, read per instance
+     */
+    public static class Result {
+        private final int slots; // number of variables
+        final int[][] registers; // final value of every variable, one column per slot
+        final int[] executed; // statements executed by each instance
+        final List<List<Printed>> printed = new ArrayList<>(); // prints of each tile, in order
+
+        Result(int slots, int instances) {
+            this.slots = slots;
+            this.registers = new int[slots][instances];
+            this.executed = new int[instances];
+        }
+
+        public int getInstances() {
+            return executed.length;
+        }
+
+        /**
+         * Returns the final values of an instance
+         * @param instance index of the row of initial values
+         * @return the value of every variable, indexed by slot
+         */
+        public int[] getValues(int instance) {
+            int[] values = new int[slots];
+            for (int slot = 0; slot < slots; slot++) {
+                values[slot] = registers[slot][instance];
+            }
+            return values;
+        }
+
+        /**
+         * Returns the final values of one variable for every instance
+         * @param slot the variable
+         * @return the column, not a copy
+         */
+        public int[] getColumn(int slot) {
+            return registers[slot];
+        }
+
+        /**
+         * Returns the number of statements an instance executed
+         * @param instance index of the row of initial values
+         * @return the count, as ExecutableProgram.run() returns it
+         */
+        public int getExecuted(int instance) {
+            return executed[instance];
+        }
+
+        /**
+         * Writes the values an instance printed
+         * @param instance index of the row of initial values
+         * @param out destination
+         */
+        public void print(int instance, OutputBuffer out) {
+            for (Printed p : printed.get(instance / TILE)) {
+                int lane = instance - p.from;
+                if (p.mask == null || p.mask[lane]) {
+                    out.println(p.values[lane]);
+                }
+            }
+        }
+
+        /**
+         * Returns the output of an instance
+         * @param instance index of the row of initial values
+         * @return the printed values, one per line
+         */
+        public String getOutput(int instance) {
+            OutputBuffer out = new OutputBuffer();
+            print(instance, out);
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.example;
+
+/**
+ * Lane-wise operations BatchExecutor runs each instruction with. A register is a column with one int
+ * per instance, and an operation works on the lanes from, inclusive, to to, exclusive. A lane is only
+ * written where its mask is true; a null mask means every lane. This class is the scalar version,
+ * VectorKernels does the same with SIMD instructions.
+ */
+class BatchKernels {
+    /**
+     * dst = value
+     */
+    void set(int[] dst, int value, boolean[] mask, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (mask == null || mask[i]) {
+                dst[i] = value;
+            }
+        }
+    }
+
+    /**
+     * dst = src
+     */
+    void copy(int[] dst, int[] src, boolean[] mask, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (mask == null || mask[i]) {
+                dst[i] = src[i];
+            }
+        }
+    }
+
+    /**
+     * dst = a + b
+     */
+    void add(int[] dst, int[] a, int[] b, boolean[] mask, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (mask == null || mask[i]) {
+                dst[i] = a[i] + b[i];
+            }
+        }
+    }
+
+    /**
+     * dst = a + value
+     */
+    void add(int[] dst, int[] a, int value, boolean[] mask, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (mask == null || mask[i]) {
+                dst[i] = a[i] + value;
+            }
+        }
+    }
+
+    /**
+     * Computes the mask of the lanes where a == b, among the lanes of the mask
+     * @param result the new mask, written for every lane
+     * @return the number of lanes set in result
+     */
+    int equal(int[] a, int[] b, boolean[] mask, boolean[] result, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            boolean equal = (mask == null || mask[i]) && a[i] == b[i];
+            result[i] = equal;
+            count += equal ? 1 : 0;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,245 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Random access view over the characters of a program. MyScanner walks a CharSource by index, so
+ * lookahead is just reading one position further and nothing ever has to be pushed back.
+ */
+public interface CharSource {
+    int EOF = -1; // value returned for positions past the end of the input
+
+    /**
+     * Returns the character at the given position
+     * @param index absolute position in the input
+     * @return the character, or EOF if the index is past the end of the input
+     */
+    int charAt(long index);
+
+    /**
+     * Tells the source that characters before the given position will not be read again
+     * @param index first position that is still needed
+     */
+    default void release(long index) {
+    }
+
+    /**
+     * Returns the number of characters of the input, when it is known without reading it
+     * @return the length, or -1 for a source that is read as it goes
+     */
+    default long length() {
+        return -1;
+    }
+
+    /**
+     * Creates a source over a char array without copying it
+     * @param chars the program text
+     * @return the source
+     */
+    static CharSource of(char[] chars) {
+        return new ArraySource(chars, 0, chars.length);
+    }
+
+    /**
+     * Creates a source over a CharSequence (String, CharBuffer, StringBuilder) without copying it
+     * @param chars the program text
+     * @return the source
+     */
+    static CharSource of(CharSequence chars) {
+        if (chars instanceof CharBuffer cb && cb.hasArray()) {
+            return new ArraySource(cb.array(), cb.arrayOffset() + cb.position(), cb.remaining());
+        }
+        return new SequenceSource(chars);
+    }
+
+    /**
+     * Creates a source over ASCII bytes, e.g. a MappedByteBuffer, without decoding them into chars
+     * @param bytes the program text, read from its position to its limit
+     * @return the source
+     */
+    static CharSource of(ByteBuffer bytes) {
+        return new ByteSource(bytes);
+    }
+
+    /**
+     * Creates a block-buffered source that pulls characters from a Reader as they are needed
+     * @param reader the program text
+     * @return the source
+     */
+    static CharSource of(Reader reader) {
+        return new ReaderSource(reader);
+    }
+
+    /**
+     * CharSource over a slice of a char array
+     */
+    final class ArraySource implements CharSource {
+        private final char[] chars;
+        private final int offset;
+        private final int length;
+
+        ArraySource(char[] chars, int offset, int length) {
+            this.chars = chars;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int charAt(long index) {
+            return index < length ? chars[offset + (int) index] : EOF;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+    }
+
+    /**
+     * CharSource over any CharSequence
+     */
+    final class SequenceSource implements CharSource {
+        private final CharSequence chars;
+        private final int length;
+
+        SequenceSource(CharSequence chars) {
+            this.chars = chars;
+            this.length = chars.length();
+        }
+
+        @Override
+        public int charAt(long index) {
+            return index < length ? chars.charAt((int) index) : EOF;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+    }
+
+    /**
+     * CharSource over ASCII bytes, each byte is one character
+     */
+    final class ByteSource implements CharSource {
+        private final ByteBuffer bytes;
+        private final int offset;
+        private final int length;
+
+        ByteSource(ByteBuffer bytes) {
+            this.bytes = bytes;
+            this.offset = bytes.position();
+            this.length = bytes.remaining();
+        }
+
+        @Override
+        public int charAt(long index) {
+            return index < length ? bytes.get(offset + (int) index) & 0xFF : EOF;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+    }
+
+    /**
+     * CharSource over ASCII bytes held in consecutive buffers, for mapped files larger than the 2 GB
+     * one ByteBuffer can hold. Every buffer but the last has 1 << shift bytes, so a position is split
+     * into a buffer and an offset with a shift and a mask.
+     */
+    final class WindowSource implements CharSource {
+        private final ByteBuffer[] windows;
+        private final int shift; // log2 of the number of bytes per window
+        private final int mask; // offset of a position in its window
+        private final long length;
+
+        WindowSource(ByteBuffer[] windows, int shift) {
+            this.windows = windows;
+            this.shift = shift;
+            this.mask = (1 << shift) - 1;
+            long length = 0;
+            for (ByteBuffer window : windows) {
+                length += window.limit();
+            }
+            this.length = length;
+        }
+
+        @Override
+        public int charAt(long index) {
+            return index < length ? windows[(int) (index >>> shift)].get((int) index & mask) & 0xFF : EOF;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+    }
+
+    /**
+     * CharSource that reads a Reader in blocks and keeps only the characters that have not been released
+     */
+    final class ReaderSource implements CharSource {
+        private static final int BLOCK_SIZE = 8192; // number of characters read from the Reader at once
+
+        private final Reader reader;
+        private char[] window = new char[BLOCK_SIZE]; // characters from base up to base + filled
+        private long base; // absolute position of window[0], grows past 2^31 on a long stream
+        private int filled; // number of valid characters in the window
+        private long released; // characters before this position can be dropped
+        private boolean eof;
+
+        ReaderSource(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int charAt(long index) {
+            long i = index - base;
+            if (i < filled) {
+                return window[(int) i];
+            }
+            while (!eof && index - base >= filled) {
+                fill();
+            }
+            i = index - base;
+            return i < filled ? window[(int) i] : EOF;
+        }
+
+        @Override
+        public void release(long index) {
+            released = Math.max(released, index);
+        }
+
+        /**
+         * Reads the next block from the reader, first dropping released characters to make room
+         */
+        private void fill() {
+            int drop = (int) Math.min(released - base, filled);
+            if (drop > 0 && filled == window.length) {
+                System.arraycopy(window, drop, window, 0, filled - drop);
+                filled -= drop;
+                base += drop;
+            }
+            if (filled == window.length) {
+                char[] grown = new char[window.length * 2];
+                System.arraycopy(window, 0, grown, 0, filled);
+                window = grown;
+            }
+            try {
+                int n = reader.read(window, filled, window.length - filled);
+                if (n < 0) {
+                    eof = true;
+                } else {
+                    filled += n;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
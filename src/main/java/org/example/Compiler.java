@@ -0,0 +1,385 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Thread safe entry point for compiling programs. A Compiler holds no state besides its settings:
+ * every compilation gets its own parser, scanner, symbol pool and AST, so one Compiler can be shared
+ * by any number of threads, and the batch methods compile many sources in parallel on a ForkJoinPool.
+ *
+ * A Compiler given CompilerMetrics, or running while a Flight Recorder recording enables its events,
+ * measures every compilation: the parser times its own scanning and node creation while it parses,
+ * in the same single pass as an unmeasured compilation, and counts tokens, statements, nodes and
+ * symbols. Otherwise compile() only pays for one check.
+ */
+public class Compiler {
+    private static final long MAP_THRESHOLD = 1 << 20; // files at least this large are mapped, smaller ones read
+    private static final int WINDOW_SHIFT = 30; // files over 2 GB are mapped in windows of 1 << WINDOW_SHIFT bytes
+
+    private final int parallelism; // number of threads used by the batch methods
+    private final boolean recovery; // report every error of a program instead of the first one
+    private final CompilerMetrics metrics; // totals of the measured compilations, null if not kept
+
+    /**
+     * Constructor that uses every core and stops at the first error of a program
+     */
+    public Compiler() {
+        this(Runtime.getRuntime().availableProcessors(), false);
+    }
+
+    /**
+     * Two parameter constructor
+     * @param parallelism number of threads used by the batch methods
+     * @param recovery true to report every error of a program, see MyParser.setRecovery()
+     */
+    public Compiler(int parallelism, boolean recovery) {
+        this(parallelism, recovery, null);
+    }
+
+    /**
+     * Three parameter constructor
+     * @param parallelism number of threads used by the batch methods
+     * @param recovery true to report every error of a program, see MyParser.setRecovery()
+     * @param metrics totals every compilation is added to, can be shared by Compilers, null for none
+     */
+    public Compiler(int parallelism, boolean recovery, CompilerMetrics metrics) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        this.recovery = recovery;
+        this.metrics = metrics;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public CompilerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Compiles one program: parses it and resolves its variables to slots
+     * @param name name of the program, reported in the result
+     * @param source the program text
+     * @return the result, with the syntax diagnostics or the resolver's errors and warnings
+     */
+    public Compilation compile(String name, CharSource source) {
+        CompilerMetrics.CompilationEvent event = new CompilerMetrics.CompilationEvent(); // optimized away when unused
+        if (metrics != null || event.isEnabled()) {
+            return compileMeasured(name, source, event);
+        }
+        MyParser parser = new MyParser(); // private to this compilation
+        parser.setRecovery(recovery);
+        if (!parser.parse(source)) {
+            return new Compilation(name, null, null, parser.getDiagnostics(), List.of(), List.of(), null);
+        }
+        return resolve(name, parser.getAst().getRoot());
+    }
+
+    /**
+     * Resolves the variables of a parsed program, the program can run if none is undeclared
+     * @param name name of the program
+     * @param program root of the AST
+     * @return the result, with the resolver's errors and warnings
+     */
+    private static Compilation resolve(String name, AbstractSyntaxTree.NodeProgram program) {
+        Resolver resolver = new Resolver();
+        int slots = resolver.resolve(program);
+        ExecutableProgram executable = resolver.hasErrors() ? null : new Interpreter(program, slots);
+        return new Compilation(name, program, executable, List.of(), resolver.getErrors(), resolver.getWarnings(),
+                null);
+    }
+
+    /**
+     * Compiles one program, timing each phase and counting what it produced
+     * @param name name of the program
+     * @param source the program text
+     * @param event the Flight Recorder event of the compilation
+     * @return the result, with its Sample
+     */
+    private Compilation compileMeasured(String name, CharSource source, CompilerMetrics.CompilationEvent event) {
+        CompilerMetrics.Sample sample = new CompilerMetrics.Sample();
+        event.begin();
+        MyParser parser = new MyParser();
+        parser.setRecovery(recovery);
+        parser.setTimed(true);
+        CompilerMetrics.PhaseEvent phase = CompilerMetrics.PhaseEvent.start(name, "parse");
+        boolean parsed = parser.parse(source); // the same fused scan and parse as compile()
+        long nanos = phase.stop();
+        long scan = parser.getScanNanos(); // estimates from sampled tokens and nodes
+        long build = parser.getBuildNanos();
+        if (scan + build > nanos) {
+            double scale = (double) nanos / (scan + build); // they overshoot, share the measured time in their ratio
+            scan = (long) (scan * scale);
+            build = (long) (build * scale);
+        }
+        sample.lexNanos = scan;
+        sample.buildNanos = build;
+        sample.parseNanos = nanos - scan - build;
+        sample.tokens = parser.getTokenCount();
+        sample.statements = parser.getStatementCount();
+        sample.nodes = parser.getAst().getNodeCount();
+        sample.symbols = parser.getSymbolCount();
+
+        Compilation compilation;
+        if (!parsed) {
+            compilation = new Compilation(name, null, null, parser.getDiagnostics(), List.of(), List.of(), null);
+        } else {
+            phase = CompilerMetrics.PhaseEvent.start(name, "resolve");
+            compilation = resolve(name, parser.getAst().getRoot());
+            sample.resolveNanos = phase.stop();
+        }
+        sample.success = compilation.isSuccess();
+        compilation.sample = sample;
+        if (metrics != null) {
+            metrics.record(sample);
+        }
+        event.commit(name, sample);
+        return compilation;
+    }
+
+    /**
+     * Compiles one file
+     * @param file the file
+     * @return the result, with the exception if the file cannot be read
+     */
+    public Compilation compile(Path file) {
+        CharSource source;
+        try {
+            source = read(file);
+        } catch (IOException e) {
+            return new Compilation(file.toString(), null, null, List.of(), List.of(), List.of(), e);
+        }
+        return compile(file.toString(), source);
+    }
+
+    /**
+     * Opens a file as ASCII bytes: large files are memory mapped, small ones are read into a heap
+     * buffer, which is cheaper than mapping and unmapping a few hundred bytes. A file over 2 GB, more than
+     * one mapping can hold, is mapped in several windows.
+     * @param file the file
+     * @return the source over the file
+     * @throws IOException if the file cannot be read
+     */
+    static CharSource read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return map(channel, size, WINDOW_SHIFT);
+            }
+            if (size >= MAP_THRESHOLD) {
+                return CharSource.of(channel.map(FileChannel.MapMode.READ_ONLY, 0, size)); // stays valid after close
+            }
+            ByteBuffer bytes = ByteBuffer.allocate((int) size);
+            while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                // read until the buffer is full or the file ends
+            }
+            return CharSource.of(bytes.flip());
+        }
+    }
+
+    /**
+     * Maps a file in consecutive windows, a token may span two of them
+     * @param channel the open file
+     * @param size the file size
+     * @param shift log2 of the window size, at most 30
+     * @return the source over the windows, valid after the channel is closed
+     * @throws IOException if the file cannot be mapped
+     */
+    static CharSource map(FileChannel channel, long size, int shift) throws IOException {
+        long window = 1L << shift;
+        ByteBuffer[] windows = new ByteBuffer[(int) ((size + window - 1) >>> shift)];
+        for (int i = 0; i < windows.length; i++) {
+            long offset = i * window;
+            windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(window, size - offset));
+        }
+        return new CharSource.WindowSource(windows, shift);
+    }
+
+    /**
+     * Compiles files in parallel
+     * @param files the files
+     * @return one result per file, in the order of the files
+     */
+    public List<Compilation> compileAll(List<Path> files) {
+        List<Callable<Compilation>> tasks = new ArrayList<>(files.size());
+        for (Path file : files) {
+            tasks.add(() -> compile(file));
+        }
+        return run(tasks);
+    }
+
+    /**
+     * Compiles every regular file of a directory in parallel, subdirectories are not searched
+     * @param directory the directory
+     * @return one result per file, sorted by file name
+     * @throws IOException if the directory cannot be listed
+     */
+    public List<Compilation> compileDirectory(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> entries = Files.list(directory)) {
+            files = entries.filter(Files::isRegularFile).sorted().toList();
+        }
+        return compileAll(files);
+    }
+
+    /**
+     * Compiles programs held in memory in parallel, they are named by their index
+     * @param programs the program texts
+     * @return one result per program, in the order of the programs
+     */
+    public List<Compilation> compileSources(List<? extends CharSequence> programs) {
+        List<Callable<Compilation>> tasks = new ArrayList<>(programs.size());
+        for (int i = 0; i < programs.size(); i++) {
+            String name = Integer.toString(i);
+            CharSequence program = programs.get(i);
+            tasks.add(() -> compile(name, CharSource.of(program)));
+        }
+        return run(tasks);
+    }
+
+    /**
+     * Runs compilations on a pool of its own, so batches do not compete with the common pool
+     */
+    private List<Compilation> run(List<Callable<Compilation>> tasks) {
+        if (parallelism == 1) {
+            List<Compilation> results = new ArrayList<>(tasks.size());
+            for (Callable<Compilation> task : tasks) {
+                results.add(call(task)); // no pool needed on one thread
+            }
+            return results;
+        }
+        try (ForkJoinPool pool = new ForkJoinPool(parallelism)) {
+            List<Compilation> results = new ArrayList<>(tasks.size());
+            for (Future<Compilation> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while compiling", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause()); // compile() reports errors in its result
+        }
+    }
+
+    private static Compilation call(Callable<Compilation> task) {
+        try {
+            return task.call();
+        } catch (Exception e) {
+            throw new IllegalStateException(e); // compile() reports errors in its result
+        }
+    }
+
+    /**
+     * Result of compiling one program
+     */
+    public static class Compilation {
+        private final String name;
+        private final AbstractSyntaxTree.NodeProgram program; // null if the program does not parse
+        private final ExecutableProgram executable; // null if the program has errors
+        private final List<ParseException> diagnostics; // syntax errors
+        private final List<String> errors; // undeclared variables, empty unless the program parsed
+        private final List<String> warnings; // duplicate declarations, empty unless the program parsed
+        private final IOException failure; // the file could not be read, or null
+        private CompilerMetrics.Sample sample; // measurements, null if the compilation was not measured
+
+        Compilation(String name, AbstractSyntaxTree.NodeProgram program, ExecutableProgram executable,
+                    List<ParseException> diagnostics, List<String> errors, List<String> warnings, IOException failure) {
+            this.name = name;
+            this.program = program;
+            this.executable = executable;
+            this.diagnostics = diagnostics;
+            this.errors = errors;
+            this.warnings = warnings;
+            this.failure = failure;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public AbstractSyntaxTree.NodeProgram getProgram() {
+            return program;
+        }
+
+        public ExecutableProgram getExecutable() {
+            return executable;
+        }
+
+        public List<ParseException> getDiagnostics() {
+            return diagnostics;
+        }
+
+        /**
+         * Returns the semantic errors of a program that parsed, every undeclared variable once, in source order
+         * @return the errors, empty if there are none
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        /**
+         * Returns the warnings of a program that parsed, the duplicate declarations
+         * @return the warnings, empty if there are none
+         */
+        public List<String> getWarnings() {
+            return warnings;
+        }
+
+        /**
+         * Returns the error that stopped the compilation before parsing, when the file cannot be read
+         * @return the error, or null
+         */
+        public IOException getFailure() {
+            return failure;
+        }
+
+        /**
+         * Returns the measurements of the compilation, taken when the Compiler has metrics or a Flight
+         * Recorder recording enables its events
+         * @return the sample, or null
+         */
+        public CompilerMetrics.Sample getSample() {
+            return sample;
+        }
+
+        /**
+         * Tells whether the program compiled without errors
+         * @return true if it can be run
+         */
+        public boolean isSuccess() {
+            return executable != null;
+        }
+
+        @Override
+        public String toString() {
+            String result;
+            if (failure instanceof NoSuchFileException) {
+                result = "no such file";
+            } else if (failure != null) {
+                result = failure.getMessage();
+            } else if (!diagnostics.isEmpty()) {
+                result = diagnostics.toString();
+            } else {
+                result = errors.isEmpty() ? "ok" : errors.toString();
+            }
+            return warnings.isEmpty() ? name + ": " + result : name + ": " + result + ", warnings " + warnings;
+        }
+    }
+}
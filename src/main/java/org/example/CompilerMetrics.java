@@ -0,0 +1,382 @@
+package org.example;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Totals over the compilations of the Compilers it is given to, safe to update from any number of
+ * threads. Read them with snapshot(), or through JMX after register().
+ *
+ * Every measured compilation also emits JDK Flight Recorder events: org.example.CompilePhase for
+ * the parse and resolve phases, and org.example.Compilation with the counts and the time of each
+ * phase, with parsing split into lexing, building the AST and the rest. They are only
+ * written while a recording enables them, e.g. java -XX:StartFlightRecording:filename=compile.jfr.
+ */
+public class CompilerMetrics implements CompilerMetricsMXBean {
+    private final LongAdder compilations = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder symbols = new LongAdder();
+    private final LongAdder lexNanos = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+    private final LongAdder buildNanos = new LongAdder();
+    private final LongAdder resolveNanos = new LongAdder();
+
+    /**
+     * Adds one compilation to the totals
+     * @param sample the measurements of the compilation
+     */
+    void record(Sample sample) {
+        compilations.increment();
+        if (!sample.success) {
+            failures.increment();
+        }
+        tokens.add(sample.tokens);
+        statements.add(sample.statements);
+        nodes.add(sample.nodes);
+        symbols.add(sample.symbols);
+        lexNanos.add(sample.lexNanos);
+        parseNanos.add(sample.parseNanos);
+        buildNanos.add(sample.buildNanos);
+        resolveNanos.add(sample.resolveNanos);
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server as org.example:type=CompilerMetrics,name=...
+     * @param name name that tells these metrics apart from others in the same JVM
+     * @return the name the metrics were registered under
+     * @throws JMException if the name is taken or not valid
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("org.example", "type", "CompilerMetrics");
+        objectName = ObjectName.getInstance(objectName + ",name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Returns the current totals. Counters are read one after the other, so a snapshot taken while
+     * compilations run can be off by the compilations in flight.
+     * @return the totals
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    @Override
+    public void reset() {
+        compilations.reset();
+        failures.reset();
+        tokens.reset();
+        statements.reset();
+        nodes.reset();
+        symbols.reset();
+        lexNanos.reset();
+        parseNanos.reset();
+        buildNanos.reset();
+        resolveNanos.reset();
+    }
+
+    @Override
+    public long getCompilations() {
+        return compilations.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public long getTokens() {
+        return tokens.sum();
+    }
+
+    @Override
+    public long getStatements() {
+        return statements.sum();
+    }
+
+    @Override
+    public long getNodes() {
+        return nodes.sum();
+    }
+
+    @Override
+    public long getSymbols() {
+        return symbols.sum();
+    }
+
+    @Override
+    public long getLexNanos() {
+        return lexNanos.sum();
+    }
+
+    @Override
+    public long getParseNanos() {
+        return parseNanos.sum();
+    }
+
+    @Override
+    public long getBuildNanos() {
+        return buildNanos.sum();
+    }
+
+    @Override
+    public long getResolveNanos() {
+        return resolveNanos.sum();
+    }
+
+    /**
+     * Totals at one point in time
+     */
+    public static class Snapshot {
+        private final long compilations;
+        private final long failures;
+        private final long tokens;
+        private final long statements;
+        private final long nodes;
+        private final long symbols;
+        private final long lexNanos;
+        private final long parseNanos;
+        private final long buildNanos;
+        private final long resolveNanos;
+
+        private Snapshot(CompilerMetrics metrics) {
+            compilations = metrics.getCompilations();
+            failures = metrics.getFailures();
+            tokens = metrics.getTokens();
+            statements = metrics.getStatements();
+            nodes = metrics.getNodes();
+            symbols = metrics.getSymbols();
+            lexNanos = metrics.getLexNanos();
+            parseNanos = metrics.getParseNanos();
+            buildNanos = metrics.getBuildNanos();
+            resolveNanos = metrics.getResolveNanos();
+        }
+
+        public long getCompilations() {
+            return compilations;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getTokens() {
+            return tokens;
+        }
+
+        public long getStatements() {
+            return statements;
+        }
+
+        public long getNodes() {
+            return nodes;
+        }
+
+        public long getSymbols() {
+            return symbols;
+        }
+
+        public long getLexNanos() {
+            return lexNanos;
+        }
+
+        public long getParseNanos() {
+            return parseNanos;
+        }
+
+        public long getBuildNanos() {
+            return buildNanos;
+        }
+
+        public long getResolveNanos() {
+            return resolveNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d compilations (%d failed), %d tokens, %d statements, %d nodes, %d symbols, "
+                            + "lex %.2f ms, parse %.2f ms, build %.2f ms, resolve %.2f ms", compilations, failures,
+                    tokens, statements, nodes, symbols, lexNanos / 1e6, parseNanos / 1e6, buildNanos / 1e6,
+                    resolveNanos / 1e6);
+        }
+    }
+
+    /**
+     * Measurements of one compilation
+     */
+    public static class Sample {
+        long lexNanos; // time spent in the scanner while parsing, estimated by the parser
+        long parseNanos; // time spent parsing, without lexing and building the AST
+        long buildNanos; // time spent creating AST nodes while parsing, estimated by the parser
+        long resolveNanos; // time to resolve the variables, 0 if the program did not parse
+        int tokens; // tokens read by the parser
+        int statements; // statements parsed, nested ones included
+        int nodes; // AST nodes created
+        int symbols; // distinct variables declared
+        boolean success; // true if the program compiled
+
+        public long getLexNanos() {
+            return lexNanos;
+        }
+
+        public long getParseNanos() {
+            return parseNanos;
+        }
+
+        public long getBuildNanos() {
+            return buildNanos;
+        }
+
+        public long getResolveNanos() {
+            return resolveNanos;
+        }
+
+        public int getTokens() {
+            return tokens;
+        }
+
+        public int getStatements() {
+            return statements;
+        }
+
+        public int getNodes() {
+            return nodes;
+        }
+
+        public int getSymbols() {
+            return symbols;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d tokens, %d statements, %d nodes, %d symbols, lex %.2f ms, parse %.2f ms, "
+                    + "build %.2f ms, resolve %.2f ms", tokens, statements, nodes, symbols, lexNanos / 1e6,
+                    parseNanos / 1e6, buildNanos / 1e6, resolveNanos / 1e6);
+        }
+    }
+
+    /**
+     * JFR event for one phase of a compilation
+     */
+    @Name("org.example.CompilePhase")
+    @Label("Compile Phase")
+    @Category({"CSC345", "Compiler"})
+    @Description("Parsing, lexing included, or resolving one program")
+    static final class PhaseEvent extends Event {
+        @Label("Program")
+        String program;
+
+        @Label("Phase")
+        String phase;
+
+        private transient long started; // System.nanoTime() at the start, not recorded
+
+        /**
+         * Starts timing a phase
+         * @param program name of the program
+         * @param phase name of the phase
+         * @return the event, to pass to end()
+         */
+        static PhaseEvent start(String program, String phase) {
+            PhaseEvent event = new PhaseEvent();
+            event.program = program;
+            event.phase = phase;
+            event.begin();
+            event.started = System.nanoTime();
+            return event;
+        }
+
+        /**
+         * Ends the phase and records the event if a recording enables it
+         * @return the time of the phase in nanoseconds
+         */
+        long stop() {
+            long nanos = System.nanoTime() - started;
+            commit(); // ends the event, and does nothing when it is not enabled
+            return nanos;
+        }
+    }
+
+    /**
+     * JFR event for a whole compilation with its counts
+     */
+    @Name("org.example.Compilation")
+    @Label("Compilation")
+    @Category({"CSC345", "Compiler"})
+    @Description("One program compiled by a Compiler")
+    static final class CompilationEvent extends Event {
+        @Label("Program")
+        String program;
+
+        @Label("Success")
+        boolean success;
+
+        @Label("Tokens")
+        int tokens;
+
+        @Label("Statements")
+        int statements;
+
+        @Label("Nodes")
+        int nodes;
+
+        @Label("Symbols")
+        int symbols;
+
+        @Label("Lex Time")
+        @Timespan
+        long lexTime;
+
+        @Label("Parse Time")
+        @Timespan
+        long parseTime;
+
+        @Label("Build Time")
+        @Timespan
+        long buildTime;
+
+        @Label("Resolve Time")
+        @Timespan
+        long resolveTime;
+
+        /**
+         * Copies a sample into the event and records it if a recording enables it
+         * @param name name of the program
+         * @param sample the measurements
+         */
+        void commit(String name, Sample sample) {
+            end();
+            if (!shouldCommit()) {
+                return;
+            }
+            program = name;
+            success = sample.success;
+            tokens = sample.tokens;
+            statements = sample.statements;
+            nodes = sample.nodes;
+            symbols = sample.symbols;
+            lexTime = sample.lexNanos;
+            parseTime = sample.parseNanos;
+            buildTime = sample.buildNanos;
+            resolveTime = sample.resolveNanos;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.example;
+
+/**
+ * JMX view of CompilerMetrics, every value is a total since the metrics were created or reset
+ */
+public interface CompilerMetricsMXBean {
+    long getCompilations();
+
+    long getFailures();
+
+    long getTokens();
+
+    long getStatements();
+
+    long getNodes();
+
+    long getSymbols();
+
+    long getLexNanos();
+
+    long getParseNanos();
+
+    long getBuildNanos();
+
+    long getResolveNanos();
+
+    /**
+     * Sets every counter back to 0
+     */
+    void reset();
+}
@@ -0,0 +1,273 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line driver, run through Main with arguments:
+ *
+ * java org.example.Main [--lex] [--parse] [--dump] [--run] [--optimize] [--stream] [--time] [file ... | -]
+ *
+ * Files are scanned as ASCII bytes in place, large ones memory mapped, so the program text never
+ * becomes a String on the heap; "-" or no file reads standard input (Main without any argument still
+ * runs its built-in example). Standard input is scanned on a thread of its own while it is parsed when
+ * there is more than one core. Without phase flags a program is parsed and run. --lex only counts the
+ * tokens, --dump prints the AST, --time prints the time of each phase to standard error. --optimize
+ * runs the program through the SSA Optimizer and the register VM instead of the interpreter. --stream
+ * runs each top level statement as soon as it is read, in constant memory, see StreamingRunner.
+ */
+public class Driver {
+    private boolean lex; // count the tokens in a separate pass
+    private boolean parse; // build the AST
+    private boolean dump; // print the AST
+    private boolean run; // interpret the program
+    private boolean optimize; // run the optimized register code instead
+    private boolean stream; // run statements as they are read, without keeping the AST
+    private boolean time; // report the time of every phase
+    private final List<String> files = new ArrayList<>();
+    private final Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII), 1 << 16);
+    private final PrintStream err = System.err;
+
+    /**
+     * Runs the driver
+     * @param args flags and file names
+     * @return the exit status, 0 if every file was processed without error
+     */
+    public static int run(String[] args) {
+        Driver driver = new Driver();
+        if (!driver.options(args)) {
+            return 2;
+        }
+        return driver.runAll();
+    }
+
+    /**
+     * Reads the command line
+     * @return false if it is not valid
+     */
+    private boolean options(String[] args) {
+        for (String arg : args) {
+            switch (arg) {
+                case "--lex" -> lex = true;
+                case "--parse" -> parse = true;
+                case "--dump" -> dump = true;
+                case "--run" -> run = true;
+                case "--optimize" -> optimize = true;
+                case "--stream" -> stream = true;
+                case "--time" -> time = true;
+                default -> {
+                    if (arg.startsWith("--")) {
+                        err.println("Unknown option: " + arg);
+                        err.println("Usage: java org.example.Main [--lex] [--parse] [--dump] [--run] [--optimize] [--stream] [--time] [file ... | -]");
+                        return false;
+                    }
+                    files.add(arg);
+                }
+            }
+        }
+        if (!lex && !parse && !dump && !run) {
+            parse = run = true; // the default is to compile and run
+        }
+        run |= optimize;
+        parse |= dump || run;
+        if (files.isEmpty()) {
+            files.add("-");
+        }
+        return true;
+    }
+
+    private int runAll() {
+        int status = 0;
+        for (String file : files) {
+            try {
+                if (!process(file)) {
+                    status = 1;
+                }
+            } catch (NoSuchFileException e) {
+                err.println(file + ": no such file");
+                status = 1;
+            } catch (IOException | RuntimeException e) {
+                err.println(file + ": " + e.getMessage());
+                status = 1;
+            }
+        }
+        try {
+            out.flush();
+        } catch (IOException e) {
+            err.println(e.getMessage());
+            status = 1;
+        }
+        return status;
+    }
+
+    /**
+     * Runs the requested phases on one file
+     * @param file path of the file, or "-" for standard input
+     * @return false if the program has errors
+     * @throws IOException if the file cannot be read
+     */
+    private boolean process(String file) throws IOException {
+        long start = System.nanoTime();
+        long size = -1; // unknown for standard input
+        CharSource source;
+        if (file.equals("-")) {
+            source = CharSource.of(new InputStreamReader(System.in, StandardCharsets.ISO_8859_1)); // one char per byte
+        } else {
+            size = Files.size(Path.of(file));
+            source = Compiler.read(Path.of(file)); // large files are mapped
+        }
+        timing(file, "open", start, size);
+
+        if (stream) {
+            return stream(file, source, size);
+        }
+        if (lex && parse && size < 0) {
+            err.println(file + ": standard input can only be read once, use a file to lex and parse it");
+            return false;
+        }
+        if (lex) {
+            start = System.nanoTime();
+            MyScanner scanner = new MyScanner(source);
+            long tokens = 0;
+            while (scanner.scan() != MyScanner.TOKEN.SCANEOF) {
+                tokens++;
+            }
+            timing(file, "lex", start, size);
+            out.write(file + ": " + tokens + " tokens\n");
+        }
+        if (!parse) {
+            return true;
+        }
+
+        start = System.nanoTime();
+        MyParser parser = new MyParser();
+        parser.setPipelined(size < 0 && Runtime.getRuntime().availableProcessors() > 1); // scan stdin while parsing
+        boolean parsed = parser.parse(source);
+        timing(file, "parse", start, size);
+        if (time) {
+            err.println(file + ": " + parser.getTokenCount() + " tokens, " + parser.getStatementCount() + " statements, "
+                    + parser.getAst().getNodeCount() + " nodes, " + parser.getSymbolCount() + " symbols");
+        }
+        if (!parsed) {
+            for (ParseException e : parser.getDiagnostics()) {
+                err.println(file + ": " + e); // print every error with its position
+            }
+            return false;
+        }
+        AbstractSyntaxTree.NodeProgram program = parser.getAst().getRoot();
+
+        if (dump) {
+            start = System.nanoTime();
+            AstDumper.dump(program, out);
+            timing(file, "dump", start, -1);
+        }
+        if (run) {
+            start = System.nanoTime();
+            Resolver resolver = new Resolver();
+            int slots = resolver.resolve(program);
+            timing(file, "resolve", start, -1);
+            for (String warning : resolver.getWarnings()) {
+                err.println(file + ": warning: " + warning);
+            }
+            if (resolver.hasErrors()) {
+                for (String error : resolver.getErrors()) {
+                    err.println(file + ": " + error);
+                }
+                return false;
+            }
+            ExecutableProgram executable = optimize ? optimized(file, program) : new Interpreter(program, slots);
+            start = System.nanoTime();
+            OutputBuffer output = new OutputBuffer(out); // printed values go straight to the writer
+            int executed = executable.run(executable.newFrame(), output);
+            output.flush();
+            timing(file, "run", start, -1);
+            if (time) {
+                err.println(file + ": " + executed + " statements executed");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs a program statement by statement as it is read, other phase flags are ignored
+     * @param file the file being processed
+     * @param source the program text
+     * @param size size of the file, or -1
+     * @return false if the program has errors
+     */
+    private boolean stream(String file, CharSource source, long size) {
+        long start = System.nanoTime();
+        OutputBuffer output = new OutputBuffer(out);
+        StreamingRunner runner = new StreamingRunner(output);
+        if (time) {
+            runner.setProgress(1 << 20, (statements, perSecond) ->
+                    err.printf("%s: %d statements, %.2f M stmts/s%n", file, statements, perSecond / 1e6));
+        }
+        boolean ran = runner.run(source);
+        output.flush();
+        timing(file, "stream", start, size);
+        if (time) {
+            err.printf("%s: %d statements, %d executed, %.2f M stmts/s%n", file, runner.getStatements(),
+                    runner.getExecuted(), runner.getStatementsPerSecond() / 1e6);
+        }
+        for (ParseException e : runner.getDiagnostics()) {
+            err.println(file + ": " + e);
+        }
+        for (String error : runner.getErrors()) {
+            err.println(file + ": " + error);
+        }
+        return ran;
+    }
+
+    /**
+     * Builds the SSA form of a resolved program, optimizes it and lowers it to register code
+     * @param file the file being processed
+     * @param program root of the AST
+     * @return the register VM over the optimized code
+     */
+    private ExecutableProgram optimized(String file, AbstractSyntaxTree.NodeProgram program) {
+        long start = System.nanoTime();
+        SsaProgram ssa = SsaProgram.build(program);
+        int size = ssa.size();
+        Optimizer optimizer = new Optimizer();
+        optimizer.optimize(ssa);
+        RegisterVM vm = new RegisterVM(ssa.lower());
+        timing(file, "optimize", start, -1);
+        if (time) {
+            err.println(file + ": " + size + " instructions, " + ssa.size() + " after " + optimizer.getRounds() + " rounds");
+            for (String line : optimizer.report().split("\n")) {
+                err.println(file + ":   " + line);
+            }
+        }
+        return vm;
+    }
+
+    /**
+     * Prints the time of a phase when timing is on
+     * @param file the file being processed
+     * @param phase name of the phase
+     * @param start System.nanoTime() at the start of the phase
+     * @param bytes size of the input for a throughput figure, or -1
+     */
+    private void timing(String file, String phase, long start, long bytes) {
+        if (!time) {
+            return;
+        }
+        double millis = (System.nanoTime() - start) / 1e6;
+        if (bytes > 0 && !phase.equals("open")) {
+            err.printf("%s: %-8s %10.2f ms  %8.1f MB/s%n", file, phase, millis, bytes / 1e3 / millis);
+        } else {
+            err.printf("%s: %-8s %10.2f ms%n", file, phase, millis);
+        }
+    }
+}
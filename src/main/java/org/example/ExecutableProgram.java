@@ -0,0 +1,40 @@
+package org.example;
+
+/**
+ * A program ready to run, whatever backend produced it. Variables live in an int array frame
+ * indexed by the slots assigned when the program was resolved.
+ */
+public interface ExecutableProgram {
+    /**
+     * Returns the number of variables of the program
+     * @return the frame size
+     */
+    int getSlots();
+
+    /**
+     * Runs the program in a given frame, which can be reused between runs
+     * @param frame variable values indexed by slot
+     * @param out buffer for printed values
+     * @return the number of statements executed
+     */
+    int run(int[] frame, OutputBuffer out);
+
+    /**
+     * Creates a frame with every variable set to 0
+     * @return the frame
+     */
+    default int[] newFrame() {
+        return new int[getSlots()];
+    }
+
+    /**
+     * Runs the program in a fresh frame
+     * @param out buffer for printed values
+     * @return the final value of every variable, indexed by slot
+     */
+    default int[] run(OutputBuffer out) {
+        int[] frame = newFrame();
+        run(frame, out);
+        return frame;
+    }
+}
@@ -0,0 +1,100 @@
+package org.example;
+
+/**
+ * Editable program text for IncrementalParser. The characters are kept in one array with a gap at
+ * the last edit, so a run of edits at the same place only moves the characters between them.
+ */
+public class GapBuffer implements CharSource {
+    private char[] chars; // text before the gap, the gap, then text after the gap
+    private int gapStart; // index of the first character of the gap
+    private int gapEnd; // index after the last character of the gap
+
+    /**
+     * One parameter constructor
+     * @param text the initial text
+     */
+    public GapBuffer(CharSequence text) {
+        chars = new char[text.length() + 64];
+        for (int i = 0; i < text.length(); i++) {
+            chars[i] = text.charAt(i);
+        }
+        gapStart = text.length();
+        gapEnd = chars.length;
+    }
+
+    @Override
+    public int charAt(long index) {
+        if (index < gapStart) {
+            return chars[(int) index];
+        }
+        index += gapEnd - gapStart;
+        return index < chars.length ? chars[(int) index] : EOF;
+    }
+
+    /**
+     * Returns the number of characters of the text
+     * @return the length
+     */
+    public long length() {
+        return size();
+    }
+
+    /**
+     * Returns the number of characters of the text as an int, a GapBuffer is one array
+     * @return the length
+     */
+    int size() {
+        return chars.length - (gapEnd - gapStart);
+    }
+
+    /**
+     * Replaces a range of the text
+     * @param offset index of the first character replaced
+     * @param removed number of characters removed
+     * @param inserted text inserted in their place
+     */
+    public void replace(int offset, int removed, CharSequence inserted) {
+        if (offset < 0 || removed < 0 || offset + removed > size()) {
+            throw new IndexOutOfBoundsException("Bad edit " + offset + ", " + removed + " for length " + size());
+        }
+        moveGap(offset);
+        gapEnd += removed; // the removed characters join the gap
+        if (gapEnd - gapStart < inserted.length()) {
+            grow(inserted.length());
+        }
+        for (int i = 0; i < inserted.length(); i++) {
+            chars[gapStart++] = inserted.charAt(i);
+        }
+    }
+
+    private void moveGap(int offset) {
+        if (offset < gapStart) {
+            int n = gapStart - offset;
+            System.arraycopy(chars, offset, chars, gapEnd - n, n);
+            gapStart -= n;
+            gapEnd -= n;
+        } else if (offset > gapStart) {
+            int n = offset - gapStart;
+            System.arraycopy(chars, gapEnd, chars, gapStart, n);
+            gapStart += n;
+            gapEnd += n;
+        }
+    }
+
+    private void grow(int needed) {
+        int after = chars.length - gapEnd;
+        char[] grown = new char[Math.max(chars.length * 2, size() + needed + 64)];
+        System.arraycopy(chars, 0, grown, 0, gapStart);
+        System.arraycopy(chars, gapEnd, grown, grown.length - after, after);
+        gapEnd = grown.length - after;
+        chars = grown;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(size());
+        sb.append(chars, 0, gapStart);
+        sb.append(chars, gapEnd, chars.length - gapEnd);
+        return sb.toString();
+    }
+}
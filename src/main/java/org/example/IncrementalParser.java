@@ -0,0 +1,250 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps a program parsed while it is being edited. The program is split into top level items, one per
+ * declaration, statement (a whole if ... endif block) or skipped stray token, each spanning from its
+ * first token to the first token of the next item. An edit reparses from the item before the damaged
+ * one until the parser reaches the start of an unchanged item in the same state, and keeps every other
+ * item and its AST node as they are. The result, AST and diagnostics, is always the same as parsing
+ * the whole text with recovery on.
+ *
+ * Item positions and list indexes after the last edit are stored relative to the end of the text and
+ * of the lists, like the characters of the GapBuffer, so an edit does not have to shift them.
+ */
+public class IncrementalParser {
+    private final GapBuffer text; // the current program text
+    private final List<Item> items = new ArrayList<>(); // top level items in source order
+    private int gap; // items before this index have absolute positions, the others relative ones
+    private final List<ParseException> leading = new ArrayList<>(); // lexical errors before the first item
+    private final AbstractSyntaxTree.NodeProgram program; // updated in place by every edit
+    private int reparsed; // number of items parsed by the last edit
+
+    /**
+     * One top level declaration, statement or skipped token
+     */
+    private static class Item {
+        int start; // position of the first token, minus the text length for items at or after the gap
+        int index; // index of the node, or of the next node, in its list, minus the list size at or after the gap
+        boolean declaration; // parsed while the program was still in its declarations
+        AbstractSyntaxTree.NodeBase node; // the NodeId or NodeStmt, null if the item has errors
+        ParseException[] errors; // errors of the item with positions relative to start, null if none
+    }
+
+    /**
+     * One parameter constructor, parses the whole text
+     * @param program the program text
+     */
+    public IncrementalParser(CharSequence program) {
+        text = new GapBuffer(program);
+        AbstractSyntaxTree ast = new AbstractSyntaxTree();
+        this.program = ast.new NodeProgram(ast.new NodeDecls(), ast.new NodeStmts());
+        ast.setRoot(this.program);
+        reparse(0, 0, 0);
+    }
+
+    /**
+     * Applies an edit to the text and reparses the items it damaged
+     * @param offset index of the first character replaced
+     * @param removed number of characters removed
+     * @param inserted text inserted in their place
+     * @throws IndexOutOfBoundsException if the range is not in the text
+     */
+    public void edit(int offset, int removed, CharSequence inserted) {
+        int k = findItem(offset); // item the edit starts in, -1 before the first item
+        int first = k - 1; // the previous item can depend on the first token of this one
+        if (k > 0 && start(k) == offset) {
+            first--; // an item of one token, like a stray 999 before if, can grow into the edit
+        }
+        first = Math.max(0, first);
+        moveGap(first);
+        int oldLength = text.size();
+        text.replace(offset, removed, inserted);
+        reparse(first, offset + removed - oldLength, oldLength);
+    }
+
+    /**
+     * Reparses from an item until the parse reaches an unchanged item
+     * @param first index of the first item to reparse, the gap is at this index
+     * @param damageEnd end of the edited range in the old text, minus the old text length
+     * @param oldLength length of the text before the edit
+     */
+    private void reparse(int first, int damageEnd, int oldLength) {
+        int newLength = text.size();
+        boolean declaration = first == 0 || items.get(first).declaration; // every program starts in its declarations
+        int from = first == 0 ? 0 : items.get(first).start + oldLength; // the first item may follow lexical errors
+        MyParser parser = new MyParser();
+        parser.setRecovery(true);
+        parser.start(text, from);
+        if (first == 0) {
+            leading.clear();
+            leading.addAll(parser.getDiagnostics());
+        }
+
+        AbstractSyntaxTree.NodeDecls decls = program.decls;
+        AbstractSyntaxTree.NodeStmts stmts = program.stmts;
+        int declIndex = first == 0 ? 0 : declaration ? indexOf(first, decls.decls.size()) : decls.decls.size();
+        int stmtIndex = first == 0 || declaration ? 0 : indexOf(first, stmts.stmts.size());
+        AbstractSyntaxTree.NodeDecls newDecls = parser.getAst().new NodeDecls();
+        AbstractSyntaxTree.NodeStmts newStmts = parser.getAst().new NodeStmts();
+        List<Item> newItems = new ArrayList<>();
+        int last = first; // old items before this one are replaced
+        while (parser.nextToken != MyScanner.TOKEN.SCANEOF) {
+            int position = (int) parser.tokenPosition(); // the text is a GapBuffer, it fits in an int
+            declaration = declaration && parser.nextToken == MyScanner.TOKEN.DECLARE;
+            while (last < items.size() && (items.get(last).start < damageEnd || items.get(last).start + newLength < position)) {
+                last++; // skip old items that were edited or that the parse has gone past
+            }
+            if (last < items.size() && items.get(last).start + newLength == position
+                    && items.get(last).declaration == declaration) {
+                break; // the rest of the program parses as before
+            }
+            Item item = new Item();
+            item.start = position;
+            item.declaration = declaration;
+            item.index = declaration ? declIndex + newDecls.decls.size() : stmtIndex + newStmts.stmts.size();
+            int errors = parser.getDiagnostics().size();
+            int nodes = newDecls.decls.size() + newStmts.stmts.size();
+            parser.topLevel(declaration, newDecls, newStmts);
+            if (newDecls.decls.size() + newStmts.stmts.size() > nodes) {
+                item.node = declaration ? newDecls.decls.get(newDecls.decls.size() - 1)
+                        : newStmts.stmts.get(newStmts.stmts.size() - 1);
+            }
+            List<ParseException> found = parser.getDiagnostics();
+            if (found.size() > errors) {
+                item.errors = new ParseException[found.size() - errors];
+                for (int i = errors; i < found.size(); i++) {
+                    ParseException e = found.get(i);
+                    item.errors[i - errors] = new ParseException(e.getMessage(), e.getToken(), e.getText(),
+                            e.getPosition() - position);
+                }
+            }
+            newItems.add(item);
+        }
+        if (parser.nextToken == MyScanner.TOKEN.SCANEOF) {
+            last = items.size(); // every old item after the edit is gone
+        }
+
+        int removedDecls = 0;
+        int removedStmts = 0;
+        for (int i = first; i < last; i++) {
+            Item item = items.get(i);
+            if (item.node != null) {
+                if (item.declaration) {
+                    removedDecls++;
+                } else {
+                    removedStmts++;
+                }
+            }
+        }
+        decls.decls.subList(declIndex, declIndex + removedDecls).clear();
+        decls.decls.addAll(declIndex, newDecls.decls);
+        stmts.stmts.subList(stmtIndex, stmtIndex + removedStmts).clear();
+        stmts.stmts.addAll(stmtIndex, newStmts.stmts);
+        items.subList(first, last).clear();
+        items.addAll(first, newItems); // absolute positions, the items after them stay relative
+        gap = first + newItems.size();
+        reparsed = newItems.size();
+    }
+
+    /**
+     * Returns the absolute index of an item's node in its list
+     * @param i index of an item at the gap
+     * @param size size of the item's list
+     * @return the index in the list
+     */
+    private int indexOf(int i, int size) {
+        return items.get(i).index + size;
+    }
+
+    /**
+     * Moves the gap, making the positions of the items between the old and the new gap absolute or relative
+     * @param to new index of the gap
+     */
+    private void moveGap(int to) {
+        int length = text.size();
+        int declCount = program.decls.decls.size();
+        int stmtCount = program.stmts.stmts.size();
+        while (gap < to) {
+            Item item = items.get(gap++);
+            item.start += length;
+            item.index += item.declaration ? declCount : stmtCount;
+        }
+        while (gap > to) {
+            Item item = items.get(--gap);
+            item.start -= length;
+            item.index -= item.declaration ? declCount : stmtCount;
+        }
+    }
+
+    /**
+     * Returns the absolute position of an item
+     */
+    private int start(int i) {
+        return i < gap ? items.get(i).start : items.get(i).start + text.size();
+    }
+
+    /**
+     * Finds the last item that starts at or before a position
+     * @param offset the position
+     * @return the index of the item, -1 if the position is before the first item
+     */
+    private int findItem(int offset) {
+        int low = 0;
+        int high = items.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (start(mid) <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Returns the root of the AST, the same node after every edit
+     * @return the program
+     */
+    public AbstractSyntaxTree.NodeProgram getProgram() {
+        return program;
+    }
+
+    /**
+     * Returns the errors of the program in source order
+     * @return the diagnostics, empty if the program is valid
+     */
+    public List<ParseException> getDiagnostics() {
+        List<ParseException> diagnostics = new ArrayList<>(leading);
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            if (item.errors != null) {
+                int start = start(i);
+                for (ParseException e : item.errors) {
+                    diagnostics.add(new ParseException(e.getMessage(), e.getToken(), e.getText(),
+                            e.getPosition() + start));
+                }
+            }
+        }
+        return diagnostics;
+    }
+
+    /**
+     * Returns the current program text
+     * @return the text
+     */
+    public String getText() {
+        return text.toString();
+    }
+
+    /**
+     * Returns the number of top level items the last edit parsed, for measuring how much work it did
+     * @return the number of items
+     */
+    public int getReparsed() {
+        return reparsed;
+    }
+}
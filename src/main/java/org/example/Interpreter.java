@@ -0,0 +1,40 @@
+package org.example;
+
+/**
+ * Executes a parsed program by walking its AST. Every variable is resolved to a slot in an int array
+ * once by a Resolver, when the interpreter is created, so running the program never looks a name up.
+ */
+public class Interpreter implements ExecutableProgram {
+    private final AbstractSyntaxTree.NodeProgram program; // the program to run
+    private final int slots; // number of variables, the size of a frame
+
+    /**
+     * One parameter constructor, resolves the variables of the program
+     * @param program root of the AST
+     * @throws IllegalStateException if the program uses a variable it does not declare
+     */
+    public Interpreter(AbstractSyntaxTree.NodeProgram program) {
+        this.program = program;
+        this.slots = Resolver.check(program);
+    }
+
+    /**
+     * Constructor for a program a Resolver has already resolved without errors
+     * @param program root of the AST
+     * @param slots number of variables returned by the Resolver
+     */
+    Interpreter(AbstractSyntaxTree.NodeProgram program, int slots) {
+        this.program = program;
+        this.slots = slots;
+    }
+
+    @Override
+    public int getSlots() {
+        return slots;
+    }
+
+    @Override
+    public int run(int[] frame, OutputBuffer out) {
+        return program.stmts.execute(frame, out);
+    }
+}
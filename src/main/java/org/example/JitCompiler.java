@@ -0,0 +1,558 @@
+package org.example;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a parsed program to JVM bytecode and loads it as a hidden class, so HotSpot can compile
+ * it like any other Java code. Variables live in local variables while a method runs, calc sums
+ * become iadd sequences and if statements become if_icmpne branches.
+ *
+ * The class file is written by hand, no bytecode library is needed. It uses class file version 49,
+ * which the JVM verifies by type inference, so no stack map frames have to be computed. Statements
+ * are split into methods of at most CHUNK_SIZE bytes of code, small enough for the JIT to compile
+ * them and far below the 64 KB limit of a method.
+ *
+ * A class file holds at most 65535 constants and 65535 methods. A program that needs more, for example
+ * one with tens of thousands of distinct large literals, is run by the Interpreter instead.
+ */
+public class JitCompiler {
+    private static final int CHUNK_SIZE = 6000; // estimated bytecode size per generated method
+    private static final int PART_SIZE = 800; // operands of a huge sum added up by one generated method
+    private static final int FIRST_VAR = 3; // locals 0, 1 and 2 hold the frame, the output and the count
+    private static final String CLASS_NAME = "org/example/JitProgram";
+    private static final String CHUNK_DESCRIPTOR = "([ILorg/example/OutputBuffer;)I";
+    private static final int MAX_COUNT = 0xFFFF; // largest constant_pool_count and methods_count of a class file
+
+    private final ConstantPool pool = new ConstantPool();
+    private final List<byte[]> methods = new ArrayList<>(); // encoded method_info structures
+    private final List<List<AbstractSyntaxTree.NodeStmt>> pending = new ArrayList<>(); // chunks left to emit
+    private int slots; // number of variables of the program
+    private int parts; // number of generated methods for parts of huge sums
+
+    /**
+     * Compiles a program into a hidden class, or into an Interpreter if it does not fit in one class file
+     * @param program root of the AST
+     * @return the compiled program
+     * @throws IllegalStateException if the program uses a variable it does not declare
+     */
+    public static ExecutableProgram compile(AbstractSyntaxTree.NodeProgram program) {
+        return compile(program, new ArrayList<>());
+    }
+
+    /**
+     * Compiles a program into a hidden class, or into an Interpreter if it does not fit in one class file
+     * @param program root of the AST
+     * @param warnings receives the reason when the program falls back to the Interpreter
+     * @return the compiled program
+     * @throws IllegalStateException if the program uses a variable it does not declare
+     */
+    public static ExecutableProgram compile(AbstractSyntaxTree.NodeProgram program, List<String> warnings) {
+        JitCompiler compiler = new JitCompiler();
+        byte[] bytes = compiler.classFile(program);
+        if (bytes == null) {
+            warnings.add("Program needs more than " + MAX_COUNT
+                    + " constants or methods, more than a class file holds, running it with the interpreter");
+            return new Interpreter(program, compiler.slots);
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return (ExecutableProgram) lookup.findConstructor(lookup.lookupClass(),
+                    MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not load compiled program", e);
+        }
+    }
+
+    /**
+     * Generates the class file of a program
+     * @param program root of the AST
+     * @return the class file, or null if the program needs more constants or methods than a class file holds
+     */
+    byte[] classFile(AbstractSyntaxTree.NodeProgram program) {
+        slots = Resolver.check(program);
+        int thisClass = pool.classRef(CLASS_NAME);
+        int superClass = pool.classRef("java/lang/Object");
+        int iface = pool.classRef("org/example/ExecutableProgram");
+
+        constructor(superClass);
+        getSlots();
+        runMethod(thisClass, chunks(program.stmts.stmts));
+        for (int i = 0; i < pending.size() && fits(); i++) {
+            chunkMethod(i, pending.get(i), thisClass); // chunks can add more chunks for large if bodies
+        }
+        if (!fits()) {
+            return null; // emitting stops at the first chunk past a limit
+        }
+
+        Bytes out = new Bytes();
+        out.u4(0xCAFEBABE);
+        out.u2(0).u2(49); // minor, major version
+        pool.write(out);
+        out.u2(0x31); // ACC_PUBLIC | ACC_FINAL | ACC_SUPER
+        out.u2(thisClass).u2(superClass);
+        out.u2(1).u2(iface);
+        out.u2(0); // no fields
+        out.u2(methods.size());
+        for (byte[] method : methods) {
+            out.bytes(method);
+        }
+        out.u2(0); // no attributes
+        return out.toByteArray();
+    }
+
+    /**
+     * Checks the constants and methods emitted so far against the limits of a class file
+     * @return true if they still fit
+     */
+    private boolean fits() {
+        return pool.count <= MAX_COUNT && methods.size() <= MAX_COUNT;
+    }
+
+    /**
+     * Splits statements into groups that each fit in one generated method and queues them
+     * @return the indexes of the queued chunks
+     */
+    private List<Integer> chunks(List<AbstractSyntaxTree.NodeStmt> stmts) {
+        List<Integer> indexes = new ArrayList<>();
+        List<AbstractSyntaxTree.NodeStmt> chunk = new ArrayList<>();
+        int size = 0;
+        for (AbstractSyntaxTree.NodeStmt stmt : stmts) {
+            int stmtSize = Math.min(estimate(stmt), CHUNK_SIZE); // large if bodies get their own chunks
+            if (size + stmtSize > CHUNK_SIZE && !chunk.isEmpty()) {
+                indexes.add(queue(chunk));
+                chunk = new ArrayList<>();
+                size = 0;
+            }
+            chunk.add(stmt);
+            size += stmtSize;
+        }
+        if (!chunk.isEmpty()) {
+            indexes.add(queue(chunk));
+        }
+        return indexes;
+    }
+
+    private int queue(List<AbstractSyntaxTree.NodeStmt> chunk) {
+        pending.add(chunk);
+        return pending.size() - 1;
+    }
+
+    /**
+     * Estimates the bytecode size of a statement, including loading and storing its variables
+     */
+    private static int estimate(AbstractSyntaxTree.NodeStmt stmt) {
+        if (stmt instanceof AbstractSyntaxTree.NodeCalc calc) {
+            return 30 + estimate(calc.expr);
+        }
+        if (stmt instanceof AbstractSyntaxTree.NodeIf nodeIf) {
+            int size = 60;
+            for (AbstractSyntaxTree.NodeStmt inner : nodeIf.getStmts().stmts) {
+                size += estimate(inner);
+                if (size > CHUNK_SIZE) {
+                    break; // too big to inline anyway
+                }
+            }
+            return size;
+        }
+        return 30; // set and print
+    }
+
+    private static int estimate(AbstractSyntaxTree.NodeExpr expr) {
+        if (expr instanceof AbstractSyntaxTree.NodeSum sum) {
+            int size = 0;
+            for (AbstractSyntaxTree.NodeExpr operand : sum.operands) {
+                size += estimate(operand) + 1;
+            }
+            return size;
+        }
+        return expr instanceof AbstractSyntaxTree.NodeId ? 22 : 5;
+    }
+
+    /**
+     * public JitProgram() { super(); }
+     */
+    private void constructor(int superClass) {
+        Code code = new Code();
+        code.op(0x2a); // aload_0
+        code.op(0xb7).u2(pool.methodRef(superClass, "<init>", "()V")); // invokespecial
+        code.op(0xb1); // return
+        method(0x0001, "<init>", "()V", code, 1);
+    }
+
+    /**
+     * public int getSlots() { return slots; }
+     */
+    private void getSlots() {
+        Code code = new Code();
+        code.pushInt(slots, pool);
+        code.op(0xac); // ireturn
+        method(0x0001, "getSlots", "()I", code, 1);
+    }
+
+    /**
+     * public int run(int[] frame, OutputBuffer out) calls every top level chunk in order
+     */
+    private void runMethod(int thisClass, List<Integer> chunks) {
+        Code code = new Code();
+        code.op(0x03).op(0x3e); // iconst_0, istore_3
+        for (int chunk : chunks) {
+            code.op(0x2b).op(0x2c); // aload_1, aload_2
+            code.op(0xb8).u2(pool.methodRef(thisClass, "chunk" + chunk, CHUNK_DESCRIPTOR)); // invokestatic
+            code.op(0x1d).op(0x60).op(0x3e); // iload_3, iadd, istore_3
+        }
+        code.op(0x1d).op(0xac); // iload_3, ireturn
+        method(0x0001, "run", CHUNK_DESCRIPTOR, code, 4);
+    }
+
+    /**
+     * private static int chunkN(int[] frame, OutputBuffer out) loads the variables it uses into locals,
+     * runs its statements, stores the variables back and returns the number of statements executed
+     */
+    private void chunkMethod(int index, List<AbstractSyntaxTree.NodeStmt> stmts, int thisClass) {
+        Map<Integer, Integer> localBySlot = new HashMap<>();
+        for (AbstractSyntaxTree.NodeStmt stmt : stmts) {
+            collect(stmt, localBySlot);
+        }
+        Code code = new Code();
+        code.op(0x03).op(0x3d); // iconst_0, istore_2
+        load(code, localBySlot);
+        statements(code, stmts, localBySlot, thisClass);
+        store(code, localBySlot);
+        code.op(0x1c).op(0xac); // iload_2, ireturn
+        method(0x000a, "chunk" + index, CHUNK_DESCRIPTOR, code, FIRST_VAR + localBySlot.size());
+    }
+
+    /**
+     * Assigns a local to every variable a statement uses, if bodies that get their own chunks excluded
+     */
+    private static void collect(AbstractSyntaxTree.NodeStmt stmt, Map<Integer, Integer> localBySlot) {
+        if (stmt instanceof AbstractSyntaxTree.NodeSet set) {
+            collect(set.id, localBySlot);
+        } else if (stmt instanceof AbstractSyntaxTree.NodeCalc calc) {
+            collect(calc.id, localBySlot);
+            if (estimate(stmt) <= CHUNK_SIZE) {
+                collect(calc.expr, localBySlot); // huge sums read their operands from the frame
+            }
+        } else if (stmt instanceof AbstractSyntaxTree.NodePrint print) {
+            collect(print.id, localBySlot);
+        } else if (stmt instanceof AbstractSyntaxTree.NodeIf nodeIf) {
+            collect(nodeIf.lhs, localBySlot);
+            collect(nodeIf.rhs, localBySlot);
+            if (estimate(stmt) <= CHUNK_SIZE) {
+                for (AbstractSyntaxTree.NodeStmt inner : nodeIf.getStmts().stmts) {
+                    collect(inner, localBySlot);
+                }
+            }
+        }
+    }
+
+    private static void collect(AbstractSyntaxTree.NodeExpr expr, Map<Integer, Integer> localBySlot) {
+        if (expr instanceof AbstractSyntaxTree.NodeSum sum) {
+            for (AbstractSyntaxTree.NodeExpr operand : sum.operands) {
+                collect(operand, localBySlot); // operands are never sums
+            }
+        } else if (expr instanceof AbstractSyntaxTree.NodeId id) {
+            localBySlot.putIfAbsent(id.slot, FIRST_VAR + localBySlot.size());
+        }
+    }
+
+    /**
+     * local = frame[slot] for every variable of the method
+     */
+    private void load(Code code, Map<Integer, Integer> localBySlot) {
+        for (Map.Entry<Integer, Integer> var : localBySlot.entrySet()) {
+            code.op(0x2a); // aload_0
+            code.pushInt(var.getKey(), pool);
+            code.op(0x2e); // iaload
+            code.istore(var.getValue());
+        }
+    }
+
+    /**
+     * frame[slot] = local for every variable of the method
+     */
+    private void store(Code code, Map<Integer, Integer> localBySlot) {
+        for (Map.Entry<Integer, Integer> var : localBySlot.entrySet()) {
+            code.op(0x2a); // aload_0
+            code.pushInt(var.getKey(), pool);
+            code.iload(var.getValue());
+            code.op(0x4f); // iastore
+        }
+    }
+
+    /**
+     * Emits a sequence of statements and adds their number to the count in local 2
+     */
+    private void statements(Code code, List<AbstractSyntaxTree.NodeStmt> stmts,
+                            Map<Integer, Integer> localBySlot, int thisClass) {
+        code.iinc(2, stmts.size());
+        for (AbstractSyntaxTree.NodeStmt stmt : stmts) {
+            if (stmt instanceof AbstractSyntaxTree.NodeSet set) {
+                code.pushInt(set.intLiteral.intLiteral, pool);
+                code.istore(localBySlot.get(set.id.slot));
+            } else if (stmt instanceof AbstractSyntaxTree.NodeCalc calc) {
+                if (estimate(stmt) <= CHUNK_SIZE) {
+                    expression(code, calc.expr, localBySlot);
+                } else {
+                    hugeSum(code, (AbstractSyntaxTree.NodeSum) calc.expr, localBySlot, thisClass);
+                }
+                code.istore(localBySlot.get(calc.id.slot));
+            } else if (stmt instanceof AbstractSyntaxTree.NodePrint print) {
+                code.op(0x2b); // aload_1
+                code.iload(localBySlot.get(print.id.slot));
+                code.op(0xb6).u2(pool.methodRef(pool.classRef("org/example/OutputBuffer"), "println", "(I)V"));
+            } else if (stmt instanceof AbstractSyntaxTree.NodeIf nodeIf) {
+                ifStatement(code, nodeIf, localBySlot, thisClass);
+            }
+        }
+    }
+
+    /**
+     * Emits an if statement, inline when the body is small and as calls to chunks when it is not
+     */
+    private void ifStatement(Code code, AbstractSyntaxTree.NodeIf nodeIf,
+                             Map<Integer, Integer> localBySlot, int thisClass) {
+        code.iload(localBySlot.get(nodeIf.lhs.slot));
+        code.iload(localBySlot.get(nodeIf.rhs.slot));
+        int branch = code.branch(0xa0); // if_icmpne
+        if (estimate(nodeIf) <= CHUNK_SIZE) {
+            statements(code, nodeIf.getStmts().stmts, localBySlot, thisClass);
+            code.target(branch);
+        } else {
+            store(code, localBySlot); // the chunks of the body work on the frame
+            for (int chunk : chunks(nodeIf.getStmts().stmts)) {
+                code.op(0x2a).op(0x2b); // aload_0, aload_1
+                code.op(0xb8).u2(pool.methodRef(thisClass, "chunk" + chunk, CHUNK_DESCRIPTOR)); // invokestatic
+                code.op(0x1c).op(0x60).op(0x3d); // iload_2, iadd, istore_2
+            }
+            load(code, localBySlot);
+            code.target(branch);
+        }
+    }
+
+    /**
+     * Emits a sum too large for one method as calls to methods that each add up part of it
+     */
+    private void hugeSum(Code code, AbstractSyntaxTree.NodeSum sum, Map<Integer, Integer> localBySlot,
+                         int thisClass) {
+        store(code, localBySlot); // the parts read the operands from the frame
+        for (int from = 0; from < sum.operands.length; from += PART_SIZE) {
+            String name = "part" + parts++;
+            Code part = new Code();
+            int to = Math.min(from + PART_SIZE, sum.operands.length);
+            for (int i = from; i < to; i++) {
+                if (sum.operands[i] instanceof AbstractSyntaxTree.NodeId id) {
+                    part.op(0x2a); // aload_0
+                    part.pushInt(id.slot, pool);
+                    part.op(0x2e); // iaload
+                } else {
+                    part.pushInt(((AbstractSyntaxTree.NodeIntLiteral) sum.operands[i]).intLiteral, pool);
+                }
+                if (i > from) {
+                    part.op(0x60); // iadd
+                }
+            }
+            part.op(0xac); // ireturn
+            method(0x000a, name, "([I)I", part, 1);
+
+            code.op(0x2a); // aload_0
+            code.op(0xb8).u2(pool.methodRef(thisClass, name, "([I)I")); // invokestatic
+            if (from > 0) {
+                code.op(0x60); // iadd
+            }
+        }
+    }
+
+    /**
+     * Emits an expression, a sum becomes one iadd per operand after the first
+     */
+    private void expression(Code code, AbstractSyntaxTree.NodeExpr expr, Map<Integer, Integer> localBySlot) {
+        if (expr instanceof AbstractSyntaxTree.NodeSum sum) {
+            for (int i = 0; i < sum.operands.length; i++) {
+                expression(code, sum.operands[i], localBySlot); // operands are never sums
+                if (i > 0) {
+                    code.op(0x60); // iadd
+                }
+            }
+        } else if (expr instanceof AbstractSyntaxTree.NodeId id) {
+            code.iload(localBySlot.get(id.slot));
+        } else {
+            code.pushInt(((AbstractSyntaxTree.NodeIntLiteral) expr).intLiteral, pool);
+        }
+    }
+
+    /**
+     * Encodes a method_info structure with a Code attribute
+     */
+    private void method(int access, String name, String descriptor, Code code, int maxLocals) {
+        Bytes out = new Bytes();
+        out.u2(access).u2(pool.utf8(name)).u2(pool.utf8(descriptor));
+        out.u2(1); // one attribute
+        out.u2(pool.utf8("Code"));
+        byte[] bytecode = code.code.toByteArray();
+        out.u4(12 + bytecode.length);
+        out.u2(4).u2(maxLocals); // max_stack, max_locals
+        out.u4(bytecode.length);
+        out.bytes(bytecode);
+        out.u2(0).u2(0); // no exception table, no attributes
+        methods.add(out.toByteArray());
+    }
+
+    /**
+     * Big endian byte output
+     */
+    private static class Bytes extends ByteArrayOutputStream {
+        Bytes u1(int v) {
+            write(v);
+            return this;
+        }
+
+        Bytes u2(int v) {
+            write(v >>> 8);
+            write(v);
+            return this;
+        }
+
+        Bytes u4(int v) {
+            return u2(v >>> 16).u2(v);
+        }
+
+        Bytes bytes(byte[] b) {
+            write(b, 0, b.length);
+            return this;
+        }
+
+        void patch2(int at, int v) {
+            buf[at] = (byte) (v >>> 8);
+            buf[at + 1] = (byte) v;
+        }
+    }
+
+    /**
+     * Bytecode of one method
+     */
+    private static class Code {
+        final Bytes code = new Bytes();
+
+        Code op(int opcode) {
+            code.u1(opcode);
+            return this;
+        }
+
+        Code u2(int v) {
+            code.u2(v);
+            return this;
+        }
+
+        void pushInt(int value, ConstantPool pool) {
+            if (value >= -1 && value <= 5) {
+                op(0x03 + value); // iconst_m1 .. iconst_5
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                op(0x10).op(value & 0xFF); // bipush
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                op(0x11).u2(value & 0xFFFF); // sipush
+            } else {
+                int index = pool.integer(value);
+                if (index < 256) {
+                    op(0x12).op(index); // ldc
+                } else {
+                    op(0x13).u2(index); // ldc_w
+                }
+            }
+        }
+
+        void iload(int local) {
+            if (local <= 3) {
+                op(0x1a + local); // iload_n
+            } else if (local < 256) {
+                op(0x15).op(local);
+            } else {
+                op(0xc4).op(0x15).u2(local); // wide iload
+            }
+        }
+
+        void istore(int local) {
+            if (local <= 3) {
+                op(0x3b + local); // istore_n
+            } else if (local < 256) {
+                op(0x36).op(local);
+            } else {
+                op(0xc4).op(0x36).u2(local); // wide istore
+            }
+        }
+
+        void iinc(int local, int amount) {
+            // statement lists are split into chunks long before their size overflows a short
+            op(0xc4).op(0x84).u2(local).u2(amount); // wide iinc
+        }
+
+        /**
+         * Emits a branch with a placeholder offset
+         * @return position of the branch instruction
+         */
+        int branch(int opcode) {
+            int at = code.size();
+            op(opcode).u2(0);
+            return at;
+        }
+
+        /**
+         * Points a branch at the current position
+         */
+        void target(int branch) {
+            code.patch2(branch + 1, code.size() - branch);
+        }
+    }
+
+    /**
+     * Constant pool of the class file, entries are shared when they are requested twice
+     */
+    private static class ConstantPool {
+        private final Bytes entries = new Bytes();
+        private final Map<String, Integer> indexByKey = new HashMap<>();
+        private int count = 1; // index 0 is unused, past MAX_COUNT the class file cannot be written
+
+        int utf8(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8); // names here are ASCII, so this is modified UTF-8
+            return entry("U" + s, () -> entries.u1(1).u2(bytes.length).bytes(bytes));
+        }
+
+        int integer(int v) {
+            return entry("I" + v, () -> entries.u1(3).u4(v));
+        }
+
+        int classRef(String name) {
+            int nameIndex = utf8(name);
+            return entry("C" + name, () -> entries.u1(7).u2(nameIndex));
+        }
+
+        int methodRef(int owner, String name, String descriptor) {
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            int nameAndType = entry("N" + name + descriptor, () -> entries.u1(12).u2(nameIndex).u2(descriptorIndex));
+            return entry("M" + owner + "." + name + descriptor, () -> entries.u1(10).u2(owner).u2(nameAndType));
+        }
+
+        private int entry(String key, Runnable writer) {
+            Integer index = indexByKey.get(key);
+            if (index == null) {
+                writer.run();
+                index = count++;
+                indexByKey.put(key, index);
+            }
+            return index;
+        }
+
+        void write(Bytes out) {
+            out.u2(count);
+            out.bytes(entries.toByteArray());
+        }
+    }
+}
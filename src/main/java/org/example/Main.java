@@ -3,7 +3,12 @@ package org.example;
 
 public class Main {
     public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(Driver.run(args)); // compile the given files, see Driver
+        }
         MyParser parser = new MyParser();
+        ParseTracer trace = new ParseTracer(); // collect the token trace
+        parser.setListener(trace);
         boolean parsed = parser.parse("declare w\n" +
                 "declare x\n" +
                 "declare y\n" +
@@ -16,11 +21,20 @@ public class Main {
                 "print x\n" +
                 "endif");
 
+        System.out.print(trace); // print the trace in one write
+
         if (parsed) {
             System.out.println("Abstract Syntax Tree:");
             parser.getAst().getRoot().display(); // display AST
+            OutputBuffer out = new OutputBuffer();
+            new Interpreter(parser.getAst().getRoot()).run(out); // run the program
+            System.out.println("Output:");
+            System.out.print(out);
         } else {
             System.out.println("Parsing failed."); // parsing failed
+            for (ParseException e : parser.getDiagnostics()) {
+                System.out.println(e); // print every error with its position
+            }
         }
     }
 }
\ No newline at end of file
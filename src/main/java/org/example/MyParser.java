@@ -1,64 +1,379 @@
 package org.example;
 
-import java.io.PushbackReader;
-import java.io.StringReader;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.InputMismatchException;
+import java.util.List;
 
+/**
+ * Recursive descent parser. A parser can be reused for any number of parses, one at a time; use one
+ * parser per thread, or Compiler, which creates one per compilation.
+ */
 public class MyParser {
-    enum TYPE {INTDATATYPE} // TYPE enum
+    private static final int RING_SIZE = 1 << 14; // tokens the scanner thread can run ahead in pipelined mode
+    private static final int SAMPLE = 16; // when timed, one scan and one node build in SAMPLE are timed
 
-    // SymbolTableItem class with two member variables
-    private class SymbolTableItem {
-        String name;
-        TYPE type;
-
-        // constructor
-        public SymbolTableItem(String name, TYPE type) {
-            this.name = name;
-            this.type = type;
-        }
-    }
-    private Map<String, SymbolTableItem> symbolTable = new HashMap<>(); // symbol table initialized with HashMap
+    private BitSet declared = new BitSet(); // symbol ids of the declared variables, every variable is an int
     MyScanner scanner; // scanner member variable to read tokens
+    TokenStream tokens; // pre-lexed tokens, used instead of the scanner when set
+    private TokenRing ring; // tokens from a scanner on another thread, used instead of the scanner when set
+    int tokenIndex; // index of nextToken in tokens
     MyScanner.TOKEN nextToken; // member variable for the next token
     private AbstractSyntaxTree ast = new AbstractSyntaxTree();
+    private ParseListener listener = ParseListener.NONE; // receives match and error events
+    private final CurrentToken currentToken = new CurrentToken(); // text of nextToken for the listener
+    private boolean recovery; // true to keep parsing after an error and report every error
+    private List<ParseException> diagnostics = new ArrayList<>(); // errors of the last parse
+    private boolean lazyBodies; // true to parse the bodies of ifs when they are first needed
+    private boolean lazy; // lazyBodies for the current parse, off for sources that cannot be read twice
+    private boolean build = true; // false to check the syntax without building any node
+    private boolean pipelined; // true to scan on another thread while parsing
+    private int tokenCount; // tokens read by the last parse, for instrumentation
+    private int statementCount; // statements parsed or checked by the last parse, for instrumentation
+    private boolean timed; // true to time scanning and building the AST while parsing
+    private long scanNanos; // estimated time the last parse spent in the scanner
+    private long buildNanos; // estimated time the last parse spent creating nodes
+    private int builds; // nodes built by the last parse, picks the ones that are timed
+
+    /**
+     * Cost of reading the clock, which every timed sample includes, measured when a parse is first timed
+     */
+    private static final class Clock {
+        static final long OVERHEAD = overhead();
+
+        private static long overhead() {
+            long least = Long.MAX_VALUE;
+            for (int i = 0; i < 1000; i++) {
+                long start = System.nanoTime();
+                least = Math.min(least, System.nanoTime() - start);
+            }
+            return least;
+        }
+    }
+
+    /**
+     * Text of the current token, built only when a listener asks for it
+     */
+    private class CurrentToken implements CharSequence {
+        @Override
+        public int length() {
+            return toString().length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return toString().charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return tokenText();
+        }
+    }
 
 
     public AbstractSyntaxTree getAst() {
         return ast;
     }
 
+    public ParseListener getListener() {
+        return listener;
+    }
+
+    public boolean isRecovery() {
+        return recovery;
+    }
+
+    /**
+     * Turns panic mode recovery on or off. With recovery the parser skips to the next statement keyword
+     * after an error, so one parse reports every error in the program.
+     * @param recovery true to recover from errors
+     */
+    public void setRecovery(boolean recovery) {
+        this.recovery = recovery;
+    }
+
+    public boolean isLazyBodies() {
+        return lazyBodies;
+    }
+
+    /**
+     * Turns lazy if bodies on or off. With lazy bodies the parser checks the body of every if without
+     * building it, and the body is parsed again when NodeIf.getStmts() is first called. Bodies are
+     * always built for sources read through CharSource.of(Reader), which cannot be read twice.
+     * @param lazyBodies true to parse if bodies when they are first needed
+     */
+    public void setLazyBodies(boolean lazyBodies) {
+        this.lazyBodies = lazyBodies;
+    }
+
+    /**
+     * Returns the errors found by the last parse, in source order
+     * @return the diagnostics, empty if the program parsed successfully
+     */
+    public List<ParseException> getDiagnostics() {
+        return diagnostics;
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * Sets whether parse(CharSource) scans on a thread of its own, which hands the tokens to the parser
+     * through a lock free ring. Scanning then overlaps parsing, and reading a slow stream overlaps
+     * both. Errors report the same token text as without pipelining, and the bodies of ifs are always
+     * parsed eagerly.
+     * @param pipelined true to scan and parse at the same time
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Returns the number of tokens the last parse read, including the final SCANEOF
+     * @return the count
+     */
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Returns the number of statements the last parse went through, nested ones included
+     * @return the count
+     */
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    public boolean isTimed() {
+        return timed;
+    }
+
+    /**
+     * Turns the phase timers on or off. A timed parse reads the tokens and builds the tree exactly as
+     * an untimed one, in the same single pass, and times one scan and one node creation in SAMPLE,
+     * less the cost of reading the clock, so the timers cost two System.nanoTime() calls per SAMPLE
+     * tokens. Only scanning on the parser's
+     * thread is timed, not reading a TokenStream or a pipelined ring.
+     * @param timed true to time the phases
+     */
+    public void setTimed(boolean timed) {
+        this.timed = timed;
+    }
+
+    /**
+     * Returns the time the last timed parse spent scanning, estimated from the scans it timed
+     * @return the time in nanoseconds, 0 if the parse was not timed
+     */
+    public long getScanNanos() {
+        return scanNanos;
+    }
+
+    /**
+     * Returns the time the last timed parse spent creating AST nodes, estimated from the nodes it timed
+     * @return the time in nanoseconds, 0 if the parse was not timed
+     */
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    /**
+     * Returns the number of distinct variables the last parse declared
+     * @return the number of names declared
+     */
+    public int getSymbolCount() {
+        return declared.cardinality();
+    }
+
+    /**
+     * Sets the listener that receives the events of this parser, ParseListener.NONE turns them off
+     * @param listener the listener
+     */
+    public void setListener(ParseListener listener) {
+        this.listener = listener;
+    }
+
     /**
      * Method to get the next token
      */
     private void getNextToken () {
-        nextToken = scanner.scan();
+        if (timed && scanner != null && (tokenCount & (SAMPLE - 1)) == 0) {
+            long start = System.nanoTime();
+            readToken();
+            scanNanos += Math.max(0, System.nanoTime() - start - Clock.OVERHEAD) * SAMPLE;
+        } else {
+            readToken();
+        }
+    }
+
+    /**
+     * Method to read the next token from the current token source
+     */
+    private void readToken () {
+        tokenCount++;
+        if (tokens != null) {
+            nextToken = tokens.kind(++tokenIndex);
+        } else if (ring != null) {
+            while ((nextToken = ring.next()) == null) {
+                ParseException e = ring.error(); // found by the scanner thread, reported in token order
+                listener.error(e.getMessage(), null, e.getText());
+                recover(e);
+            }
+        } else {
+            while (true) {
+                try {
+                    nextToken = scanner.scan();
+                    return;
+                } catch (InputMismatchException e) {
+                    // the scanner has already stepped over the bad input, so recovery just scans again
+                    String text = scanner.getTokenBufferString();
+                    listener.error(e.getMessage(), null, text);
+                    recover(new ParseException(e.getMessage(), null, text, scanner.getTokenStart()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to get the position of the current token in the source
+     * @return index of the first character of the token
+     */
+    long tokenPosition() {
+        if (tokens != null) {
+            return tokens.start(Math.min(tokenIndex, tokens.size() - 1));
+        }
+        return ring != null ? ring.start() : scanner.getTokenStart();
+    }
+
+    /**
+     * Method to get the interned name of the current ID token
+     * @return the name, or null if the current token is not an ID
+     */
+    private String tokenSymbol() {
+        if (tokens != null) {
+            return tokens.symbol(tokenIndex);
+        }
+        return ring != null ? ring.symbol() : scanner.getSymbol();
     }
 
     /**
-     * Method to match tokens and return messages
+     * Method to get the symbol id of the current ID token
+     * @return the id in tokenSymbolPool(), or -1 if the current token is not an ID
+     */
+    private int tokenSymbolId() {
+        if (tokens != null) {
+            return tokens.symbolId(tokenIndex);
+        }
+        return ring != null ? ring.symbolId() : scanner.getSymbolId();
+    }
+
+    /**
+     * Method to get the pool the names of the current token source are interned into
+     * @return the symbol pool
+     */
+    private SymbolPool tokenSymbolPool() {
+        if (tokens != null) {
+            return tokens.getSymbolPool();
+        }
+        return ring != null ? ring.getSymbolPool() : scanner.getSymbolPool();
+    }
+
+    /**
+     * Method to get the value of the current INTLITERAL token
+     * @return the int value
+     */
+    private int tokenIntValue() {
+        if (tokens != null) {
+            return tokens.intValue(tokenIndex);
+        }
+        return ring != null ? ring.intValue() : scanner.getIntValue();
+    }
+
+    /**
+     * Method to get the text of the current token
+     * @return the token text
+     */
+    private String tokenText() {
+        if (tokens != null) {
+            return tokens.text(tokenIndex);
+        }
+        return ring != null ? ring.text(nextToken) : scanner.getTokenBufferString();
+    }
+
+    /**
+     * Method to start timing the creation of a node, one node in SAMPLE is timed
+     * @return System.nanoTime(), or 0 if this node is not timed
+     */
+    private long buildStart() {
+        return timed && (builds++ & (SAMPLE - 1)) == 0 ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Method to stop timing the creation of a node
+     * @param start what buildStart() returned before the node was created
+     * @param node the node
+     * @return the node
+     */
+    private <T> T built(long start, T node) {
+        if (start != 0) {
+            buildNanos += Math.max(0, System.nanoTime() - start - Clock.OVERHEAD) * SAMPLE;
+        }
+        return node;
+    }
+
+    /**
+     * Method to match tokens and report the result to the listener
      * @param expectedToken the token the input should match
      * @return true if the tokens match, false if they do not
      */
     private boolean match (MyScanner.TOKEN expectedToken) {
         if (nextToken == expectedToken) {
-            System.out.println("The tokens matched! Token: " + nextToken + ", Buffer: " + scanner.getTokenBufferString());
+            listener.tokenMatched(nextToken, currentToken);
             getNextToken();
             return true; // returns true if tokens match
         }
-        System.out.println("The tokens do not match, expected: " + expectedToken + ", received: " + nextToken);
+        listener.tokenMismatched(expectedToken, nextToken);
         return false; // returns false and displays error if tokens do not match
     }
 
     /**
-     * Method to print out parse errors and exit the program
+     * Method to report a parse error at the current token
      * @param message error message that should be displayed
+     * @throws ParseException always
      */
     private void error(String message) {
-        System.out.println("Parse Error: " + message);
-        System.out.println("Received: " + nextToken + ", Buffer: " + scanner.getTokenBufferString());
-        System.exit(0); // exit the program
+        listener.error(message, nextToken, currentToken);
+        throw new ParseException(message, nextToken, tokenText(), tokenPosition());
+    }
+
+    /**
+     * Method to record an error when recovery is on
+     * @param e the error
+     * @throws ParseException the error itself when recovery is off
+     */
+    private void recover(ParseException e) {
+        if (!recovery) {
+            throw e;
+        }
+        diagnostics.add(e);
+    }
+
+    /**
+     * Method to skip tokens until one a statement or declaration can start at
+     */
+    private void synchronize() {
+        while (nextToken != MyScanner.TOKEN.DECLARE && nextToken != MyScanner.TOKEN.SET &&
+                nextToken != MyScanner.TOKEN.CALC && nextToken != MyScanner.TOKEN.PRINT &&
+                nextToken != MyScanner.TOKEN.IF && nextToken != MyScanner.TOKEN.ENDIF &&
+                nextToken != MyScanner.TOKEN.SCANEOF) {
+            getNextToken();
+        }
     }
 
     /**
@@ -67,18 +382,102 @@ public class MyParser {
      * @return true if parsed successfully, false if not
      */
     public boolean parse (String program) {
-        StringReader stringReader = new StringReader(program); // StringReader to read the program
-        PushbackReader pbr = new PushbackReader(stringReader);
-        scanner = new MyScanner(pbr); // initialize scanner with pbr
-        getNextToken(); // get the token
-        program(); // call method to start parsing
-        if (match(MyScanner.TOKEN.SCANEOF)) {
-            System.out.println("parsed successfully");
-            return true; // return true and message if parsed successfully
-        } else {
-            System.out.println("parsing failed");
+        return parse(CharSource.of(program)); // scan the string in place
+    }
+
+    /**
+     * Method to parse the program
+     * @param program source of the program text
+     * @return true if parsed successfully, false if not
+     */
+    public boolean parse (CharSource program) {
+        tokens = null;
+        if (pipelined) {
+            scanner = null;
+            ring = new TokenRing(program, RING_SIZE); // starts scanning on its own thread
+            lazy = false; // the tokens are gone once parsed
+            try {
+                return parseTokens();
+            } finally {
+                ring.close(); // stops the scanner if the parse ended early
+                ring = null;
+            }
+        }
+        scanner = new MyScanner(program); // initialize scanner with the character source
+        lazy = lazyBodies && !(program instanceof CharSource.ReaderSource);
+        return parseTokens();
+    }
+
+    /**
+     * Method to check the syntax of a program without building its AST. Only the scanner allocates,
+     * to intern names it has not seen before, so checking runs at close to the speed of lexing.
+     * @param program source of the program text
+     * @return null if the program is valid, otherwise its first error, every error is in getDiagnostics()
+     */
+    public ParseException validate (CharSource program) {
+        scanner = new MyScanner(program);
+        tokens = null;
+        build = false;
+        try {
+            return parseTokens() ? null : diagnostics.get(0);
+        } finally {
+            build = true;
+        }
+    }
+
+    /**
+     * Method to check the syntax of a program that has already been lexed, without building its AST
+     * @param program the tokens of the program
+     * @return null if the program is valid, otherwise its first error, every error is in getDiagnostics()
+     */
+    public ParseException validate (TokenStream program) {
+        tokens = program;
+        tokenIndex = -1;
+        build = false;
+        try {
+            return parseTokens() ? null : diagnostics.get(0);
+        } finally {
+            build = true;
         }
-        return false; // return false and message if parsing failed
+    }
+
+    /**
+     * Method to parse a program that has already been lexed
+     * @param program the tokens of the program
+     * @return true if parsed successfully, false if not
+     */
+    public boolean parse (TokenStream program) {
+        tokens = program; // read tokens by index instead of scanning
+        tokenIndex = -1;
+        lazy = lazyBodies;
+        return parseTokens();
+    }
+
+    /**
+     * Method to parse the program from the current token source
+     * @return true if parsed successfully, false if not
+     */
+    private boolean parseTokens () {
+        declared = new BitSet(); // every parse starts from scratch, so a parser can be reused
+        ast = new AbstractSyntaxTree(); // a new tree, the tree of the previous parse stays valid
+        ast.setSymbolPool(tokenSymbolPool());
+        diagnostics = new ArrayList<>();
+        tokenCount = 0;
+        statementCount = 0;
+        scanNanos = 0;
+        buildNanos = 0;
+        builds = 0;
+        boolean success;
+        try {
+            getNextToken(); // get the token
+            program(); // call method to start parsing
+            success = match(MyScanner.TOKEN.SCANEOF) && diagnostics.isEmpty();
+        } catch (ParseException e) {
+            diagnostics.add(e); // the first error ends the parse when recovery is off
+            success = false;
+        }
+        listener.finished(success); // report parsed successfully or parsing failed
+        return success;
     }
 
     /**
@@ -88,10 +487,13 @@ public class MyParser {
     private AbstractSyntaxTree.NodeProgram program() {
         AbstractSyntaxTree.NodeDecls decls = declarations(); // parse declarations and store in NodeDecls
         AbstractSyntaxTree.NodeStmts stmts = statements(); // parse statements and store in NodeStmts
-        if (!match(MyScanner.TOKEN.SCANEOF)) {
-            error("Expected: SCANEOF");
+        while (!match(MyScanner.TOKEN.SCANEOF)) {
+            strayEndif();
+            statements(stmts); // keep parsing the statements after it
+        }
+        if (build) {
+            ast.setRoot(built(buildStart(), ast.new NodeProgram(decls, stmts)));  // set the root of the AST
         }
-        ast.setRoot(ast.new NodeProgram(decls, stmts));  // set the root of the AST
         return ast.root;
     }
 
@@ -103,14 +505,16 @@ public class MyParser {
         if (!match(MyScanner.TOKEN.DECLARE)) {
             error("Expected: DECLARE");
         }
-        String varName = scanner.getTokenBufferString();
+        String varName = tokenSymbol();
+        int varId = tokenSymbolId();
         if (!match(MyScanner.TOKEN.ID)) {
             error("Expected: ID");
         }
-        if (!symbolTable.containsKey(varName)) {
-            symbolTable.put(varName, new SymbolTableItem(varName, TYPE.INTDATATYPE)); // add variable to the symbol table
+        if (!build) {
+            return null; // only checking the syntax
         }
-        return ast.new NodeId(varName);
+        declared.set(varId); // the scanner has already interned the name
+        return built(buildStart(), ast.new NodeId(varName, varId));
     }
 
     /**
@@ -118,10 +522,9 @@ public class MyParser {
      * @return a NodeDecls containing all parsed declarations
      */
     private AbstractSyntaxTree.NodeDecls declarations() {
-        AbstractSyntaxTree.NodeDecls decls = ast.new NodeDecls();
+        AbstractSyntaxTree.NodeDecls decls = build ? built(buildStart(), ast.new NodeDecls()) : null;
         while (nextToken == MyScanner.TOKEN.DECLARE) {
-            AbstractSyntaxTree.NodeId id = declare();
-            decls.addDecl(id);
+            declaration(decls);
         }
         return decls;
     }
@@ -132,13 +535,14 @@ public class MyParser {
      */
     private AbstractSyntaxTree.NodeExpr value() {
         if (nextToken == MyScanner.TOKEN.ID) {
-            String varName = scanner.getTokenBufferString();
+            String varName = tokenSymbol();
+            int varId = tokenSymbolId();
             match(MyScanner.TOKEN.ID);
-            return ast.new NodeId(varName); // return id
+            return build ? built(buildStart(), ast.new NodeId(varName, varId)) : null; // return id
         } else if (nextToken == MyScanner.TOKEN.INTLITERAL) {
-            int value = Integer.parseInt(scanner.getTokenBufferString());
+            int value = tokenIntValue();
             match(MyScanner.TOKEN.INTLITERAL);
-            return ast.new NodeIntLiteral(value); // return intliteral
+            return build ? built(buildStart(), ast.new NodeIntLiteral(value)) : null; // return intliteral
         } else {
             error("Expected: ID or INTLITERAL");
             return null; // else return null
@@ -152,15 +556,17 @@ public class MyParser {
     private AbstractSyntaxTree.NodeStmt statement() {
         if (nextToken == MyScanner.TOKEN.PRINT) {
             match(MyScanner.TOKEN.PRINT);
-            String varName = scanner.getTokenBufferString();
+            String varName = tokenSymbol();
+            int varId = tokenSymbolId();
             if (!match(MyScanner.TOKEN.ID)) {
                 error("Expected: ID after PRINT");
             }
-            return ast.new NodePrint(ast.new NodeId(varName));
+            return build ? built(buildStart(), ast.new NodePrint(ast.new NodeId(varName, varId))) : null;
         }
         if (nextToken == MyScanner.TOKEN.SET) {
             match(MyScanner.TOKEN.SET);
-            String varName = scanner.getTokenBufferString();
+            String varName = tokenSymbol();
+            int varId = tokenSymbolId();
             if (!match(MyScanner.TOKEN.ID)) {
                 error("Expected: ID after SET");
             }
@@ -170,35 +576,55 @@ public class MyParser {
             if (nextToken != MyScanner.TOKEN.INTLITERAL) {
                 error("Expected: INTLITERAL after EQUALS");
             }
-            int value = Integer.parseInt(scanner.getTokenBufferString());
+            int value = tokenIntValue();
             match(MyScanner.TOKEN.INTLITERAL);
-            return ast.new NodeSet(ast.new NodeId(varName), ast.new NodeIntLiteral(value));
+            return build ? built(buildStart(), ast.new NodeSet(ast.new NodeId(varName, varId),
+                    ast.new NodeIntLiteral(value))) : null;
         }
         if (nextToken == MyScanner.TOKEN.IF) {
             match(MyScanner.TOKEN.IF);
-            String lhsName = scanner.getTokenBufferString();
+            String lhsName = tokenSymbol();
+            int lhsId = tokenSymbolId();
             if (!match(MyScanner.TOKEN.ID)) {
                 error("Expected: ID after IF");
             }
             if (!match(MyScanner.TOKEN.EQUALS)) {
                 error("Expected: EQUALS after ID in IF");
             }
-            String rhsName = scanner.getTokenBufferString();
+            String rhsName = tokenSymbol();
+            int rhsId = tokenSymbolId();
             if (!match(MyScanner.TOKEN.ID)) {
                 error("Expected: ID after EQUALS in IF");
             }
             if (!match(MyScanner.TOKEN.THEN)) {
                 error("Expected: THEN");
             }
+            if (lazy && build) {
+                LazyBody body = tokens != null ? new LazyBody(null, tokens, tokenIndex, recovery)
+                        : new LazyBody(scanner.getInput(), null, tokenPosition(), recovery);
+                build = false; // only check the body now, it is parsed when it is first needed
+                try {
+                    statements();
+                } finally {
+                    build = true;
+                }
+                if (!match(MyScanner.TOKEN.ENDIF)) {
+                    error("Expected: ENDIF");
+                }
+                return built(buildStart(), ast.new NodeIf(ast.new NodeId(lhsName, lhsId),
+                        ast.new NodeId(rhsName, rhsId), body));
+            }
             AbstractSyntaxTree.NodeStmts stmts = statements();
             if (!match(MyScanner.TOKEN.ENDIF)) {
                 error("Expected: ENDIF");
             }
-            return ast.new NodeIf(ast.new NodeId(lhsName), ast.new NodeId(rhsName), stmts);
+            return build ? built(buildStart(), ast.new NodeIf(ast.new NodeId(lhsName, lhsId),
+                    ast.new NodeId(rhsName, rhsId), stmts)) : null;
         }
         if (nextToken == MyScanner.TOKEN.CALC) {
             match(MyScanner.TOKEN.CALC);
-            String varName = scanner.getTokenBufferString();
+            String varName = tokenSymbol();
+            int varId = tokenSymbolId();
             if (!match(MyScanner.TOKEN.ID)) {
                 error("Expected: ID after CALC");
             }
@@ -206,7 +632,7 @@ public class MyParser {
                 error("Expected: EQUALS after ID in CALC");
             }
             AbstractSyntaxTree.NodeExpr expr = sum();
-            return ast.new NodeCalc(ast.new NodeId(varName), expr);
+            return build ? built(buildStart(), ast.new NodeCalc(ast.new NodeId(varName, varId), expr)) : null;
         }
         error("Invalid statement");
         return null;
@@ -217,42 +643,217 @@ public class MyParser {
      * @return a NodeStmts containing all parsed statements
      */
     private AbstractSyntaxTree.NodeStmts statements() {
-        AbstractSyntaxTree.NodeStmts stmts = ast.new NodeStmts();
+        AbstractSyntaxTree.NodeStmts stmts = build ? built(buildStart(), ast.new NodeStmts()) : null;
+        statements(stmts);
+        return stmts;
+    }
 
-        while (nextToken == MyScanner.TOKEN.PRINT || nextToken == MyScanner.TOKEN.SET ||
-                nextToken == MyScanner.TOKEN.IF || nextToken == MyScanner.TOKEN.CALC) {
+    /**
+     * Method to parse multiple statements in sequence
+     * @param stmts the NodeStmts the parsed statements are added to
+     */
+    private void statements(AbstractSyntaxTree.NodeStmts stmts) {
+        while (true) {
+            while (isStatementStart()) {
+                statement(stmts);
+            }
+            // Check if there’s an unexpected token after statements
+            if (nextToken == MyScanner.TOKEN.ENDIF || nextToken == MyScanner.TOKEN.SCANEOF) {
+                return;
+            }
+            unexpectedToken();
+        }
+    }
+
+    /**
+     * Method to check if the current token starts a statement
+     * @return true for PRINT, SET, IF and CALC
+     */
+    private boolean isStatementStart() {
+        return nextToken == MyScanner.TOKEN.PRINT || nextToken == MyScanner.TOKEN.SET ||
+                nextToken == MyScanner.TOKEN.IF || nextToken == MyScanner.TOKEN.CALC;
+    }
+
+    /**
+     * Method to parse one declaration, an error skips to the next declaration or statement
+     * @param decls the NodeDecls the declaration is added to
+     */
+    private void declaration(AbstractSyntaxTree.NodeDecls decls) {
+        try {
+            AbstractSyntaxTree.NodeId id = declare();
+            if (build) {
+                decls.addDecl(id);
+            }
+        } catch (ParseException e) {
+            recover(e);
+            synchronize(); // continue at the next declaration or statement
+        }
+    }
+
+    /**
+     * Method to parse one statement, an error skips to the next statement
+     * @param stmts the NodeStmts the statement is added to
+     */
+    private void statement(AbstractSyntaxTree.NodeStmts stmts) {
+        statementCount++;
+        try {
             AbstractSyntaxTree.NodeStmt stmt = statement(); // Parse a single statement
-            stmts.addStmt(stmt); // Add the statement to NodeStmts
+            if (build) {
+                stmts.addStmt(stmt); // Add the statement to NodeStmts
+            }
+        } catch (ParseException e) {
+            recover(e);
+            synchronize(); // continue at the next statement
         }
-        // Check if there’s an unexpected token after statements
-        if (nextToken != MyScanner.TOKEN.ENDIF && nextToken != MyScanner.TOKEN.SCANEOF) {
+    }
+
+    /**
+     * Method to report a token no statement can start with and skip it
+     */
+    private void unexpectedToken() {
+        try {
             error("Expected: Statements or ENDIF or SCANEOF");
+        } catch (ParseException e) {
+            recover(e);
+            getNextToken(); // skip the token no statement can start with
+            synchronize();
         }
-        return stmts;
     }
 
     /**
-     * Method to parse the remainder of a sum expression recursively
-     * @param left the left operand of the expression
-     * @return a NodeExpr representing the completed sum expression
+     * Method to report an ENDIF without IF at the top level and skip it
      */
-    private AbstractSyntaxTree.NodeExpr sumEnd(AbstractSyntaxTree.NodeExpr left) {
-        if (nextToken == MyScanner.TOKEN.PLUS) {
-            match(MyScanner.TOKEN.PLUS);
-            AbstractSyntaxTree.NodeExpr right = value();
-            right = sumEnd(right);
-            return ast.new NodePlus(left, right);
+    private void strayEndif() {
+        try {
+            error("Expected: SCANEOF");
+        } catch (ParseException e) {
+            recover(e);
+            getNextToken(); // skip the stray ENDIF
+            synchronize();
         }
-        return left;
     }
 
     /**
-     * Method to parse a sum expression
-     * @return a NodeExpr representing the parsed sum expression
+     * Method to start parsing a program piece by piece from a position, see topLevel()
+     * @param program source of the program text
+     * @param position index of the first character to scan, the start of a token or of the program
+     */
+    void start(CharSource program, long position) {
+        scanner = new MyScanner(program, position);
+        tokens = null;
+        start();
+    }
+
+    /**
+     * Method to start parsing a program that has already been lexed from a token
+     * @param program the tokens of the program
+     * @param index index of the first token to parse
+     */
+    void start(TokenStream program, int index) {
+        scanner = null;
+        tokens = program;
+        tokenIndex = index - 1;
+        start();
+    }
+
+    private void start() {
+        lazy = false;
+        declared = new BitSet();
+        ast = new AbstractSyntaxTree();
+        ast.setSymbolPool(tokenSymbolPool());
+        diagnostics = new ArrayList<>();
+        getNextToken();
+    }
+
+    /**
+     * Method to parse one top level declaration or statement, or to skip one top level token that
+     * cannot start either, exactly as a whole program parse would at this point
+     * @param declarations true while the program is still in its declarations, nextToken is DECLARE then
+     * @param decls the NodeDecls a declaration is added to
+     * @param stmts the NodeStmts a statement is added to
+     */
+    void topLevel(boolean declarations, AbstractSyntaxTree.NodeDecls decls, AbstractSyntaxTree.NodeStmts stmts) {
+        if (declarations) {
+            declaration(decls);
+        } else if (isStatementStart()) {
+            statement(stmts);
+        } else if (nextToken == MyScanner.TOKEN.ENDIF) {
+            strayEndif();
+        } else {
+            unexpectedToken();
+        }
+    }
+
+    /**
+     * Method to parse a sum expression in a loop. Adjacent int literals are added up as they are
+     * read, so x + 1 + 2 + 3 becomes a sum of x and a new literal 6.
+     * @return a NodeExpr representing the parsed sum expression, a single operand is returned as is
      */
     private AbstractSyntaxTree.NodeExpr sum() {
-        AbstractSyntaxTree.NodeExpr expr = value();
-        return sumEnd(expr);
+        if (!build) {
+            value();
+            while (nextToken == MyScanner.TOKEN.PLUS) {
+                match(MyScanner.TOKEN.PLUS);
+                value();
+            }
+            return null; // only checking the syntax
+        }
+        AbstractSyntaxTree.NodeExpr first = value();
+        if (nextToken != MyScanner.TOKEN.PLUS) {
+            return first;
+        }
+        List<AbstractSyntaxTree.NodeExpr> operands = new ArrayList<>();
+        operands.add(first);
+        while (nextToken == MyScanner.TOKEN.PLUS) {
+            match(MyScanner.TOKEN.PLUS);
+            AbstractSyntaxTree.NodeExpr operand = value();
+            AbstractSyntaxTree.NodeExpr last = operands.get(operands.size() - 1);
+            if (operand instanceof AbstractSyntaxTree.NodeIntLiteral literal
+                    && last instanceof AbstractSyntaxTree.NodeIntLiteral lastLiteral) {
+                // fold adjacent literals into a new node, the ones already built are left as they are
+                operands.set(operands.size() - 1,
+                        built(buildStart(), ast.new NodeIntLiteral(lastLiteral.intLiteral + literal.intLiteral)));
+            } else {
+                operands.add(operand);
+            }
+        }
+        if (operands.size() == 1) {
+            return operands.get(0); // everything folded into one literal
+        }
+        return built(buildStart(), ast.new NodeSum(operands.toArray(new AbstractSyntaxTree.NodeExpr[0])));
+    }
+
+    /**
+     * Where the body of an if starts, so that it can be parsed when it is first needed
+     */
+    static final class LazyBody {
+        private final CharSource source; // the program text, null if the program was lexed
+        private final TokenStream tokens; // the tokens of the program, null if it was scanned
+        private final long start; // position or token index of the first token of the body
+        private final boolean recovery; // recovery setting of the parse that checked the body
+
+        LazyBody(CharSource source, TokenStream tokens, long start, boolean recovery) {
+            this.source = source;
+            this.tokens = tokens;
+            this.start = start;
+            this.recovery = recovery;
+        }
+
+        /**
+         * Parses the body, which was checked when the if was parsed, so it parses as it would have then
+         * @return the statements of the body
+         */
+        AbstractSyntaxTree.NodeStmts parse() {
+            MyParser parser = new MyParser();
+            parser.setRecovery(recovery);
+            if (tokens != null) {
+                parser.start(tokens, (int) start);
+            } else {
+                parser.start(source, start);
+            }
+            parser.lazy = true; // ifs inside the body are lazy as well
+            return parser.statements();
+        }
     }
 } //end of MyParser
 
@@ -1,69 +1,127 @@
 package org.example;
 
-import java.io.IOException;
 import java.io.PushbackReader;
-import java.util.ArrayList;
 import java.util.InputMismatchException;
-import java.util.List;
 
 public class MyScanner {
+    /**
+     * Enumeration of token types. A reserved word is declared by giving its token the word's text,
+     * this is the only place keywords are listed.
+     */
     enum TOKEN {
-        SCANEOF, ID, INTLITERAL, INTDATATYPE, DECLARE,
-        PRINT, SET, EQUALS, IF, THEN, ENDIF, CALC, PLUS
-    } //enumeration of token types
+        SCANEOF, ID, INTLITERAL, INTDATATYPE("int"), DECLARE("declare"),
+        PRINT("print"), SET("set"), EQUALS, IF("if"), THEN("then"), ENDIF("endif"), CALC("calc"), PLUS;
+
+        final String keyword; // text of the reserved word, null for other tokens
+
+        TOKEN() {
+            this(null);
+        }
 
-    private List<String> reservedWords = new ArrayList<>(); //List to store reserved words
-    private PushbackReader input; //PushbackReader for input
-    private StringBuilder buffer = new StringBuilder(); //StringBuilder for the token buffer to store lexemes
+        TOKEN(String keyword) {
+            this.keyword = keyword;
+        }
+    }
+
+    // Reserved words in a perfect hash table: each keyword has its own slot, so a word is classified
+    // by hashing it once and comparing it with at most one keyword
+    private static final TOKEN[] KEYWORD_TABLE = buildKeywordTable();
+    private static final int KEYWORD_MASK = KEYWORD_TABLE.length - 1;
+
+    private CharSource input; //CharSource for input
+    private long position; //index of the next character to read
+    private long tokenStart; //index of the first character of the last token
+    private long tokenEnd; //index after the last character of the last token
+    private StringBuilder buffer = new StringBuilder(); //StringBuilder reused to copy out lexemes
+    private int intValue; //value of the last INTLITERAL, decoded while its digits are read
+    private int symbolId = -1; //id of the last ID in the symbol pool
+    private SymbolPool symbols = new SymbolPool(); //pool of interned identifiers
 
     /**
-     * One parameter constructor to initialize pushbackReader and reserved words
+     * One parameter constructor kept for callers that already have a PushbackReader
      * @param input
      */
     public MyScanner(PushbackReader input) {
+        this(CharSource.of(input));
+    }
+
+    /**
+     * One parameter constructor to initialize the character source
+     * @param input
+     */
+    public MyScanner(CharSource input) {
+        this.input = input;
+    }
+
+    /**
+     * Two parameter constructor to scan a character source from a given position
+     * @param input
+     * @param position index of the first character to scan
+     */
+    MyScanner(CharSource input, long position) {
         this.input = input;
-        reservedWords.add("declare");
-        reservedWords.add("int");
-        reservedWords.add("print");
-        reservedWords.add("set");
-        reservedWords.add("if");
-        reservedWords.add("then");
-        reservedWords.add("endif");
-        reservedWords.add("calc");
-    }
-
-    /**
-     * Reads the next character from the input
-     * @return the next character
-     */
-    private int readNextChar() {
-        int c;
-        try {
-            c = input.read();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        this.position = position;
+    }
+
+    /**
+     * Finds the smallest table in which the hashes of all reserved words land in different slots
+     * @return the keyword table
+     */
+    private static TOKEN[] buildKeywordTable() {
+        for (int size = 8; ; size *= 2) {
+            TOKEN[] table = new TOKEN[size];
+            boolean perfect = true;
+            for (TOKEN token : TOKEN.values()) {
+                if (token.keyword != null) {
+                    int slot = keywordSlot(SymbolPool.hash(token.keyword), size - 1);
+                    if (table[slot] != null) {
+                        perfect = false; // collision, try a bigger table
+                        break;
+                    }
+                    table[slot] = token;
+                }
+            }
+            if (perfect) {
+                return table;
+            }
         }
-        return c;
+    }
+
+    private static int keywordSlot(int hash, int mask) {
+        return (hash ^ (hash >>> 7)) & mask;
     }
 
     /**
-     * Unread the last character from the input
-     * @param c
+     * Classifies a word as a reserved word without building a String
+     * @param in the source holding the word
+     * @param start index of the first character
+     * @param end index after the last character
+     * @param hash hash of the word as computed by SymbolPool.hash()
+     * @return the keyword token, or null if the word is not reserved
      */
-    private void unread(int c) {
-        try {
-            input.unread(c);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    static TOKEN keyword(CharSource in, long start, long end, int hash) {
+        TOKEN candidate = KEYWORD_TABLE[keywordSlot(hash, KEYWORD_MASK)];
+        if (candidate == null) {
+            return null;
         }
+        String word = candidate.keyword;
+        if (word.length() != end - start) {
+            return null;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (word.charAt(i) != in.charAt(start + i)) {
+                return null;
+            }
+        }
+        return candidate;
     }
 
     /**
-     * Checks if there is a whitespace in the input
+     * Checks if there is a whitespace in the input, no token contains one
      * @param c
      * @return true if there is a whitespace
      */
-    private boolean isWhiteSpace(int c) {
+    static boolean isWhiteSpace(int c) {
         //checks for space, tab, carriage return, line feed
         if ((c == 32) || (c == 9) || (c == 13) || (c == 10)) {
             return true;
@@ -73,81 +131,151 @@ public class MyScanner {
     }
 
     /**
-     * Returns the content of the buffer as a string
+     * Returns the lexeme of the last token as a string
      * @return the buffer token string
      */
     String getTokenBufferString() {
+        buffer.setLength(0); // clear buffer
+        for (long i = tokenStart; i < tokenEnd; i++) {
+            buffer.append((char) input.charAt(i));
+        }
         return buffer.toString();
     }
 
+    /**
+     * Returns the text of the last INTLITERAL token when Integer.toString of its value does not give it
+     * back, e.g. 007, so that a token kept as its value can still be shown as it was written
+     * @return the text, or null if it is Integer.toString(getIntValue())
+     */
+    String getLiteralText() {
+        int value = intValue;
+        long i = tokenEnd;
+        do {
+            if (input.charAt(--i) != '0' + value % 10) {
+                return getTokenBufferString(); // another digit, e.g. a leading zero
+            }
+            value /= 10;
+        } while (value != 0);
+        return i == tokenStart ? null : getTokenBufferString();
+    }
+
+    /**
+     * Returns the position of the last token in the input
+     * @return index of the first character of the token
+     */
+    long getTokenStart() {
+        return tokenStart;
+    }
+
+    /**
+     * Returns the number of characters in the last token
+     * @return the token length
+     */
+    int getTokenLength() {
+        return (int) (tokenEnd - tokenStart);
+    }
+
+    /**
+     * Returns the value of the last INTLITERAL token
+     * @return the int value
+     */
+    int getIntValue() {
+        return intValue;
+    }
+
+    /**
+     * Returns the id of the last ID token in the symbol pool
+     * @return the symbol id, or -1 if the last token is not an ID
+     */
+    int getSymbolId() {
+        return symbolId;
+    }
+
+    /**
+     * Returns the canonical name of the last ID token, the same instance for every use of the name
+     * @return the interned name, or null if the last token is not an ID
+     */
+    String getSymbol() {
+        return symbolId < 0 ? null : symbols.name(symbolId);
+    }
+
+    /**
+     * Returns the source the scanner reads
+     * @return the input, token positions are indexes into it
+     */
+    CharSource getInput() {
+        return input;
+    }
+
+    /**
+     * Returns the pool the scanner interns identifiers into
+     * @return the symbol pool
+     */
+    SymbolPool getSymbolPool() {
+        return symbols;
+    }
+
     /**
      * Method to scan input and return the TOKEN enum value corresponding to it
      * @return TOKEN enum value
      * @throws InputMismatchException
      */
     public TOKEN scan() throws InputMismatchException {
-        int c;
-        buffer.setLength(0); // clear buffer
-        c = readNextChar(); // read the first character
-       // buffer.setLength(0); // clear buffer
-
-        if (c == -1) {
-            return TOKEN.SCANEOF; // if there is an empty program return SCANEOF
+        CharSource in = input;
+        long p = position;
+        int c = in.charAt(p);
+        while (isWhiteSpace(c)) {
+            c = in.charAt(++p); // ignore whitespaces
         }
-        // while the scanner has not reached the end of the file
-        while (c != -1) {
-            if (isWhiteSpace(c)) {
-                c = readNextChar(); // ignore whitespaces
-                continue;
-            }
-            if (c == '=') {
-                return TOKEN.EQUALS; // if input character is = return EQUALS
-            } else if (c == '+') {
-                return TOKEN.PLUS; // if input character is + return PLUS
-            }
-            // if the character is a digit
-            if (Character.isDigit(c)) {
-                buffer.setLength(0); // clear buffer
-                buffer.append((char) c); // add character to buffer
-                c = readNextChar(); // read next character
-                while (Character.isDigit(c)) {
-                    buffer.append((char) c); // while the character is a digit add it to the buffer
-                    c = readNextChar(); // read next character
-                }
-                unread(c); // unread the last character
-                return TOKEN.INTLITERAL; // return INTLITERAL
-            }
-            // while the character is a letter
-            while (Character.isLetter(c)) {
-                buffer.append((char) c); // add character to buffer
-                c = readNextChar(); // read next character
-            }
-
-            String lexeme = getTokenBufferString(); // set lexeme as the token buffer string
-            // check if the lexeme is a reserved word and return the matching token
-            if (reservedWords.contains(lexeme)) {
-                if (lexeme.equals("declare")) {
-                    return TOKEN.DECLARE;
-                } else if (lexeme.equals("int")) {
-                    return TOKEN.INTDATATYPE;
-                } else if (lexeme.equals("print")) {
-                    return TOKEN.PRINT;
-                } else if (lexeme.equals("set")) {
-                    return TOKEN.SET;
-                } else if (lexeme.equals("if")) {
-                    return TOKEN.IF;
-                } else if (lexeme.equals("then")) {
-                    return TOKEN.THEN;
-                } else if (lexeme.equals("endif")) {
-                    return TOKEN.ENDIF;
-                } else if (lexeme.equals("calc")) {
-                    return TOKEN.CALC;
+        in.release(p); // nothing before this token is read again
+        tokenStart = p;
+        symbolId = -1;
+        if (c == CharSource.EOF) {
+            tokenEnd = position = p;
+            return TOKEN.SCANEOF; // return SCANEOF at the end of the input
+        }
+        if (c == '=') {
+            tokenEnd = position = p + 1;
+            return TOKEN.EQUALS; // if input character is = return EQUALS
+        } else if (c == '+') {
+            tokenEnd = position = p + 1;
+            return TOKEN.PLUS; // if input character is + return PLUS
+        }
+        // if the character is a digit
+        if (Character.isDigit(c)) {
+            int value = 0;
+            do {
+                int digit = Character.digit(c, 10);
+                if (value > (Integer.MAX_VALUE - digit) / 10) {
+                    while (Character.isDigit(c)) {
+                        c = in.charAt(++p); // skip the rest of the literal
+                    }
+                    tokenEnd = position = p;
+                    throw new InputMismatchException("Integer literal too large"); // does not fit in an int
                 }
-            } else {
-                return TOKEN.ID; // if it is not a reserved word it is an ID
+                value = value * 10 + digit; // decode the literal while reading it
+                c = in.charAt(++p); // look at the next character
+            } while (Character.isDigit(c));
+            intValue = value;
+            tokenEnd = position = p; // the first non digit is left for the next scan
+            return TOKEN.INTLITERAL; // return INTLITERAL
+        }
+        // while the character is a letter
+        if (Character.isLetter(c)) {
+            int hash = 0;
+            do {
+                hash = 31 * hash + c; // hash the word while reading it
+                c = in.charAt(++p); // look at the next character
+            } while (Character.isLetter(c));
+            tokenEnd = position = p; // the first non letter is left for the next scan
+            TOKEN reserved = keyword(in, tokenStart, p, hash); // check if the word is a reserved word
+            if (reserved != null) {
+                return reserved;
             }
+            symbolId = symbols.intern(in, tokenStart, p, hash); // intern the name without copying it
+            return TOKEN.ID; // if it is not a reserved word it is an ID
         }
+        tokenEnd = position = p + 1;
         throw new InputMismatchException("No match found"); // throw exception if no token matches
     }
 }
-
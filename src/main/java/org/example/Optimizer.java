@@ -0,0 +1,399 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optimizes programs in SSA form. The passes run in turn until none of them changes the program,
+ * because each one opens work for the others: folding a condition lets an if be pruned, pruning an if
+ * turns its phis into plain values that fold further, merging equal sums can make a condition true.
+ * Each pass can be switched off, and the Optimizer counts the instructions each one removed.
+ *
+ * The optimized program prints the same values and reports the same number of statements executed.
+ * Only printed values are live unless setKeepVariables(true) is called, so by default the final values
+ * of the variables are not kept: code lowered from the program leaves the frame as it found it.
+ */
+public class Optimizer {
+    /**
+     * The passes, in the order they run
+     */
+    public enum Pass {
+        CONSTANTS("constant folding"), // constant propagation and folding through set and calc
+        IFS("if pruning"), // ifs whose condition is known
+        COMMON_SUMS("common sums"), // sums and constants computed twice
+        DEAD_CODE("dead code"); // values no print, condition or kept variable uses, including dead stores
+
+        private final String title;
+
+        Pass(String title) {
+            this.title = title;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+    }
+
+    private final EnumSet<Pass> enabled = EnumSet.allOf(Pass.class);
+    private boolean keepVariables; // the final values of the variables are live
+    private final int[] removed = new int[Pass.values().length]; // instructions removed by each pass
+    private int folded; // sums simplified in place
+    private int rounds; // times the passes ran until the program stopped changing
+    private final Map<Key, SsaProgram.Instr> available = new HashMap<>(); // sums and constants already computed
+
+    /**
+     * Switches a pass on or off, all of them are on by default
+     * @param pass the pass
+     * @param on true to run it
+     */
+    public void setEnabled(Pass pass, boolean on) {
+        if (on) {
+            enabled.add(pass);
+        } else {
+            enabled.remove(pass);
+        }
+    }
+
+    public boolean isEnabled(Pass pass) {
+        return enabled.contains(pass);
+    }
+
+    /**
+     * Sets whether the final values of the variables must be kept, as ExecutableProgram.run(out)
+     * returns them. Off by default, only printed values count.
+     * @param keepVariables true to keep them
+     */
+    public void setKeepVariables(boolean keepVariables) {
+        this.keepVariables = keepVariables;
+    }
+
+    public boolean isKeepVariables() {
+        return keepVariables;
+    }
+
+    /**
+     * Optimizes a program in place, the counts add up over the programs an Optimizer optimizes
+     * @param program the program
+     * @return the number of instructions removed
+     */
+    public int optimize(SsaProgram program) {
+        if (!keepVariables) {
+            program.exits = null;
+        }
+        int before = program.size();
+        boolean changed = true;
+        while (changed) {
+            rounds++;
+            int foldedBefore = folded;
+            changed = false;
+            for (Pass pass : enabled) {
+                int count = switch (pass) {
+                    case CONSTANTS -> fold(program.body);
+                    case IFS -> prune(program.body);
+                    case COMMON_SUMS -> common(program.body);
+                    case DEAD_CODE -> sweep(program);
+                };
+                resolveExits(program);
+                removed[pass.ordinal()] += count;
+                changed |= count > 0;
+            }
+            changed |= folded > foldedBefore;
+        }
+        return before - program.size();
+    }
+
+    /**
+     * Constant propagation and folding. Constant operands of a sum are added to its constant, and a
+     * sum of one operand plus a constant is inlined into the sums that use it, so offsets propagate
+     * through chains of calcs. A sum left with no operands becomes a constant, one left with a single
+     * operand and no constant is that operand. A phi of two equal values, or of two equal constants, is
+     * the one from before the if.
+     * @return the number of instructions removed
+     */
+    private int fold(SsaProgram.Block block) {
+        int count = 0;
+        List<SsaProgram.Instr> kept = new ArrayList<>(block.instrs.size());
+        for (SsaProgram.Instr instr : block.instrs) {
+            resolve(instr);
+            if (instr.op == SsaProgram.SUM) {
+                foldSum(instr);
+                if (instr.operands.length == 1 && instr.constant == 0) {
+                    instr.replacement = instr.operands[0]; // a copy
+                    count++;
+                    continue;
+                }
+            } else if (instr.op == SsaProgram.PHI) {
+                SsaProgram.Instr taken = instr.operands[0];
+                SsaProgram.Instr skipped = instr.operands[1];
+                if (taken == skipped || taken.op == SsaProgram.CONST && skipped.op == SsaProgram.CONST
+                        && taken.constant == skipped.constant) {
+                    instr.replacement = skipped; // computed before the if, so it is there on both paths
+                    count++;
+                    continue;
+                }
+            } else if (instr.op == SsaProgram.IF) {
+                count += fold(instr.body);
+            }
+            kept.add(instr);
+        }
+        block.instrs = kept;
+        return count;
+    }
+
+    private void foldSum(SsaProgram.Instr instr) {
+        int constant = instr.constant;
+        boolean changed = false;
+        List<SsaProgram.Instr> operands = new ArrayList<>(instr.operands.length);
+        for (SsaProgram.Instr operand : instr.operands) {
+            if (operand.op == SsaProgram.CONST) {
+                constant += operand.constant;
+                changed = true;
+            } else if (operand.op == SsaProgram.SUM && operand.operands.length == 1) {
+                constant += operand.constant; // x + k, inlining longer sums could grow chains quadratically
+                operands.add(operand.operands[0]);
+                changed = true;
+            } else {
+                operands.add(operand);
+            }
+        }
+        if (changed) {
+            instr.constant = constant;
+            instr.operands = operands.toArray(SsaProgram.NONE);
+            if (operands.isEmpty()) {
+                instr.op = SsaProgram.CONST;
+            }
+            folded++;
+        }
+    }
+
+    /**
+     * Removes ifs whose condition is known: both operands are the same value, or both are constants.
+     * The body of an if that always runs moves into the enclosing block, with its statement count,
+     * and the phis of the if become the values of the body; an if that never runs is dropped with its
+     * body and its phis become the values from before it.
+     * @return the number of instructions removed
+     */
+    private int prune(SsaProgram.Block block) {
+        int count = 0;
+        List<SsaProgram.Instr> instrs = block.instrs;
+        List<SsaProgram.Instr> kept = new ArrayList<>(instrs.size());
+        for (int i = 0; i < instrs.size(); i++) {
+            SsaProgram.Instr instr = instrs.get(i);
+            resolve(instr);
+            if (instr.op != SsaProgram.IF) {
+                kept.add(instr);
+                continue;
+            }
+            SsaProgram.Instr lhs = instr.operands[0];
+            SsaProgram.Instr rhs = instr.operands[1];
+            boolean known = lhs == rhs || lhs.op == SsaProgram.CONST && rhs.op == SsaProgram.CONST;
+            boolean taken = lhs == rhs || lhs.constant == rhs.constant;
+            count += prune(instr.body);
+            if (!known) {
+                kept.add(instr);
+                continue;
+            }
+            count++;
+            if (taken) {
+                kept.addAll(instr.body.instrs);
+                block.statements += instr.body.statements;
+            } else {
+                count += SsaProgram.size(instr.body);
+            }
+            while (i + 1 < instrs.size() && instrs.get(i + 1).op == SsaProgram.PHI) {
+                SsaProgram.Instr phi = instrs.get(++i);
+                phi.replacement = phi.operands[taken ? 0 : 1].find();
+                count++;
+            }
+        }
+        block.instrs = kept;
+        return count;
+    }
+
+    /**
+     * Common subexpression elimination. A sum with the same operands and constant as one computed
+     * earlier on every path to it, that is before it in its block or in an enclosing one, is replaced
+     * by the earlier one; so is a constant. Operands are sorted by id first, as addition commutes.
+     * @return the number of instructions removed
+     */
+    private int common(SsaProgram.Block block) {
+        int count = 0;
+        List<Key> added = new ArrayList<>();
+        List<SsaProgram.Instr> kept = new ArrayList<>(block.instrs.size());
+        for (SsaProgram.Instr instr : block.instrs) {
+            resolve(instr);
+            if (instr.op == SsaProgram.SUM || instr.op == SsaProgram.CONST) {
+                Key key = new Key(instr);
+                SsaProgram.Instr earlier = available.get(key);
+                if (earlier != null) {
+                    instr.replacement = earlier;
+                    count++;
+                    continue;
+                }
+                available.put(key, instr);
+                added.add(key);
+            } else if (instr.op == SsaProgram.IF) {
+                count += common(instr.body);
+            }
+            kept.add(instr);
+        }
+        block.instrs = kept;
+        for (Key key : added) {
+            available.remove(key); // values of a body are not computed after the if
+        }
+        return count;
+    }
+
+    /**
+     * Operation, constant and sorted operand ids of a sum or constant
+     */
+    private static final class Key {
+        private final int op;
+        private final int constant;
+        private final int[] operands;
+        private final int hash;
+
+        Key(SsaProgram.Instr instr) {
+            Arrays.sort(instr.operands, (a, b) -> Integer.compare(a.id, b.id));
+            op = instr.op;
+            constant = instr.constant;
+            operands = new int[instr.operands.length];
+            for (int i = 0; i < operands.length; i++) {
+                operands[i] = instr.operands[i].id;
+            }
+            hash = (op * 31 + constant) * 31 + Arrays.hashCode(operands);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && key.hash == hash && key.op == op && key.constant == constant
+                    && Arrays.equals(key.operands, operands);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Dead store and dead code elimination. Prints and ifs are live, since an if decides how many
+     * statements run, and so are the final values of the variables when they are kept; every value
+     * they use is live, transitively. The other values are removed: a set or calc overwritten before
+     * any print reads it, or whose variable is never printed, disappears here.
+     * @return the number of instructions removed
+     */
+    private int sweep(SsaProgram program) {
+        boolean[] live = new boolean[program.idCount()];
+        List<SsaProgram.Instr> work = new ArrayList<>();
+        roots(program.body, live, work);
+        if (program.exits != null) {
+            for (SsaProgram.Instr value : program.exits) {
+                mark(value, live, work);
+            }
+        }
+        while (!work.isEmpty()) {
+            SsaProgram.Instr instr = work.remove(work.size() - 1);
+            for (SsaProgram.Instr operand : instr.operands) {
+                mark(operand, live, work);
+            }
+        }
+        return sweep(program.body, live);
+    }
+
+    private void roots(SsaProgram.Block block, boolean[] live, List<SsaProgram.Instr> work) {
+        for (SsaProgram.Instr instr : block.instrs) {
+            resolve(instr);
+            if (instr.op == SsaProgram.PRINT || instr.op == SsaProgram.IF && instr.body.statements > 0) {
+                mark(instr, live, work);
+            }
+            if (instr.op == SsaProgram.IF) {
+                roots(instr.body, live, work);
+            }
+        }
+    }
+
+    private static void mark(SsaProgram.Instr instr, boolean[] live, List<SsaProgram.Instr> work) {
+        if (!live[instr.id]) {
+            live[instr.id] = true;
+            work.add(instr);
+        }
+    }
+
+    private static int sweep(SsaProgram.Block block, boolean[] live) {
+        int count = 0;
+        List<SsaProgram.Instr> kept = new ArrayList<>(block.instrs.size());
+        for (SsaProgram.Instr instr : block.instrs) {
+            if (!live[instr.id]) {
+                count += instr.op == SsaProgram.IF ? 1 + SsaProgram.size(instr.body) : 1;
+                continue;
+            }
+            if (instr.op == SsaProgram.IF) {
+                count += sweep(instr.body, live);
+            }
+            kept.add(instr);
+        }
+        block.instrs = kept;
+        return count;
+    }
+
+    /**
+     * Replaces the operands of an instruction that were removed by the values that stand for them
+     */
+    private static void resolve(SsaProgram.Instr instr) {
+        SsaProgram.Instr[] operands = instr.operands;
+        for (int i = 0; i < operands.length; i++) {
+            operands[i] = operands[i].find();
+        }
+    }
+
+    private static void resolveExits(SsaProgram program) {
+        if (program.exits != null) {
+            for (int i = 0; i < program.exits.length; i++) {
+                program.exits[i] = program.exits[i].find();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of instructions a pass removed
+     * @param pass the pass
+     * @return the count, over every program optimized
+     */
+    public int getRemoved(Pass pass) {
+        return removed[pass.ordinal()];
+    }
+
+    /**
+     * Returns the number of sums constant folding simplified in place, which removes no instruction
+     * but lets dead code elimination remove the constants they used
+     * @return the count
+     */
+    public int getFolded() {
+        return folded;
+    }
+
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Describes what each enabled pass did
+     * @return one line per pass
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Pass pass : enabled) {
+            sb.append(String.format("%-18s %8d removed", pass.getTitle(), getRemoved(pass)));
+            if (pass == Pass.CONSTANTS) {
+                sb.append(String.format(", %d folded", folded));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
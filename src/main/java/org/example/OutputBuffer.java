@@ -0,0 +1,112 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Reusable buffer for the output of print statements. Values are written as digits straight into a
+ * char array, so printing allocates nothing until the buffer is flushed or read back.
+ */
+public class OutputBuffer {
+    private char[] chars = new char[8192]; // buffered output
+    private int size; // number of buffered characters
+    private Appendable out; // where full buffers are flushed to, null to keep everything in memory
+
+    /**
+     * Constructor that keeps the whole output in memory
+     */
+    public OutputBuffer() {
+    }
+
+    /**
+     * One parameter constructor
+     * @param out destination the buffer is flushed to when it fills up
+     */
+    public OutputBuffer(Appendable out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes a value followed by a line feed
+     * @param value the value
+     */
+    public void println(int value) {
+        if (chars.length - size < 12) {
+            makeRoom();
+        }
+        long v = value; // long so that Integer.MIN_VALUE can be negated
+        if (v < 0) {
+            chars[size++] = '-';
+            v = -v;
+        }
+        int end = size + digits(v);
+        for (int i = end - 1; i >= size; i--) {
+            chars[i] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+        chars[end] = '\n';
+        size = end + 1;
+    }
+
+    private static int digits(long v) {
+        int n = 1;
+        while (v >= 10) {
+            v /= 10;
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Flushes the buffer when there is a destination, otherwise grows it
+     */
+    private void makeRoom() {
+        if (out != null) {
+            flush();
+        } else {
+            char[] grown = new char[chars.length * 2];
+            System.arraycopy(chars, 0, grown, 0, size);
+            chars = grown;
+        }
+    }
+
+    /**
+     * Writes the buffered output to the destination and empties the buffer
+     */
+    public void flush() {
+        if (out == null) {
+            return;
+        }
+        try {
+            if (out instanceof Writer writer) {
+                writer.write(chars, 0, size); // no copy needed
+            } else {
+                out.append(new String(chars, 0, size)); // copy so the buffer can be reused
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        size = 0;
+    }
+
+    /**
+     * Empties the buffer without writing it, so it can be reused for the next run
+     */
+    public void reset() {
+        size = 0;
+    }
+
+    /**
+     * Returns the number of buffered characters
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, size);
+    }
+}
@@ -0,0 +1,180 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Lexes a large source on several threads. No token contains whitespace, so the source is cut into
+ * chunks at whitespace characters and each chunk is lexed on its own into a TokenStream, by a scanner
+ * started at the chunk over the whole source so positions are already global. The chunks are then
+ * stitched into one stream: the names of each chunk's symbol pool are interned into one pool in chunk
+ * order, which gives every name the id sequential lexing gives it, and the tokens are copied in
+ * parallel with their symbol ids mapped. The result is the same as TokenStream.lex(), token for token,
+ * and a lexical error is the first one sequential lexing would report.
+ */
+public class ParallelLexer {
+    private static final int MIN_CHUNK = 1 << 20; // smaller chunks are not worth a task
+    private static final int CHUNKS_PER_THREAD = 4; // more chunks than threads to even out the load
+
+    private final int parallelism; // number of threads
+    private final int minChunk; // least number of characters per chunk
+
+    /**
+     * Constructor that uses every core
+     */
+    public ParallelLexer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * One parameter constructor
+     * @param parallelism number of threads
+     */
+    public ParallelLexer(int parallelism) {
+        this(parallelism, MIN_CHUNK);
+    }
+
+    /**
+     * Two parameter constructor, small chunks let tests split small sources
+     * @param parallelism number of threads
+     * @param minChunk least number of characters per chunk
+     */
+    ParallelLexer(int parallelism, int minChunk) {
+        if (parallelism < 1 || minChunk < 1) {
+            throw new IllegalArgumentException("parallelism and minChunk must be at least 1");
+        }
+        this.parallelism = parallelism;
+        this.minChunk = minChunk;
+    }
+
+    /**
+     * Lexes a whole source. Sources of unknown length, like readers, and small sources are lexed
+     * sequentially.
+     * @param source the program text
+     * @return the tokens
+     * @throws InputMismatchException for the first lexical error of the source
+     */
+    public TokenStream lex(CharSource source) {
+        long length = source.length();
+        int chunks = length < 0 ? 1 : (int) Math.min((long) parallelism * CHUNKS_PER_THREAD, length / minChunk);
+        if (parallelism == 1 || chunks <= 1) {
+            return TokenStream.lex(source);
+        }
+        long[] bounds = split(source, length, chunks);
+        try (ForkJoinPool pool = new ForkJoinPool(parallelism)) {
+            TokenStream[] parts = new TokenStream[chunks];
+            InputMismatchException[] errors = new InputMismatchException[chunks]; // lexical error of each chunk
+            List<Callable<Void>> tasks = new ArrayList<>(chunks);
+            for (int i = 0; i < chunks; i++) {
+                int chunk = i;
+                tasks.add(() -> {
+                    TokenStream part = new TokenStream();
+                    try {
+                        part.lex(new MyScanner(source, bounds[chunk]), chunk == chunks - 1 ? Long.MAX_VALUE : bounds[chunk + 1]);
+                    } catch (InputMismatchException e) {
+                        errors[chunk] = e; // kept as it is, the pool would rethrow a copy without the message
+                    }
+                    parts[chunk] = part;
+                    return null;
+                });
+            }
+            run(pool, tasks);
+            for (InputMismatchException e : errors) {
+                if (e != null) {
+                    throw e; // the first error in source order, the one sequential lexing stops at
+                }
+            }
+            return stitch(pool, parts);
+        }
+    }
+
+    /**
+     * Cuts a source into chunks of about the same size, each starting at a whitespace character
+     * @param source the program text
+     * @param length number of characters of the source
+     * @param chunks number of chunks
+     * @return the start of each chunk, then the length
+     */
+    private static long[] split(CharSource source, long length, int chunks) {
+        long[] bounds = new long[chunks + 1];
+        for (int i = 1; i < chunks; i++) {
+            long p = Math.max(bounds[i - 1], length * i / chunks);
+            while (p < length && !MyScanner.isWhiteSpace(source.charAt(p))) {
+                p++; // a chunk never starts inside a token
+            }
+            bounds[i] = p;
+        }
+        bounds[chunks] = length;
+        return bounds;
+    }
+
+    /**
+     * Joins the chunks into one stream
+     * @param pool pool for the copies
+     * @param parts the tokens of each chunk, in source order
+     * @return the tokens of the whole source
+     */
+    private static TokenStream stitch(ForkJoinPool pool, TokenStream[] parts) {
+        SymbolPool symbols = new SymbolPool();
+        int[][] idMaps = new int[parts.length][]; // global id of each local symbol id, by chunk
+        int[] offsets = new int[parts.length]; // index of the first token of each chunk
+        int size = 0;
+        for (int i = 0; i < parts.length; i++) {
+            SymbolPool local = parts[i].getSymbolPool();
+            int[] idMap = new int[local.size()];
+            for (int id = 0; id < idMap.length; id++) {
+                idMap[id] = symbols.intern(local.name(id)); // first seen first, as in sequential lexing
+            }
+            idMaps[i] = idMap;
+            offsets[i] = size;
+            size += parts[i].size();
+        }
+        TokenStream tokens = new TokenStream(size, symbols);
+        for (int i = 0; i < parts.length; i++) {
+            for (int k = 0; k < parts[i].literalCount; k++) { // few, so not worth a parallel copy
+                tokens.addLiteral(offsets[i] + parts[i].literalTokens[k], parts[i].literalTexts[k]);
+            }
+        }
+        List<Callable<Void>> copies = new ArrayList<>(parts.length);
+        for (int i = 0; i < parts.length; i++) {
+            TokenStream part = parts[i];
+            int offset = offsets[i];
+            int[] idMap = idMaps[i];
+            copies.add(() -> {
+                int n = part.size();
+                System.arraycopy(part.kind, 0, tokens.kind, offset, n);
+                System.arraycopy(part.start, 0, tokens.start, offset, n);
+                System.arraycopy(part.length, 0, tokens.length, offset, n);
+                byte id = (byte) MyScanner.TOKEN.ID.ordinal();
+                for (int t = 0; t < n; t++) {
+                    int value = part.value[t];
+                    tokens.value[offset + t] = part.kind[t] == id ? idMap[value] : value;
+                }
+                return null;
+            });
+        }
+        run(pool, copies);
+        return tokens;
+    }
+
+    /**
+     * Runs tasks on the pool and waits for all of them
+     */
+    private static void run(ForkJoinPool pool, List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while lexing", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause()); // the tasks catch lexical errors themselves
+        }
+    }
+}
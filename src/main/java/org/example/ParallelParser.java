@@ -0,0 +1,256 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parses the top level statements of a large program on several threads. The declarations are parsed
+ * first, then the tokens after them are cut into ranges at top level statement starts (SET, CALC,
+ * PRINT or IF with every IF before it closed by its ENDIF), and each range is parsed by its own
+ * MyParser, one top level item at a time as in IncrementalParser. The statements of the ranges are
+ * appended to the program in source order.
+ *
+ * A range is only used if its parse ended exactly at the start of the next range: then the next range
+ * starts where a whole program parse would also be at the top level, and the result, AST and
+ * diagnostics in source order, is the same as MyParser.parse(). An error can make a parse run past
+ * its range, for example an IF without ENDIF; the rest of the program is then parsed on one thread.
+ * Without recovery the first error ends the parse, as it does in MyParser.
+ */
+public class ParallelParser {
+    private static final int MIN_RANGE = 1 << 16; // tokens per range, smaller ranges are not worth a task
+    private static final int RANGES_PER_THREAD = 4; // more ranges than threads to even out the load
+
+    private final int parallelism; // number of threads
+    private final int minRange; // least number of tokens per range
+    private boolean recovery; // true to keep parsing after an error and report every error
+    private AbstractSyntaxTree ast = new AbstractSyntaxTree(); // tree of the last parse
+    private List<ParseException> diagnostics = new ArrayList<>(); // errors of the last parse
+
+    /**
+     * Constructor that uses every core
+     */
+    public ParallelParser() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * One parameter constructor
+     * @param parallelism number of threads
+     */
+    public ParallelParser(int parallelism) {
+        this(parallelism, MIN_RANGE);
+    }
+
+    /**
+     * Two parameter constructor, small ranges let tests split small programs
+     * @param parallelism number of threads
+     * @param minRange least number of tokens per range
+     */
+    ParallelParser(int parallelism, int minRange) {
+        if (parallelism < 1 || minRange < 1) {
+            throw new IllegalArgumentException("parallelism and minRange must be at least 1");
+        }
+        this.parallelism = parallelism;
+        this.minRange = minRange;
+    }
+
+    public boolean isRecovery() {
+        return recovery;
+    }
+
+    /**
+     * Sets whether a parse keeps going after an error, see MyParser.setRecovery()
+     * @param recovery true to report every error
+     */
+    public void setRecovery(boolean recovery) {
+        this.recovery = recovery;
+    }
+
+    public AbstractSyntaxTree getAst() {
+        return ast;
+    }
+
+    /**
+     * Returns the errors of the last parse in source order
+     * @return the diagnostics, empty if the program is valid
+     */
+    public List<ParseException> getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Lexes a program with a ParallelLexer, then parses it. A program with a lexical error is parsed by
+     * one MyParser, which reports it like any other error.
+     * @param program source of the program text
+     * @return true if parsed successfully, false if not
+     */
+    public boolean parse(CharSource program) {
+        TokenStream tokens;
+        try {
+            tokens = new ParallelLexer(parallelism).lex(program);
+        } catch (InputMismatchException e) {
+            MyParser parser = new MyParser();
+            parser.setRecovery(recovery);
+            boolean success = parser.parse(program);
+            ast = parser.getAst();
+            diagnostics = parser.getDiagnostics();
+            return success;
+        }
+        return parse(tokens);
+    }
+
+    /**
+     * Parses a program that has already been lexed
+     * @param tokens the tokens of the program
+     * @return true if parsed successfully, false if not
+     */
+    public boolean parse(TokenStream tokens) {
+        MyParser parser = new MyParser();
+        parser.setRecovery(recovery);
+        parser.start(tokens, 0);
+        AbstractSyntaxTree tree = parser.getAst();
+        AbstractSyntaxTree.NodeDecls decls = tree.new NodeDecls();
+        AbstractSyntaxTree.NodeStmts stmts = tree.new NodeStmts();
+        ast = tree;
+        diagnostics = new ArrayList<>();
+        try {
+            while (parser.nextToken == MyScanner.TOKEN.DECLARE) {
+                parser.topLevel(true, decls, stmts);
+            }
+        } catch (ParseException e) {
+            diagnostics.add(e); // the first error ends the parse when recovery is off
+            return false;
+        }
+        diagnostics.addAll(parser.getDiagnostics());
+
+        int[] bounds = split(tokens, parser.tokenIndex);
+        Range[] ranges = parseRanges(tokens, bounds);
+        for (int i = 0; i < ranges.length; i++) {
+            Range range = ranges[i];
+            boolean overrun = range.error == null && range.end != bounds[i + 1];
+            if (overrun) {
+                range = new Range(tokens, bounds[i], tokens.size() - 1, recovery); // the later ranges started in the wrong place
+            }
+            stmts.stmts.addAll(range.stmts.stmts);
+            diagnostics.addAll(range.diagnostics);
+            if (range.error != null) {
+                diagnostics.add(range.error);
+                return false; // the first error ends the parse when recovery is off
+            }
+            if (overrun) {
+                break;
+            }
+        }
+        tree.setRoot(tree.new NodeProgram(decls, stmts));
+        return diagnostics.isEmpty();
+    }
+
+    /**
+     * Cuts the statements of a program into ranges of about the same number of tokens, each starting
+     * at a top level statement
+     * @param tokens the tokens of the program
+     * @param first index of the first token after the declarations
+     * @return the first token of each range, then the index of the final SCANEOF
+     */
+    private int[] split(TokenStream tokens, int first) {
+        int eof = tokens.size() - 1;
+        int count = (int) Math.min((long) parallelism * RANGES_PER_THREAD, (eof - first) / minRange);
+        if (parallelism == 1 || count <= 1) {
+            return new int[] {first, eof};
+        }
+        int[] bounds = new int[count + 1];
+        bounds[0] = first;
+        int ranges = 1;
+        int target = first + (eof - first) / count; // where the next range should start at the earliest
+        int depth = 0; // IFs open at the current token
+        byte set = (byte) MyScanner.TOKEN.SET.ordinal();
+        byte calc = (byte) MyScanner.TOKEN.CALC.ordinal();
+        byte print = (byte) MyScanner.TOKEN.PRINT.ordinal();
+        byte ifToken = (byte) MyScanner.TOKEN.IF.ordinal();
+        byte endif = (byte) MyScanner.TOKEN.ENDIF.ordinal();
+        byte[] kinds = tokens.kind;
+        for (int i = first; i < eof && ranges < count; i++) {
+            byte kind = kinds[i];
+            if (depth == 0 && i >= target && (kind == set || kind == calc || kind == print || kind == ifToken)) {
+                bounds[ranges++] = i;
+                target = first + (int) ((long) (eof - first) * ranges / count);
+            }
+            if (kind == ifToken) {
+                depth++;
+            } else if (kind == endif && depth > 0) {
+                depth--;
+            }
+        }
+        bounds[ranges] = eof;
+        int[] result = new int[ranges + 1];
+        System.arraycopy(bounds, 0, result, 0, ranges + 1);
+        return result;
+    }
+
+    /**
+     * Parses every range, in parallel if there is more than one
+     */
+    private Range[] parseRanges(TokenStream tokens, int[] bounds) {
+        Range[] ranges = new Range[bounds.length - 1];
+        if (ranges.length == 1) {
+            ranges[0] = new Range(tokens, bounds[0], bounds[1], recovery);
+            return ranges;
+        }
+        List<Callable<Range>> tasks = new ArrayList<>(ranges.length);
+        for (int i = 0; i < ranges.length; i++) {
+            int from = bounds[i];
+            int to = bounds[i + 1];
+            tasks.add(() -> new Range(tokens, from, to, recovery));
+        }
+        try (ForkJoinPool pool = new ForkJoinPool(parallelism)) {
+            List<Future<Range>> futures = pool.invokeAll(tasks);
+            for (int i = 0; i < ranges.length; i++) {
+                ranges[i] = futures.get(i).get();
+            }
+            return ranges;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause()); // parse errors are kept in the ranges
+        }
+    }
+
+    /**
+     * The statements of one range of tokens, parsed by a MyParser of its own
+     */
+    private static class Range {
+        final AbstractSyntaxTree.NodeStmts stmts; // the top level statements of the range
+        final List<ParseException> diagnostics; // errors recovered from, in source order
+        ParseException error; // the error that ended the parse when recovery is off, or null
+        final int end; // index of the token the parse stopped at
+
+        /**
+         * Parses top level items from a token until the parse reaches or passes another
+         * @param tokens the tokens of the program
+         * @param from index of the first token, the start of a top level statement
+         * @param to index of the token the range ends at
+         * @param recovery recovery setting of the parse
+         */
+        Range(TokenStream tokens, int from, int to, boolean recovery) {
+            MyParser parser = new MyParser();
+            parser.setRecovery(recovery);
+            parser.start(tokens, from);
+            stmts = parser.getAst().new NodeStmts();
+            try {
+                while (parser.tokenIndex < to && parser.nextToken != MyScanner.TOKEN.SCANEOF) {
+                    parser.topLevel(false, null, stmts);
+                }
+            } catch (ParseException e) {
+                error = e;
+            }
+            diagnostics = parser.getDiagnostics();
+            end = parser.tokenIndex;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.example;
+
+/**
+ * ParseListener that only counts events, for metrics
+ */
+public class ParseCounter implements ParseListener {
+    private final long[] matchedByToken = new long[MyScanner.TOKEN.values().length]; // matches per TOKEN ordinal
+    private long matched; // number of matched tokens
+    private long mismatched; // number of failed matches
+    private long errors; // number of parse errors
+    private long parses; // number of finished parses
+    private long failures; // number of parses that failed
+
+    @Override
+    public void tokenMatched(MyScanner.TOKEN token, CharSequence text) {
+        matched++;
+        matchedByToken[token.ordinal()]++;
+    }
+
+    @Override
+    public void tokenMismatched(MyScanner.TOKEN expected, MyScanner.TOKEN received) {
+        mismatched++;
+    }
+
+    @Override
+    public void error(String message, MyScanner.TOKEN received, CharSequence text) {
+        errors++;
+    }
+
+    @Override
+    public void finished(boolean success) {
+        parses++;
+        if (!success) {
+            failures++;
+        }
+    }
+
+    public long getMatched() {
+        return matched;
+    }
+
+    /**
+     * Returns how many tokens of one kind were matched
+     * @param token the token kind
+     * @return the count
+     */
+    long getMatched(MyScanner.TOKEN token) {
+        return matchedByToken[token.ordinal()];
+    }
+
+    public long getMismatched() {
+        return mismatched;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getParses() {
+        return parses;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+}
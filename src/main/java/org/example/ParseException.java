@@ -0,0 +1,45 @@
+package org.example;
+
+/**
+ * A syntax or lexical error found while parsing, with the token and position where it was found.
+ * Parse errors are expected input, not bugs, so no stack trace is captured.
+ */
+public class ParseException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final MyScanner.TOKEN token; // token the parser received, null for a lexical error
+    private final String text; // text of the received token
+    private final long position; // position of the received token in the source
+
+    /**
+     * Constructor for a parse error
+     * @param message what the parser expected
+     * @param token the token received instead, null for a lexical error
+     * @param text text of the received token
+     * @param position position of the received token in the source
+     */
+    public ParseException(String message, MyScanner.TOKEN token, String text, long position) {
+        super(message, null, false, false);
+        this.token = token;
+        this.text = text;
+        this.position = position;
+    }
+
+    MyScanner.TOKEN getToken() {
+        return token;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public String toString() {
+        String received = token == null ? "" : ", Received: " + token; // lexical errors have no token
+        return "Parse Error at " + position + ": " + getMessage() + received + ", Buffer: " + text;
+    }
+}
@@ -0,0 +1,41 @@
+package org.example;
+
+/**
+ * Receives the events of a parse. Every method does nothing by default, so NONE costs nothing once
+ * the JIT has inlined the calls, and implementations only override the events they care about.
+ */
+public interface ParseListener {
+    ParseListener NONE = new ParseListener() {}; // listener used when none is set
+
+    /**
+     * Called when the current token matched the expected token
+     * @param token the matched token
+     * @param text text of the token, only turned into a String when toString() is called
+     */
+    default void tokenMatched(MyScanner.TOKEN token, CharSequence text) {
+    }
+
+    /**
+     * Called when the current token did not match the expected token
+     * @param expected the expected token
+     * @param received the current token
+     */
+    default void tokenMismatched(MyScanner.TOKEN expected, MyScanner.TOKEN received) {
+    }
+
+    /**
+     * Called for a parse error
+     * @param message error message
+     * @param received the current token
+     * @param text text of the current token
+     */
+    default void error(String message, MyScanner.TOKEN received, CharSequence text) {
+    }
+
+    /**
+     * Called once the parse is over
+     * @param success true if the program parsed successfully
+     */
+    default void finished(boolean success) {
+    }
+}
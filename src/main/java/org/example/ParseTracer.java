@@ -0,0 +1,64 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * ParseListener that writes the trace of a parse as text, for debugging. Lines go to an Appendable
+ * such as a StringBuilder or a BufferedWriter, so tracing does not cost one console write per token.
+ */
+public class ParseTracer implements ParseListener {
+    private final Appendable out; // destination of the trace
+
+    /**
+     * Constructor that collects the trace in memory, read it back with toString()
+     */
+    public ParseTracer() {
+        this(new StringBuilder());
+    }
+
+    /**
+     * One parameter constructor
+     * @param out destination of the trace
+     */
+    public ParseTracer(Appendable out) {
+        this.out = out;
+    }
+
+    @Override
+    public void tokenMatched(MyScanner.TOKEN token, CharSequence text) {
+        line("The tokens matched! Token: ", token, ", Buffer: ", text);
+    }
+
+    @Override
+    public void tokenMismatched(MyScanner.TOKEN expected, MyScanner.TOKEN received) {
+        line("The tokens do not match, expected: ", expected, ", received: ", received);
+    }
+
+    @Override
+    public void error(String message, MyScanner.TOKEN received, CharSequence text) {
+        line("Parse Error: ", message, "", "");
+        line("Received: ", received, ", Buffer: ", text);
+    }
+
+    @Override
+    public void finished(boolean success) {
+        line(success ? "parsed successfully" : "parsing failed", "", "", "");
+    }
+
+    /**
+     * Writes one line made of four parts
+     */
+    private void line(String a, Object b, String c, Object d) {
+        try {
+            out.append(a).append(String.valueOf(b)).append(c).append(String.valueOf(d)).append('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+}
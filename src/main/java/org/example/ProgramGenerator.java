@@ -0,0 +1,168 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * Generates valid programs of a given size and shape for benchmarks. The same seed and settings
+ * always give the same program. Every statement uses declared variables only, so generated programs
+ * also resolve and run.
+ */
+public class ProgramGenerator {
+    private final long seed; // seed of the random choices
+    private int declarations = 100; // number of declared variables
+    private int statements = 10_000; // number of statements, including the ones inside ifs
+    private int setWeight = 3; // relative frequency of set statements
+    private int calcWeight = 3; // relative frequency of calc statements
+    private int printWeight = 1; // relative frequency of print statements
+    private int ifWeight = 1; // relative frequency of if statements
+    private int sumLength = 3; // number of operands of a calc sum
+    private int ifDepth = 2; // deepest nesting of ifs, 0 for no ifs
+    private int ifBodySize = 4; // number of statements directly inside an if
+
+    /**
+     * One parameter constructor
+     * @param seed seed of the random choices
+     */
+    public ProgramGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the number of declared variables
+     * @param declarations the number, at least 1
+     */
+    public void setDeclarations(int declarations) {
+        if (declarations < 1) {
+            throw new IllegalArgumentException("A program needs at least one variable");
+        }
+        this.declarations = declarations;
+    }
+
+    /**
+     * Sets the number of statements, counting the statements inside ifs
+     * @param statements the number
+     */
+    public void setStatements(int statements) {
+        this.statements = statements;
+    }
+
+    /**
+     * Sets how often each kind of statement is chosen, as relative weights
+     * @param set weight of set statements
+     * @param calc weight of calc statements
+     * @param print weight of print statements
+     * @param ifs weight of if statements
+     */
+    public void setMix(int set, int calc, int print, int ifs) {
+        if (set < 0 || calc < 0 || print < 0 || ifs < 0 || set + calc + print + ifs == 0) {
+            throw new IllegalArgumentException("Weights must be positive or 0, and not all 0");
+        }
+        this.setWeight = set;
+        this.calcWeight = calc;
+        this.printWeight = print;
+        this.ifWeight = ifs;
+    }
+
+    /**
+     * Sets the number of operands of every calc sum
+     * @param sumLength the number, at least 1
+     */
+    public void setSumLength(int sumLength) {
+        if (sumLength < 1) {
+            throw new IllegalArgumentException("A sum needs at least one operand");
+        }
+        this.sumLength = sumLength;
+    }
+
+    /**
+     * Sets the shape of ifs
+     * @param depth deepest nesting of ifs, 0 for no ifs at all
+     * @param bodySize number of statements directly inside an if
+     */
+    public void setIfs(int depth, int bodySize) {
+        this.ifDepth = depth;
+        this.ifBodySize = Math.max(1, bodySize);
+    }
+
+    /**
+     * Generates the program as a String
+     * @return the program text
+     */
+    public String generate() {
+        StringBuilder sb = new StringBuilder(statements * 16 + declarations * 12);
+        generate(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Writes the program, for programs too large to build as one String
+     * @param out destination
+     */
+    public void generate(Appendable out) {
+        Random random = new Random(seed);
+        try {
+            for (int i = 0; i < declarations; i++) {
+                out.append("declare ").append(name(i)).append('\n');
+            }
+            statements(out, random, statements, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a number of statements, ifs take their bodies out of the count
+     */
+    private void statements(Appendable out, Random random, int count, int depth) throws IOException {
+        int total = setWeight + calcWeight + printWeight + ifWeight;
+        while (count > 0) {
+            int pick = random.nextInt(total);
+            if (pick < setWeight) {
+                out.append("set ").append(variable(random)).append(" = ")
+                        .append(Integer.toString(random.nextInt(1000))).append('\n');
+            } else if (pick < setWeight + calcWeight) {
+                out.append("calc ").append(variable(random)).append(" = ");
+                for (int i = 0; i < sumLength; i++) {
+                    if (i > 0) {
+                        out.append(" + ");
+                    }
+                    if (random.nextInt(4) == 0) {
+                        out.append(Integer.toString(random.nextInt(100)));
+                    } else {
+                        out.append(variable(random));
+                    }
+                }
+                out.append('\n');
+            } else if (pick < setWeight + calcWeight + printWeight || depth >= ifDepth || count == 1) {
+                out.append("print ").append(variable(random)).append('\n'); // also used when no if fits
+            } else {
+                out.append("if ").append(variable(random)).append(" = ").append(variable(random)).append(" then\n");
+                int body = Math.min(ifBodySize, count - 1);
+                statements(out, random, body, depth + 1);
+                out.append("endif\n");
+                count -= body;
+            }
+            count--;
+        }
+    }
+
+    private String variable(Random random) {
+        return name(random.nextInt(declarations));
+    }
+
+    /**
+     * Turns a number into a variable name, identifiers in the language cannot contain digits
+     * @param i the number
+     * @return the name
+     */
+    static String name(int i) {
+        StringBuilder sb = new StringBuilder("v");
+        do {
+            sb.append((char) ('a' + i % 26));
+            i /= 26;
+        } while (i > 0);
+        return sb.toString();
+    }
+}
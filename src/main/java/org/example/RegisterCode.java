@@ -0,0 +1,303 @@
+package org.example;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Compact register based bytecode for a program. Each variable is a register, numbered by its slot,
+ * and the registers after them hold intermediate values: one for sums when lowered from the AST, one
+ * per value when lowered from an SsaProgram. The code is a flat int array of instructions, an
+ * opcode followed by its operands:
+ *
+ * LOADI r, imm     r = imm
+ * MOV r, a         r = a
+ * ADD r, a, b      r = a + b
+ * ADDI r, a, imm   r = a + imm
+ * JNE a, b, pc     jump to pc if a != b
+ * PRINT r          print r
+ * COUNT n          add n to the number of statements executed
+ */
+public class RegisterCode {
+    static final int LOADI = 0;
+    static final int MOV = 1;
+    static final int ADD = 2;
+    static final int ADDI = 3;
+    static final int JNE = 4;
+    static final int PRINT = 5;
+    static final int COUNT = 6;
+    static final int[] LENGTH = {3, 3, 4, 4, 4, 2, 2}; // instruction length by opcode
+    private static final String[] NAMES = {"LOADI", "MOV", "ADD", "ADDI", "JNE", "PRINT", "COUNT"};
+    private static final int MAGIC = 0x52454743; // "REGC"
+    private static final int VERSION = 2; // the register count was added in version 2
+    private static final int MAX_REGISTERS = 1 << 24; // most registers read() accepts, a 64 MB register file
+    private static final int MAX_CODE = Integer.MAX_VALUE / 4; // most words read() accepts, their bytes fit in an array
+    private static final int BLOCK = 1 << 16; // words read at a time, the code array grows with the data actually read
+
+    final int slots; // number of variables
+    final int registers; // number of registers, the variables first
+    final int[] code; // the instructions
+
+    /**
+     * Two parameter constructor for code with one register for intermediate sums, checks that the
+     * code is well formed
+     * @param slots number of variables
+     * @param code the instructions
+     * @throws IllegalArgumentException if an instruction is unknown or an operand is out of range
+     */
+    RegisterCode(int slots, int[] code) {
+        this(slots, slots + 1, code);
+    }
+
+    /**
+     * Three parameter constructor, checks that the code is well formed
+     * @param slots number of variables
+     * @param registers number of registers, at least slots
+     * @param code the instructions
+     * @throws IllegalArgumentException if an instruction is unknown or an operand is out of range
+     */
+    RegisterCode(int slots, int registers, int[] code) {
+        this.slots = slots;
+        this.registers = registers;
+        this.code = code;
+        verify();
+    }
+
+    /**
+     * Lowers a parsed program to register code
+     * @param program root of the AST
+     * @return the register code
+     * @throws IllegalStateException if the program uses a variable it does not declare
+     */
+    public static RegisterCode lower(AbstractSyntaxTree.NodeProgram program) {
+        int slots = Resolver.check(program);
+        Lowering lowering = new Lowering(slots);
+        lowering.statements(program.stmts);
+        return new RegisterCode(slots, lowering.toArray());
+    }
+
+    /**
+     * Growable buffer the lowerings write instructions into
+     */
+    static class Assembler {
+        int[] code = new int[256];
+        int size; // number of ints written, the position of the next instruction
+
+        void emit(int... instruction) {
+            if (size + instruction.length > code.length) {
+                int[] grown = new int[Math.max(code.length * 2, size + instruction.length)];
+                System.arraycopy(code, 0, grown, 0, size);
+                code = grown;
+            }
+            System.arraycopy(instruction, 0, code, size, instruction.length);
+            size += instruction.length;
+        }
+
+        int[] toArray() {
+            int[] result = new int[size];
+            System.arraycopy(code, 0, result, 0, size);
+            return result;
+        }
+    }
+
+    /**
+     * Turns the AST into instructions
+     */
+    private static class Lowering extends Assembler {
+        private final int temp; // register for intermediate sums
+        private final List<Integer> ids = new ArrayList<>(); // operands of the sum being lowered
+
+        Lowering(int slots) {
+            this.temp = slots;
+        }
+
+        void statements(AbstractSyntaxTree.NodeStmts stmts) {
+            emit(COUNT, stmts.stmts.size());
+            for (AbstractSyntaxTree.NodeStmt stmt : stmts.stmts) {
+                if (stmt instanceof AbstractSyntaxTree.NodeSet set) {
+                    emit(LOADI, set.id.slot, set.intLiteral.intLiteral);
+                } else if (stmt instanceof AbstractSyntaxTree.NodeCalc calc) {
+                    sum(calc.id.slot, calc.expr);
+                } else if (stmt instanceof AbstractSyntaxTree.NodePrint print) {
+                    emit(PRINT, print.id.slot);
+                } else if (stmt instanceof AbstractSyntaxTree.NodeIf nodeIf) {
+                    int jump = size;
+                    emit(JNE, nodeIf.lhs.slot, nodeIf.rhs.slot, 0);
+                    statements(nodeIf.getStmts());
+                    code[jump + 3] = size; // skip the body when the operands differ
+                }
+            }
+        }
+
+        /**
+         * Lowers target = sum, literals are added up at compile time
+         */
+        void sum(int target, AbstractSyntaxTree.NodeExpr expr) {
+            ids.clear();
+            int constant = collect(expr, 0);
+            if (ids.isEmpty()) {
+                emit(LOADI, target, constant);
+                return;
+            }
+            if (ids.size() == 1) {
+                if (constant == 0) {
+                    emit(MOV, target, ids.get(0));
+                } else {
+                    emit(ADDI, target, ids.get(0), constant);
+                }
+                return;
+            }
+            int acc = ids.get(0);
+            for (int i = 1; i < ids.size(); i++) {
+                boolean last = i == ids.size() - 1 && constant == 0;
+                emit(ADD, last ? target : temp, acc, ids.get(i)); // only the last step writes the target
+                acc = temp;
+            }
+            if (constant != 0) {
+                emit(ADDI, target, temp, constant);
+            }
+        }
+
+        /**
+         * Adds the variables of a sum to ids and returns the sum of its literals
+         */
+        private int collect(AbstractSyntaxTree.NodeExpr expr, int constant) {
+            if (expr instanceof AbstractSyntaxTree.NodeSum sum) {
+                for (AbstractSyntaxTree.NodeExpr operand : sum.operands) {
+                    constant = collect(operand, constant); // operands are never sums
+                }
+                return constant;
+            }
+            if (expr instanceof AbstractSyntaxTree.NodeId id) {
+                ids.add(id.slot);
+                return constant;
+            }
+            return constant + ((AbstractSyntaxTree.NodeIntLiteral) expr).intLiteral;
+        }
+    }
+
+    /**
+     * Checks opcodes, register numbers and jump targets, so running the code cannot go out of bounds
+     */
+    private void verify() {
+        if (slots < 0 || registers < slots) {
+            throw new IllegalArgumentException("Bad number of slots or registers");
+        }
+        BitSet starts = new BitSet(code.length + 1); // positions where an instruction starts
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc];
+            if (op < 0 || op >= LENGTH.length || pc + LENGTH[op] > code.length) {
+                throw new IllegalArgumentException("Bad instruction at " + pc);
+            }
+            starts.set(pc);
+            switch (op) {
+                case ADD:
+                    register(pc + 1);
+                    register(pc + 2);
+                    register(pc + 3);
+                    break;
+                case MOV:
+                case ADDI:
+                case JNE:
+                    register(pc + 1);
+                    register(pc + 2);
+                    break;
+                case LOADI:
+                case PRINT:
+                    register(pc + 1);
+                    break;
+                default:
+                    break;
+            }
+            pc += LENGTH[op];
+        }
+        starts.set(code.length); // jumping to the end stops the program
+        for (pc = 0; pc < code.length; pc += LENGTH[code[pc]]) {
+            if (code[pc] == JNE && (code[pc + 3] < 0 || code[pc + 3] > code.length || !starts.get(code[pc + 3]))) {
+                throw new IllegalArgumentException("Bad jump target at " + pc);
+            }
+        }
+    }
+
+    private void register(int at) {
+        if (code[at] < 0 || code[at] >= registers) {
+            throw new IllegalArgumentException("Bad register at " + at);
+        }
+    }
+
+    /**
+     * Writes the code in a portable binary form
+     * @param out destination
+     * @throws IOException if writing fails
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(slots);
+        out.writeInt(registers);
+        out.writeInt(code.length);
+        ByteBuffer bytes = ByteBuffer.allocate(code.length * 4); // big endian, like DataOutput
+        bytes.asIntBuffer().put(code);
+        out.write(bytes.array());
+    }
+
+    /**
+     * Reads code written by write()
+     * @param in source
+     * @return the register code
+     * @throws IOException if reading fails or the data is not register code, is truncated or is corrupt
+     */
+    public static RegisterCode read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not register code");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unknown register code version " + version);
+        }
+        try {
+            int slots = in.readInt();
+            int registers = in.readInt();
+            int length = in.readInt();
+            if (slots < 0 || registers < slots || registers > MAX_REGISTERS || length < 0 || length > MAX_CODE) {
+                throw new IOException("Corrupt register code");
+            }
+            int[] code = new int[Math.min(length, BLOCK)]; // a huge length in a short file allocates little
+            byte[] bytes = new byte[code.length * 4];
+            for (int read = 0; read < length; read += BLOCK) {
+                int n = Math.min(BLOCK, length - read);
+                if (read + n > code.length) {
+                    code = Arrays.copyOf(code, (int) Math.min(length, 2L * code.length));
+                }
+                in.readFully(bytes, 0, n * 4); // one bulk read per block instead of one call per word
+                ByteBuffer.wrap(bytes, 0, n * 4).asIntBuffer().get(code, read, n);
+            }
+            return new RegisterCode(slots, registers, code);
+        } catch (EOFException | IllegalArgumentException e) {
+            throw new IOException("Corrupt register code", e); // truncated, or a bad instruction
+        }
+    }
+
+    /**
+     * Lists the instructions, one per line
+     * @return the listing
+     */
+    public String disassemble() {
+        StringBuilder sb = new StringBuilder();
+        for (int pc = 0; pc < code.length; pc += LENGTH[code[pc]]) {
+            sb.append(pc).append(": ").append(NAMES[code[pc]]);
+            for (int i = 1; i < LENGTH[code[pc]]; i++) {
+                sb.append(i == 1 ? " " : ", ").append(code[pc + i]);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,69 @@
+package org.example;
+
+/**
+ * Runs register code with a switch dispatch loop. The registers are an int array owned by the VM and
+ * reused between runs, so executing an instruction allocates nothing. A VM must not be shared by
+ * threads that run it at the same time.
+ */
+public class RegisterVM implements ExecutableProgram {
+    private final RegisterCode program; // the code to run
+    private final int[] registers; // variables followed by the register for intermediate sums
+
+    /**
+     * One parameter constructor
+     * @param program the code to run
+     */
+    public RegisterVM(RegisterCode program) {
+        this.program = program;
+        this.registers = new int[program.registers];
+    }
+
+    @Override
+    public int getSlots() {
+        return program.slots;
+    }
+
+    @Override
+    public int run(int[] frame, OutputBuffer out) {
+        int[] r = registers;
+        int[] code = program.code;
+        System.arraycopy(frame, 0, r, 0, program.slots);
+        int executed = 0;
+        int pc = 0;
+        while (pc < code.length) {
+            switch (code[pc]) {
+                case RegisterCode.LOADI:
+                    r[code[pc + 1]] = code[pc + 2];
+                    pc += 3;
+                    break;
+                case RegisterCode.MOV:
+                    r[code[pc + 1]] = r[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case RegisterCode.ADD:
+                    r[code[pc + 1]] = r[code[pc + 2]] + r[code[pc + 3]];
+                    pc += 4;
+                    break;
+                case RegisterCode.ADDI:
+                    r[code[pc + 1]] = r[code[pc + 2]] + code[pc + 3];
+                    pc += 4;
+                    break;
+                case RegisterCode.JNE:
+                    pc = r[code[pc + 1]] != r[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                    break;
+                case RegisterCode.PRINT:
+                    out.println(r[code[pc + 1]]);
+                    pc += 2;
+                    break;
+                case RegisterCode.COUNT:
+                    executed += code[pc + 1];
+                    pc += 2;
+                    break;
+                default:
+                    throw new IllegalStateException("Bad opcode at " + pc); // verified code never gets here
+            }
+        }
+        System.arraycopy(r, 0, frame, 0, program.slots);
+        return executed;
+    }
+}
@@ -0,0 +1,208 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Resolution pass run between parsing and the backends. Every declared variable gets a dense slot
+ * in declaration order, and every NodeId of the program, declared or used, gets the slot of its name,
+ * so the backends index an int array frame and never look a name up again. The scanner has already
+ * interned every name into the SymbolPool of the tree, so a NodeId is resolved by indexing an int
+ * array with its symbol id; only a NodeId from another tree, such as a lazily parsed if body, or a
+ * tree built without a parser has its name looked up in the pool. The tree's pool belongs to the
+ * parser and is only read: a name it does not hold is interned into a pool of the Resolver, so
+ * resolving never changes the ids the scanner hands out.
+ *
+ * A use of an undeclared variable is an error, reported once per name, and its NodeId keeps slot -1.
+ * A second declaration of a name is a warning, it shares the slot of the first one.
+ */
+public class Resolver {
+    private static final int UNDECLARED = -1; // entry of slots for a name already reported as undeclared
+
+    private SymbolPool symbols = new SymbolPool(); // names of the program, the tree's pool when it has one, only read
+    private SymbolPool own = new SymbolPool(); // names the tree's pool does not hold
+    private int[] slots = new int[16]; // slot + 1 by symbol id, 0 if not declared, UNDECLARED once reported
+    private int[] ownSlots = new int[16]; // the same by id in own
+    private List<String> names = new ArrayList<>(); // declared variables by slot
+    private List<String> errors = new ArrayList<>(); // undeclared variables, in source order
+    private List<String> warnings = new ArrayList<>(); // duplicate declarations, in source order
+
+    /**
+     * Resolves a program, a Resolver can resolve any number of programs one after the other
+     * @param program root of the AST
+     * @return the number of slots, the size of a frame
+     */
+    public int resolve(AbstractSyntaxTree.NodeProgram program) {
+        declare(program.decls);
+        statements(program.stmts);
+        return names.size();
+    }
+
+    /**
+     * Starts resolving a program, forgetting the previous one, and gives its variables their slots.
+     * The statements can then be resolved in any number of calls to statements(), as they arrive.
+     * @param decls the declarations of the program
+     * @return the number of slots
+     */
+    int declare(AbstractSyntaxTree.NodeDecls decls) {
+        SymbolPool pool = decls.getTree().getSymbolPool();
+        symbols = pool != null ? pool : new SymbolPool();
+        own = new SymbolPool();
+        slots = new int[Math.max(16, symbols.size())];
+        ownSlots = new int[16];
+        names = new ArrayList<>();
+        errors = new ArrayList<>();
+        warnings = new ArrayList<>();
+        for (AbstractSyntaxTree.NodeId id : decls.decls) {
+            int symbol = symbol(id);
+            if (entry(symbol) > 0) {
+                warnings.add("Duplicate declaration: " + id.name);
+            } else {
+                names.add(id.name);
+                setEntry(symbol, names.size());
+            }
+            id.slot = entry(symbol) - 1;
+        }
+        return names.size();
+    }
+
+    /**
+     * Finds the id of the name of a NodeId in the pool of the program, or in the Resolver's own pool
+     * @param id the node
+     * @return the symbol id in the tree's pool, or the complement of the id in own, a valid index of its table
+     */
+    private int symbol(AbstractSyntaxTree.NodeId id) {
+        int symbol = id.symbol;
+        if (symbol < 0 || symbol >= symbols.size() || symbols.name(symbol) != id.name) {
+            symbol = symbols.find(id.name); // not interned in this pool, the same name gets the same id
+        }
+        if (symbol < 0) {
+            int ownSymbol = own.intern(id.name);
+            if (ownSymbol >= ownSlots.length) {
+                ownSlots = Arrays.copyOf(ownSlots, ownSlots.length * 2);
+            }
+            return ~ownSymbol;
+        }
+        if (symbol >= slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(symbol + 1, slots.length * 2));
+        }
+        return symbol;
+    }
+
+    private int entry(int symbol) {
+        return symbol >= 0 ? slots[symbol] : ownSlots[~symbol];
+    }
+
+    private void setEntry(int symbol, int entry) {
+        if (symbol >= 0) {
+            slots[symbol] = entry;
+        } else {
+            ownSlots[~symbol] = entry;
+        }
+    }
+
+    /**
+     * Resolves a program and fails on its errors, for backends that need every variable resolved
+     * @param program root of the AST
+     * @return the number of slots
+     * @throws IllegalStateException if the program uses a variable it does not declare
+     */
+    static int check(AbstractSyntaxTree.NodeProgram program) {
+        Resolver resolver = new Resolver();
+        int slots = resolver.resolve(program);
+        if (resolver.hasErrors()) {
+            throw new IllegalStateException(String.join("; ", resolver.errors));
+        }
+        return slots;
+    }
+
+    /**
+     * Resolves the variables used by a sequence of statements, errors are added to getErrors()
+     * @param stmts the statements
+     */
+    void statements(AbstractSyntaxTree.NodeStmts stmts) {
+        for (AbstractSyntaxTree.NodeStmt stmt : stmts.stmts) {
+            if (stmt instanceof AbstractSyntaxTree.NodeSet set) {
+                use(set.id);
+            } else if (stmt instanceof AbstractSyntaxTree.NodeCalc calc) {
+                use(calc.id);
+                expression(calc.expr);
+            } else if (stmt instanceof AbstractSyntaxTree.NodePrint print) {
+                use(print.id);
+            } else if (stmt instanceof AbstractSyntaxTree.NodeIf nodeIf) {
+                use(nodeIf.lhs);
+                use(nodeIf.rhs);
+                statements(nodeIf.getStmts());
+            }
+        }
+    }
+
+    /**
+     * Resolves the variables used by an expression
+     */
+    private void expression(AbstractSyntaxTree.NodeExpr expr) {
+        if (expr instanceof AbstractSyntaxTree.NodeSum sum) {
+            for (AbstractSyntaxTree.NodeExpr operand : sum.operands) {
+                expression(operand); // operands are never sums, so this does not go deeper
+            }
+        } else if (expr instanceof AbstractSyntaxTree.NodeId id) {
+            use(id);
+        }
+    }
+
+    private void use(AbstractSyntaxTree.NodeId id) {
+        int symbol = symbol(id);
+        int entry = entry(symbol);
+        if (entry > 0) {
+            id.slot = entry - 1;
+            return;
+        }
+        id.slot = -1;
+        if (entry == 0) {
+            setEntry(symbol, UNDECLARED);
+            errors.add("Undeclared variable: " + id.name);
+        }
+    }
+
+    /**
+     * Returns the uses of undeclared variables found by the last resolve(), one per name
+     * @return the errors, empty if every variable is declared
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the duplicate declarations found by the last resolve()
+     * @return the warnings
+     */
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * Tells whether the last resolve() found errors
+     * @return true if the program uses an undeclared variable
+     */
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    /**
+     * Returns the number of slots of the last resolved program
+     * @return the frame size
+     */
+    public int getSlots() {
+        return names.size();
+    }
+
+    /**
+     * Returns the variable that has a slot
+     * @param slot the slot
+     * @return the name of the variable
+     */
+    public String getName(int slot) {
+        return names.get(slot);
+    }
+}
@@ -0,0 +1,391 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A program in static single assignment form, the representation the Optimizer works on. Every set,
+ * calc and print becomes an instruction, and an operand refers to the instruction that computed the
+ * value, so a variable assigned twice gives two values and reading a variable costs nothing. The value
+ * a variable has when the program starts, whatever the frame holds, is a parameter.
+ *
+ * Programs have no loops and ifs have no else, so blocks nest like the source: an if owns the block of
+ * its body, and every variable the body assigns is merged by a phi that follows the if in the
+ * enclosing block. Each block also keeps the number of source statements it stands for, so code
+ * lowered from an optimized program still reports the statements the original program executed.
+ */
+public class SsaProgram {
+    static final int PARAM = 0; // value of variable [constant] when the program starts
+    static final int CONST = 1; // the integer [constant]
+    static final int SUM = 2; // sum of the operands plus [constant]
+    static final int PHI = 3; // variable [constant] after an if: operands[0] if the body ran, else operands[1]
+    static final int PRINT = 4; // prints operands[0]
+    static final int IF = 5; // runs body if operands[0] == operands[1]
+    private static final String[] NAMES = {"param", "const", "sum", "phi", "print", "if"};
+    static final Instr[] NONE = {};
+
+    final int slots; // number of variables
+    final String[] names; // variable names by slot, for listings
+    final Instr[] params; // entry value of each variable, not part of any block
+    final Block body = new Block(); // the top level statements
+    Instr[] exits; // final value of each variable, null if the variables need not be written back
+    private int nextId; // id of the next instruction created
+
+    private SsaProgram(int slots) {
+        this.slots = slots;
+        this.names = new String[slots];
+        this.params = new Instr[slots];
+        for (int i = 0; i < slots; i++) {
+            params[i] = newInstr(PARAM, i, NONE);
+            names[i] = "$" + i; // replaced by the declared name
+        }
+    }
+
+    /**
+     * One instruction, and the value it computes
+     */
+    static final class Instr {
+        int op; // PARAM, CONST, SUM, PHI, PRINT or IF, folding can turn a SUM into a CONST
+        final int id; // unique in the program, in creation order
+        int constant; // the constant of a CONST or a SUM, the slot of a PARAM or a PHI
+        Instr[] operands;
+        Block body; // body of an IF
+        Instr replacement; // the equal value used instead of this one once it is removed
+
+        Instr(int op, int id, int constant, Instr[] operands) {
+            this.op = op;
+            this.id = id;
+            this.constant = constant;
+            this.operands = operands;
+        }
+
+        /**
+         * Returns the value that stands for this one, following replacements
+         * @return the instruction still in the program
+         */
+        Instr find() {
+            Instr value = this;
+            while (value.replacement != null) {
+                value = value.replacement;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * A sequence of instructions, the whole program or the body of an if
+     */
+    static final class Block {
+        List<Instr> instrs = new ArrayList<>();
+        int statements; // number of source statements executed when the block runs, not counting if bodies
+    }
+
+    Instr newInstr(int op, int constant, Instr[] operands) {
+        return new Instr(op, nextId++, constant, operands);
+    }
+
+    /**
+     * Returns the number of ids given out, a bound for arrays indexed by Instr.id
+     */
+    int idCount() {
+        return nextId;
+    }
+
+    /**
+     * Builds the SSA form of a parsed program
+     * @param program root of the AST
+     * @return the program in SSA form
+     * @throws IllegalStateException if the program uses a variable it does not declare
+     */
+    public static SsaProgram build(AbstractSyntaxTree.NodeProgram program) {
+        SsaProgram ssa = new SsaProgram(Resolver.check(program));
+        for (AbstractSyntaxTree.NodeId id : program.decls.decls) {
+            ssa.names[id.slot] = id.name;
+        }
+        Builder builder = new Builder(ssa);
+        builder.statements(program.stmts, ssa.body);
+        ssa.exits = builder.current;
+        return ssa;
+    }
+
+    /**
+     * Renames variables while walking the AST. The current value of every variable is kept in one
+     * array; inside an if, each assignment also logs the value it overwrites, so leaving the body
+     * restores the values from before the if and finds the variables that need a phi without copying
+     * the array for every if.
+     */
+    private static class Builder {
+        private final SsaProgram ssa;
+        final Instr[] current; // current value of each variable
+        private int depth; // number of ifs the walk is in
+        private int[] undoSlots = new int[64]; // variables assigned inside ifs, in order
+        private Instr[] undoValues = new Instr[64]; // the values they had before
+        private int undoSize;
+        private final int[] seen; // per slot, the undo position of the if that last merged it, plus 1
+
+        Builder(SsaProgram ssa) {
+            this.ssa = ssa;
+            this.current = ssa.params.clone();
+            this.seen = new int[ssa.slots];
+        }
+
+        void statements(AbstractSyntaxTree.NodeStmts stmts, Block block) {
+            block.statements = stmts.stmts.size();
+            for (AbstractSyntaxTree.NodeStmt stmt : stmts.stmts) {
+                if (stmt instanceof AbstractSyntaxTree.NodeSet set) {
+                    assign(set.id.slot, add(block, CONST, set.intLiteral.intLiteral, NONE));
+                } else if (stmt instanceof AbstractSyntaxTree.NodeCalc calc) {
+                    assign(calc.id.slot, sum(block, calc.expr));
+                } else if (stmt instanceof AbstractSyntaxTree.NodePrint print) {
+                    add(block, PRINT, 0, new Instr[] {current[print.id.slot]});
+                } else if (stmt instanceof AbstractSyntaxTree.NodeIf nodeIf) {
+                    ifStatement(nodeIf, block);
+                }
+            }
+        }
+
+        private void ifStatement(AbstractSyntaxTree.NodeIf nodeIf, Block block) {
+            Instr instr = add(block, IF, 0, new Instr[] {current[nodeIf.lhs.slot], current[nodeIf.rhs.slot]});
+            instr.body = new Block();
+            int mark = undoSize;
+            depth++;
+            statements(nodeIf.getStmts(), instr.body);
+            depth--;
+            List<Instr> merged = new ArrayList<>(); // body value of each assigned variable, by first assignment
+            for (int i = mark; i < undoSize; i++) {
+                int slot = undoSlots[i];
+                if (seen[slot] != mark + 1) {
+                    seen[slot] = mark + 1;
+                    merged.add(current[slot]);
+                }
+            }
+            for (int i = undoSize - 1; i >= mark; i--) {
+                current[undoSlots[i]] = undoValues[i]; // back to the values before the if
+            }
+            int[] slots = Arrays.copyOfRange(undoSlots, mark, undoSize);
+            undoSize = mark;
+            int k = 0;
+            for (int slot : slots) {
+                if (seen[slot] == mark + 1) {
+                    seen[slot] = 0;
+                    Instr value = merged.get(k++);
+                    if (value != current[slot]) {
+                        assign(slot, add(block, PHI, slot, new Instr[] {value, current[slot]}));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Sums the variables and literals of an expression, literals are added up here
+         */
+        private Instr sum(Block block, AbstractSyntaxTree.NodeExpr expr) {
+            AbstractSyntaxTree.NodeExpr[] operands = expr instanceof AbstractSyntaxTree.NodeSum sum
+                    ? sum.operands : new AbstractSyntaxTree.NodeExpr[] {expr};
+            List<Instr> values = new ArrayList<>(operands.length);
+            int constant = 0;
+            for (AbstractSyntaxTree.NodeExpr operand : operands) {
+                if (operand instanceof AbstractSyntaxTree.NodeId id) {
+                    values.add(current[id.slot]);
+                } else {
+                    constant += ((AbstractSyntaxTree.NodeIntLiteral) operand).intLiteral;
+                }
+            }
+            return add(block, SUM, constant, values.toArray(NONE));
+        }
+
+        private Instr add(Block block, int op, int constant, Instr[] operands) {
+            Instr instr = ssa.newInstr(op, constant, operands);
+            block.instrs.add(instr);
+            return instr;
+        }
+
+        private void assign(int slot, Instr value) {
+            if (depth > 0) {
+                if (undoSize == undoSlots.length) {
+                    undoSlots = Arrays.copyOf(undoSlots, undoSize * 2);
+                    undoValues = Arrays.copyOf(undoValues, undoSize * 2);
+                }
+                undoSlots[undoSize] = slot;
+                undoValues[undoSize++] = current[slot];
+            }
+            current[slot] = value;
+        }
+    }
+
+    /**
+     * Returns the number of instructions, counting the bodies of ifs
+     * @return the size of the program
+     */
+    public int size() {
+        return size(body);
+    }
+
+    static int size(Block block) {
+        int size = block.instrs.size();
+        for (Instr instr : block.instrs) {
+            if (instr.op == IF) {
+                size += size(instr.body);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Lowers the program to register code. Variables stay in the registers of their slots until the
+     * end, where the final values are written back; every other value gets a register of its own.
+     * @return the register code
+     */
+    public RegisterCode lower() {
+        Lowering lowering = new Lowering();
+        lowering.block(body);
+        lowering.exits();
+        return new RegisterCode(slots, lowering.registers, lowering.toArray());
+    }
+
+    /**
+     * Turns the instructions into register code
+     */
+    private class Lowering extends RegisterCode.Assembler {
+        private final int[] register = new int[idCount()]; // register of each value, by id
+        int registers = slots; // number of registers used
+
+        void block(Block block) {
+            if (block.statements > 0) {
+                emit(RegisterCode.COUNT, block.statements);
+            }
+            List<Instr> instrs = block.instrs;
+            for (int i = 0; i < instrs.size(); i++) {
+                Instr instr = instrs.get(i);
+                switch (instr.op) {
+                    case CONST -> emit(RegisterCode.LOADI, define(instr), instr.constant);
+                    case SUM -> sum(instr);
+                    case PRINT -> emit(RegisterCode.PRINT, register(instr.operands[0]));
+                    case IF -> {
+                        int end = i + 1;
+                        while (end < instrs.size() && instrs.get(end).op == PHI) {
+                            Instr phi = instrs.get(end++);
+                            emit(RegisterCode.MOV, define(phi), register(phi.operands[1])); // the value if the body is skipped
+                        }
+                        int jump = size;
+                        emit(RegisterCode.JNE, register(instr.operands[0]), register(instr.operands[1]), 0);
+                        block(instr.body);
+                        for (int j = i + 1; j < end; j++) {
+                            Instr phi = instrs.get(j);
+                            emit(RegisterCode.MOV, register(phi), register(phi.operands[0]));
+                        }
+                        code[jump + 3] = size;
+                        i = end - 1;
+                    }
+                    default -> throw new IllegalStateException("Misplaced " + NAMES[instr.op] + " v" + instr.id);
+                }
+            }
+        }
+
+        private void sum(Instr instr) {
+            Instr[] operands = instr.operands;
+            int target = define(instr);
+            if (operands.length == 0) {
+                emit(RegisterCode.LOADI, target, instr.constant);
+                return;
+            }
+            if (operands.length == 1) {
+                if (instr.constant == 0) {
+                    emit(RegisterCode.MOV, target, register(operands[0]));
+                } else {
+                    emit(RegisterCode.ADDI, target, register(operands[0]), instr.constant);
+                }
+                return;
+            }
+            emit(RegisterCode.ADD, target, register(operands[0]), register(operands[1]));
+            for (int i = 2; i < operands.length; i++) {
+                emit(RegisterCode.ADD, target, target, register(operands[i]));
+            }
+            if (instr.constant != 0) {
+                emit(RegisterCode.ADDI, target, target, instr.constant);
+            }
+        }
+
+        /**
+         * Writes the final values back to the variables. A variable can end with the entry value of
+         * another one, whose register may be written first, so those values are saved beforehand.
+         */
+        void exits() {
+            if (exits == null) {
+                return;
+            }
+            int[] from = new int[slots];
+            for (int slot = 0; slot < slots; slot++) {
+                Instr value = exits[slot].find();
+                from[slot] = register(value);
+                if (value.op == PARAM && value.constant != slot) {
+                    from[slot] = registers++;
+                    emit(RegisterCode.MOV, from[slot], value.constant);
+                }
+            }
+            for (int slot = 0; slot < slots; slot++) {
+                if (from[slot] != slot) {
+                    emit(RegisterCode.MOV, slot, from[slot]);
+                }
+            }
+        }
+
+        private int define(Instr instr) {
+            register[instr.id] = registers;
+            return registers++;
+        }
+
+        private int register(Instr value) {
+            value = value.find();
+            return value.op == PARAM ? value.constant : register[value.id];
+        }
+    }
+
+    /**
+     * Lists the instructions, one per line, bodies indented
+     * @return the listing
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        list(body, "", sb);
+        if (exits != null) {
+            for (int slot = 0; slot < slots; slot++) {
+                Instr value = exits[slot].find();
+                if (value != params[slot]) {
+                    sb.append("exit ").append(names[slot]).append(" = ").append(name(value)).append('\n');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private void list(Block block, String indent, StringBuilder sb) {
+        for (Instr instr : block.instrs) {
+            sb.append(indent);
+            if (instr.op != PRINT && instr.op != IF) {
+                sb.append('v').append(instr.id).append(" = ");
+            }
+            sb.append(NAMES[instr.op]);
+            if (instr.op == PHI) {
+                sb.append(' ').append(names[instr.constant]);
+            }
+            for (int i = 0; i < instr.operands.length; i++) {
+                sb.append(i == 0 ? " " : instr.op == IF ? " == " : ", ").append(name(instr.operands[i]));
+            }
+            if (instr.op == CONST || instr.op == SUM && instr.constant != 0) {
+                sb.append(instr.op == SUM ? " + " : " ").append(instr.constant);
+            }
+            sb.append('\n');
+            if (instr.op == IF) {
+                list(instr.body, indent + "  ", sb);
+                sb.append(indent).append("endif\n");
+            }
+        }
+    }
+
+    private String name(Instr value) {
+        return value.op == PARAM ? names[value.constant] : "v" + value.id;
+    }
+}
@@ -0,0 +1,146 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles and runs a program while it is being read, for unbounded streams such as a generator
+ * writing to a pipe for hours. Each top level statement is parsed, resolved and executed as soon as
+ * its last token is read, then dropped, so only the declarations and the statement being parsed are
+ * in memory: an if is kept until its endif, with everything nested in it. Memory depends on the
+ * number of variables and the size of the largest top level statement, not on the program length;
+ * a ReaderSource also drops the characters the scanner is done with.
+ *
+ * The first error stops the run, and the statements before it have already run and printed, unlike
+ * Driver, which checks the whole program before running any of it. A program without errors prints
+ * what the Interpreter prints and executes the same number of statements.
+ */
+public class StreamingRunner {
+    private final OutputBuffer out; // printed values
+    private long statements; // top level statements run
+    private long executed; // statements executed, counting the ones inside ifs
+    private long elapsedNanos; // time of the last run
+    private final List<ParseException> diagnostics = new ArrayList<>(); // the syntax error that stopped the run
+    private final List<String> errors = new ArrayList<>(); // the undeclared variable that stopped the run
+    private Progress progress; // called every interval top level statements, null if not wanted
+    private long interval = 1 << 20; // statements between calls to progress
+
+    /**
+     * Reports the throughput while a program runs
+     */
+    public interface Progress {
+        /**
+         * Called every interval top level statements
+         * @param statements top level statements run so far
+         * @param perSecond top level statements per second since the previous call, the steady state rate
+         */
+        void report(long statements, double perSecond);
+    }
+
+    /**
+     * One parameter constructor
+     * @param out buffer for printed values, give it an Appendable so that it is flushed as it fills up
+     */
+    public StreamingRunner(OutputBuffer out) {
+        this.out = out;
+    }
+
+    /**
+     * Sets what is called while a program runs
+     * @param interval number of top level statements between calls
+     * @param progress the callback, null for none
+     */
+    public void setProgress(long interval, Progress progress) {
+        this.interval = Math.max(1, interval);
+        this.progress = progress;
+    }
+
+    /**
+     * Runs a program as it is read
+     * @param source the program text, usually a ReaderSource over a stream
+     * @return true if the whole program ran, false if an error stopped it
+     */
+    public boolean run(CharSource source) {
+        statements = 0;
+        executed = 0;
+        diagnostics.clear();
+        errors.clear();
+        long start = System.nanoTime();
+        try {
+            return run(new MyParser(), source);
+        } catch (ParseException e) {
+            diagnostics.add(e); // recovery is off, so the first syntax error ends the parse
+            return false;
+        } finally {
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    private boolean run(MyParser parser, CharSource source) {
+        parser.start(source, 0);
+        AbstractSyntaxTree ast = parser.getAst();
+        AbstractSyntaxTree.NodeDecls decls = ast.new NodeDecls();
+        while (parser.nextToken == MyScanner.TOKEN.DECLARE) {
+            parser.topLevel(true, decls, null);
+        }
+        Resolver resolver = new Resolver();
+        int[] frame = new int[resolver.declare(decls)];
+        AbstractSyntaxTree.NodeStmts stmts = ast.new NodeStmts(); // the statement being run, reused
+        long mark = System.nanoTime();
+        while (parser.nextToken != MyScanner.TOKEN.SCANEOF) {
+            parser.topLevel(false, null, stmts); // reports a stray token, there is no statement to skip
+            resolver.statements(stmts);
+            if (resolver.hasErrors()) {
+                errors.addAll(resolver.getErrors());
+                return false;
+            }
+            executed += stmts.execute(frame, out);
+            stmts.stmts.clear(); // nothing refers to the statement any more
+            if (++statements % interval == 0 && progress != null) {
+                progress.report(statements, interval * 1e9 / (System.nanoTime() - mark));
+                mark = System.nanoTime(); // the time of the callback is not counted
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of top level statements the last run ran
+     * @return the count
+     */
+    public long getStatements() {
+        return statements;
+    }
+
+    /**
+     * Returns the number of statements the last run executed, counting the ones inside ifs
+     * @return the count, as ExecutableProgram.run() returns it
+     */
+    public long getExecuted() {
+        return executed;
+    }
+
+    /**
+     * Returns the top level statements per second of the last run
+     * @return the average throughput
+     */
+    public double getStatementsPerSecond() {
+        return elapsedNanos == 0 ? 0 : statements * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns the syntax error that stopped the last run
+     * @return the error in a list, empty if there was none
+     */
+    public List<ParseException> getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Returns the undeclared variable that stopped the last run
+     * @return the error in a list, empty if there was none
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+}
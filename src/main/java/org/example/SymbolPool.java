@@ -0,0 +1,147 @@
+package org.example;
+
+/**
+ * Interns identifiers so each distinct name is stored once. Every name gets a dense int id in the
+ * order it was first seen, and lookups compare the characters in place so a repeated name costs no
+ * allocation.
+ */
+class SymbolPool {
+    private int[] table = new int[64]; // open addressing table of id + 1, 0 marks an empty slot
+    private int[] hashes = new int[32]; // hash of each name by id
+    private String[] names = new String[32]; // canonical name by id
+    private int size; // number of interned names
+
+    /**
+     * Computes the hash of a name the same way the scanner does while reading it
+     * @param name the name
+     * @return the hash
+     */
+    static int hash(CharSequence name) {
+        int h = 0;
+        for (int i = 0; i < name.length(); i++) {
+            h = 31 * h + name.charAt(i);
+        }
+        return h;
+    }
+
+    /**
+     * Interns a name given as a String
+     * @param name the name
+     * @return the id of the name
+     */
+    int intern(String name) {
+        return intern(CharSource.of(name), 0, name.length(), hash(name));
+    }
+
+    /**
+     * Interns the characters between start and end of a source
+     * @param source the source holding the name
+     * @param start index of the first character
+     * @param end index after the last character
+     * @param hash hash of the characters as computed by hash()
+     * @return the id of the name
+     */
+    int intern(CharSource source, long start, long end, int hash) {
+        int slot = slot(source, start, end, hash);
+        if (table[slot] != 0) {
+            return table[slot] - 1; // already interned
+        }
+        if (size == names.length) {
+            grow();
+        }
+        int id = size++;
+        StringBuilder sb = new StringBuilder((int) (end - start));
+        for (long i = start; i < end; i++) {
+            sb.append((char) source.charAt(i));
+        }
+        names[id] = sb.toString();
+        hashes[id] = hash;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        } else {
+            table[slot] = id + 1;
+        }
+        return id;
+    }
+
+    /**
+     * Looks a name up without interning it, so the pool can be read by others than its owner
+     * @param name the name
+     * @return the id of the name, or -1 if it was never interned
+     */
+    int find(String name) {
+        int slot = slot(CharSource.of(name), 0, name.length(), hash(name));
+        return table[slot] - 1;
+    }
+
+    /**
+     * Finds the table slot of a name, or the empty slot where it would go
+     */
+    private int slot(CharSource source, long start, long end, int hash) {
+        int mask = table.length - 1;
+        int slot = spread(hash) & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            int id = entry - 1;
+            if (hashes[id] == hash && sameName(names[id], source, start, end)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the canonical name of an id
+     * @param id the id
+     * @return the name
+     */
+    String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * Returns the number of interned names
+     * @return the size
+     */
+    int size() {
+        return size;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean sameName(String name, CharSource source, long start, long end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void grow() {
+        String[] newNames = new String[names.length * 2];
+        System.arraycopy(names, 0, newNames, 0, size);
+        names = newNames;
+        int[] newHashes = new int[hashes.length * 2];
+        System.arraycopy(hashes, 0, newHashes, 0, size);
+        hashes = newHashes;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = spread(hashes[id]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package org.example;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.InputMismatchException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded single producer, single consumer ring of tokens that lets a scanner on its own thread run
+ * ahead of the parser. Each token is packed into two longs, its position in one, value and kind in
+ * the other; an ID also carries its interned name, an integer literal that Integer.toString does
+ * not spell back (007) its text, and a lexical error its ParseException in a parallel array of
+ * references, so publishing a token allocates nothing in the common case. The parser can report any
+ * token as written although the scanner has already dropped its characters.
+ *
+ * The ring is lock free. The producer publishes every token with a release store of its tail, so a
+ * parser reading a slow stream sees each token as soon as it is scanned. The consumer reads the tail
+ * once per batch and takes every token published up to it, and publishes its head every BATCH tokens.
+ * Each counter is written by one thread only. A side that has to wait spins briefly (not on a single
+ * core, where the other side cannot run meanwhile), then yields, then parks for short intervals, so a
+ * full or empty ring does not burn a core.
+ */
+final class TokenRing {
+    private static final MyScanner.TOKEN[] KINDS = MyScanner.TOKEN.values(); // token kind by ordinal
+    private static final int ERROR = 0xFF; // kind of an entry that holds a lexical error
+    private static final int BATCH = 256; // tokens the consumer takes before publishing its head
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 64 : 0; // no use on one core
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(Sequence.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long[] words; // two words per slot: start, value << 8 | kind
+    private final Object[] refs; // name of an ID, text of a literal or ParseException of an error, by slot
+    private final int mask; // number of slots minus 1
+    private final SymbolPool symbols; // pool the scanner interns names into, complete once SCANEOF is taken
+    private final Sequence tail = new Sequence(); // number of tokens published, written by the producer
+    private final Sequence head = new Sequence(); // number of tokens consumed, written by the consumer
+    private volatile Throwable failure; // what stopped the producer before SCANEOF, e.g. an IOException
+    private volatile boolean closed; // set by the consumer to stop the producer
+
+    // consumer side, only used by the parser thread
+    private long next; // number of tokens taken
+    private long available; // tail as last read, tokens before it can be taken without a volatile read
+    private boolean eof; // SCANEOF was taken, every later call returns it again
+    private long start; // position of the current token
+    private int value; // INTLITERAL value or ID symbol id of the current token
+    private int kind; // TOKEN ordinal of the current token, ERROR for a lexical error
+    private Object ref; // name, literal text or error of the current token
+
+    /**
+     * A counter on a cache line of its own, so the producer and the consumer do not slow each other
+     * down by writing next to what the other reads
+     */
+    private static final class Sequence {
+        long p1, p2, p3, p4, p5, p6, p7; // padding before
+        volatile long value;
+        long q1, q2, q3, q4, q5, q6, q7; // padding after
+    }
+
+    /**
+     * Creates a ring and starts scanning a source into it on a new thread
+     * @param source the program text
+     * @param capacity number of slots, a power of 2
+     */
+    TokenRing(CharSource source, int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of 2");
+        }
+        words = new long[capacity * 2];
+        refs = new Object[capacity];
+        mask = capacity - 1;
+        MyScanner scanner = new MyScanner(source);
+        symbols = scanner.getSymbolPool();
+        Thread producer = new Thread(() -> produce(scanner), "scanner");
+        producer.setDaemon(true); // a parser that stops early must not keep the JVM alive
+        producer.start();
+    }
+
+    /**
+     * Producer loop: scans until SCANEOF or until the consumer closes the ring
+     */
+    private void produce(MyScanner scanner) {
+        try {
+            long published = 0;
+            long limit = mask + 1; // slots before this one are free
+            MyScanner.TOKEN token;
+            do {
+                if (published == limit) {
+                    limit = waitForSpace(published);
+                    if (limit < 0) {
+                        return; // the consumer is gone
+                    }
+                }
+                int slot = (int) published & mask;
+                try {
+                    token = scanner.scan();
+                    int tokenValue = token == MyScanner.TOKEN.INTLITERAL ? scanner.getIntValue()
+                            : token == MyScanner.TOKEN.ID ? scanner.getSymbolId() : 0;
+                    words[2 * slot] = scanner.getTokenStart();
+                    words[2 * slot + 1] = (long) tokenValue << 8 | token.ordinal();
+                    refs[slot] = token == MyScanner.TOKEN.ID ? scanner.getSymbol()
+                            : token == MyScanner.TOKEN.INTLITERAL ? scanner.getLiteralText() : null;
+                } catch (InputMismatchException e) {
+                    token = null; // the scanner has stepped over the bad input and goes on
+                    words[2 * slot] = scanner.getTokenStart();
+                    words[2 * slot + 1] = ERROR;
+                    refs[slot] = new ParseException(e.getMessage(), null, scanner.getTokenBufferString(),
+                            scanner.getTokenStart());
+                }
+                VALUE.setRelease(tail, ++published); // the slot is written before the consumer can see it
+            } while (token != MyScanner.TOKEN.SCANEOF);
+        } catch (Throwable e) {
+            failure = e; // rethrown by the consumer once it has taken every published token
+        }
+    }
+
+    /**
+     * Waits until the consumer has freed a slot
+     * @param published number of tokens published
+     * @return the new limit, or -1 if the ring was closed
+     */
+    private long waitForSpace(long published) {
+        for (int spins = 0; ; spins++) {
+            long limit = (long) VALUE.getAcquire(head) + mask + 1;
+            if (limit > published) {
+                return limit;
+            }
+            if (closed) {
+                return -1;
+            }
+            backOff(spins);
+        }
+    }
+
+    /**
+     * Takes the next token, waiting for the producer if none is published yet
+     * @return the token, or null for a lexical error, see error()
+     */
+    MyScanner.TOKEN next() {
+        if (eof) {
+            return MyScanner.TOKEN.SCANEOF;
+        }
+        if (next == available) {
+            VALUE.setRelease(head, next); // free what was taken before waiting
+            available = waitForTokens();
+        }
+        int slot = (int) next & mask;
+        long word0 = words[2 * slot];
+        long word1 = words[2 * slot + 1];
+        ref = refs[slot];
+        if ((++next & (BATCH - 1)) == 0) {
+            VALUE.setRelease(head, next);
+        }
+        start = word0;
+        value = (int) (word1 >> 8);
+        kind = (int) word1 & 0xFF;
+        if (kind == ERROR) {
+            return null;
+        }
+        eof = kind == MyScanner.TOKEN.SCANEOF.ordinal();
+        return KINDS[kind];
+    }
+
+    /**
+     * Waits until the producer has published a token past the ones taken
+     * @return the tail
+     */
+    private long waitForTokens() {
+        for (int spins = 0; ; spins++) {
+            long published = (long) VALUE.getAcquire(tail);
+            if (published > next) {
+                return published;
+            }
+            Throwable e = failure;
+            if (e != null && (long) VALUE.getAcquire(tail) == next) {
+                if (e instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                if (e instanceof Error error) {
+                    throw error;
+                }
+                throw new IllegalStateException(e);
+            }
+            backOff(spins);
+        }
+    }
+
+    private static void backOff(int spins) {
+        if (spins < SPINS) {
+            Thread.onSpinWait();
+        } else if (spins < SPINS + 64) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(20_000);
+        }
+    }
+
+    /**
+     * Stops the producer, called once the parser no longer needs tokens
+     */
+    void close() {
+        closed = true;
+    }
+
+    /**
+     * Returns the position of the current token in the source
+     * @return index of the first character
+     */
+    long start() {
+        return start;
+    }
+
+    /**
+     * Returns the value of the current INTLITERAL token
+     * @return the int value
+     */
+    int intValue() {
+        return value;
+    }
+
+    /**
+     * Returns the symbol id of the current ID token
+     * @return the id in getSymbolPool(), or -1 if the current token is not an ID
+     */
+    int symbolId() {
+        return kind == MyScanner.TOKEN.ID.ordinal() ? value : -1;
+    }
+
+    /**
+     * Returns the pool the symbol ids refer to, which the scanner thread writes until it reaches the end
+     * @return the symbol pool
+     */
+    SymbolPool getSymbolPool() {
+        return symbols;
+    }
+
+    /**
+     * Returns the interned name of the current ID token
+     * @return the name, or null if the current token is not an ID
+     */
+    String symbol() {
+        return kind == MyScanner.TOKEN.ID.ordinal() ? (String) ref : null;
+    }
+
+    /**
+     * Returns the lexical error of the current entry, when next() returned null
+     * @return the error
+     */
+    ParseException error() {
+        return (ParseException) ref;
+    }
+
+    /**
+     * Returns the text of the current token as it was written, the source may be gone
+     * @param token the current token
+     * @return the token text
+     */
+    String text(MyScanner.TOKEN token) {
+        if (token == MyScanner.TOKEN.INTLITERAL && ref != null) {
+            return (String) ref;
+        }
+        return TokenStream.text(token, value, symbol());
+    }
+}
@@ -0,0 +1,243 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.InputMismatchException;
+
+/**
+ * A whole program lexed up front into parallel primitive arrays, one entry per token. The parser can
+ * then walk the tokens by index, look ahead or back up for free, and the arrays can be reused for
+ * the next program. The rare literals whose text is not their value, such as 007, are kept in a
+ * sparse side table of token indexes and texts.
+ */
+public class TokenStream {
+    private static final MyScanner.TOKEN[] KINDS = MyScanner.TOKEN.values(); // token kind by ordinal
+
+    byte[] kind = new byte[1024]; // TOKEN ordinal of each token
+    long[] start = new long[1024]; // position of each token in the source
+    int[] length = new int[1024]; // number of characters of each token
+    int[] value = new int[1024]; // INTLITERAL value or ID symbol id, 0 for other tokens
+    int[] literalTokens = new int[8]; // ascending indexes of the INTLITERALs Integer.toString does not give back
+    String[] literalTexts = new String[8]; // their texts as written, e.g. 007
+    int literalCount; // number of such literals, usually none
+    private int size; // number of tokens, the last one is SCANEOF unless lexing stopped at an end position
+    private SymbolPool symbols; // pool the ID symbol ids refer to
+
+    /**
+     * Default constructor, the arrays grow as tokens are added
+     */
+    public TokenStream() {
+    }
+
+    /**
+     * Constructor for a stream of a known size filled in by the caller, see ParallelLexer
+     * @param size number of tokens
+     * @param symbols pool the ID symbol ids refer to
+     */
+    TokenStream(int size, SymbolPool symbols) {
+        kind = new byte[size];
+        start = new long[size];
+        length = new int[size];
+        value = new int[size];
+        this.size = size;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Lexes a whole source into a new token stream
+     * @param source the program text
+     * @return the tokens
+     */
+    public static TokenStream lex(CharSource source) {
+        TokenStream tokens = new TokenStream();
+        tokens.lex(new MyScanner(source));
+        return tokens;
+    }
+
+    /**
+     * Replaces the content of this stream with every token of a scanner, reusing the arrays
+     * @param scanner scanner positioned at the start of the program
+     */
+    public void lex(MyScanner scanner) {
+        lex(scanner, Long.MAX_VALUE);
+    }
+
+    /**
+     * Replaces the content of this stream with the tokens of a scanner that start before a position.
+     * The stream only ends with SCANEOF if the input ends before that position.
+     * @param scanner scanner positioned at the first token
+     * @param end position where the tokens stop, a token cannot span it
+     * @throws InputMismatchException for a lexical error in a token that starts before end
+     */
+    void lex(MyScanner scanner, long end) {
+        symbols = scanner.getSymbolPool();
+        literalCount = 0;
+        int n = 0;
+        MyScanner.TOKEN token;
+        do {
+            try {
+                token = scanner.scan();
+            } catch (InputMismatchException e) {
+                if (scanner.getTokenStart() < end) {
+                    throw e;
+                }
+                break; // the error belongs to the tokens after end
+            }
+            if (scanner.getTokenStart() >= end) {
+                break;
+            }
+            if (n == kind.length) {
+                grow();
+            }
+            kind[n] = (byte) token.ordinal();
+            start[n] = scanner.getTokenStart();
+            length[n] = scanner.getTokenLength();
+            if (token == MyScanner.TOKEN.INTLITERAL) {
+                value[n] = scanner.getIntValue();
+                String literal = scanner.getLiteralText();
+                if (literal != null) {
+                    addLiteral(n, literal);
+                }
+            } else if (token == MyScanner.TOKEN.ID) {
+                value[n] = scanner.getSymbolId();
+            } else {
+                value[n] = 0;
+            }
+            n++;
+        } while (token != MyScanner.TOKEN.SCANEOF);
+        size = n;
+    }
+
+    /**
+     * Returns the number of tokens including the final SCANEOF
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the kind of a token, positions past the end are SCANEOF
+     * @param i token index
+     * @return the token kind
+     */
+    MyScanner.TOKEN kind(int i) {
+        return i < size ? KINDS[kind[i]] : MyScanner.TOKEN.SCANEOF;
+    }
+
+    /**
+     * Returns the position of a token in the source
+     * @param i token index
+     * @return index of the first character
+     */
+    long start(int i) {
+        return start[i];
+    }
+
+    /**
+     * Returns the number of characters of a token
+     * @param i token index
+     * @return the length
+     */
+    int length(int i) {
+        return length[i];
+    }
+
+    /**
+     * Returns the value of an INTLITERAL token
+     * @param i token index
+     * @return the int value
+     */
+    int intValue(int i) {
+        return value[i];
+    }
+
+    /**
+     * Returns the symbol id of an ID token
+     * @param i token index
+     * @return the symbol id, or -1 if the token is not an ID
+     */
+    int symbolId(int i) {
+        return kind(i) == MyScanner.TOKEN.ID ? value[i] : -1;
+    }
+
+    /**
+     * Returns the interned name of an ID token
+     * @param i token index
+     * @return the name, or null if the token is not an ID
+     */
+    String symbol(int i) {
+        return kind(i) == MyScanner.TOKEN.ID ? symbols.name(value[i]) : null;
+    }
+
+    /**
+     * Returns the text of a token as it was written, the source is not needed
+     * @param i token index
+     * @return the token text
+     */
+    String text(int i) {
+        MyScanner.TOKEN token = kind(i);
+        if (token == MyScanner.TOKEN.INTLITERAL && literalCount > 0) {
+            int k = Arrays.binarySearch(literalTokens, 0, literalCount, i);
+            if (k >= 0) {
+                return literalTexts[k];
+            }
+        }
+        return text(token, value[i], token == MyScanner.TOKEN.ID ? symbols.name(value[i]) : null);
+    }
+
+    /**
+     * Rebuilds the text of a token from its kind and value, the caller handles INTLITERAL tokens that
+     * MyScanner.getLiteralText() returns a text for
+     * @param token the token kind
+     * @param value INTLITERAL value
+     * @param name name of an ID
+     * @return the token text
+     */
+    static String text(MyScanner.TOKEN token, int value, String name) {
+        switch (token) {
+            case ID:
+                return name;
+            case INTLITERAL:
+                return Integer.toString(value);
+            case EQUALS:
+                return "=";
+            case PLUS:
+                return "+";
+            case SCANEOF:
+                return "";
+            default:
+                return token.keyword;
+        }
+    }
+
+    /**
+     * Returns the pool the ID symbol ids refer to
+     * @return the symbol pool
+     */
+    SymbolPool getSymbolPool() {
+        return symbols;
+    }
+
+    /**
+     * Records the text of a literal, tokens must be added in ascending order
+     * @param token token index
+     * @param text the literal as written
+     */
+    void addLiteral(int token, String text) {
+        if (literalCount == literalTokens.length) {
+            literalTokens = Arrays.copyOf(literalTokens, literalCount * 2);
+            literalTexts = Arrays.copyOf(literalTexts, literalCount * 2);
+        }
+        literalTokens[literalCount] = token;
+        literalTexts[literalCount] = text;
+        literalCount++;
+    }
+
+    private void grow() {
+        int capacity = kind.length * 2;
+        kind = Arrays.copyOf(kind, capacity);
+        start = Arrays.copyOf(start, capacity);
+        length = Arrays.copyOf(length, capacity);
+        value = Arrays.copyOf(value, capacity);
+    }
+}
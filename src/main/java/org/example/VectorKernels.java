@@ -0,0 +1,98 @@
+package org.example;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * BatchKernels on the Vector API, SPECIES.length() lanes per instruction. Masked writes load the old
+ * lanes and blend, which every SIMD instruction set can do. The lanes after the last full vector are
+ * left to the scalar versions, so both give the same results.
+ *
+ * Only loaded when the jdk.incubator.vector module is present, which takes --add-modules
+ * jdk.incubator.vector on the java command line.
+ */
+final class VectorKernels extends BatchKernels {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private VectorKernels() {
+    }
+
+    /**
+     * Creates the kernels, the caller makes sure the module is present
+     * @return the kernels
+     */
+    static BatchKernels create() {
+        return new VectorKernels();
+    }
+
+    @Override
+    void set(int[] dst, int value, boolean[] mask, int from, int to) {
+        int bound = from + SPECIES.loopBound(to - from);
+        IntVector v = IntVector.broadcast(SPECIES, value);
+        int i = from;
+        for (; i < bound; i += SPECIES.length()) {
+            store(v, dst, mask, i);
+        }
+        super.set(dst, value, mask, i, to);
+    }
+
+    @Override
+    void copy(int[] dst, int[] src, boolean[] mask, int from, int to) {
+        int bound = from + SPECIES.loopBound(to - from);
+        int i = from;
+        for (; i < bound; i += SPECIES.length()) {
+            store(IntVector.fromArray(SPECIES, src, i), dst, mask, i);
+        }
+        super.copy(dst, src, mask, i, to);
+    }
+
+    @Override
+    void add(int[] dst, int[] a, int[] b, boolean[] mask, int from, int to) {
+        int bound = from + SPECIES.loopBound(to - from);
+        int i = from;
+        for (; i < bound; i += SPECIES.length()) {
+            store(IntVector.fromArray(SPECIES, a, i).add(IntVector.fromArray(SPECIES, b, i)), dst, mask, i);
+        }
+        super.add(dst, a, b, mask, i, to);
+    }
+
+    @Override
+    void add(int[] dst, int[] a, int value, boolean[] mask, int from, int to) {
+        int bound = from + SPECIES.loopBound(to - from);
+        int i = from;
+        for (; i < bound; i += SPECIES.length()) {
+            store(IntVector.fromArray(SPECIES, a, i).add(value), dst, mask, i);
+        }
+        super.add(dst, a, value, mask, i, to);
+    }
+
+    @Override
+    int equal(int[] a, int[] b, boolean[] mask, boolean[] result, int from, int to) {
+        int bound = from + SPECIES.loopBound(to - from);
+        int count = 0;
+        int i = from;
+        for (; i < bound; i += SPECIES.length()) {
+            VectorMask<Integer> equal = IntVector.fromArray(SPECIES, a, i).compare(VectorOperators.EQ,
+                    IntVector.fromArray(SPECIES, b, i));
+            if (mask != null) {
+                equal = equal.and(VectorMask.fromArray(SPECIES, mask, i));
+            }
+            equal.intoArray(result, i);
+            count += equal.trueCount();
+        }
+        return count + super.equal(a, b, mask, result, i, to);
+    }
+
+    /**
+     * Writes the lanes of v that the mask selects
+     */
+    private static void store(IntVector v, int[] dst, boolean[] mask, int i) {
+        if (mask == null) {
+            v.intoArray(dst, i);
+        } else {
+            IntVector.fromArray(SPECIES, dst, i).blend(v, VectorMask.fromArray(SPECIES, mask, i)).intoArray(dst, i);
+        }
+    }
+}
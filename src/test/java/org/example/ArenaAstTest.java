@@ -0,0 +1,115 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * An arena built from a tree must hold the same nodes in the same order, and give the tree back
+ */
+class ArenaAstTest {
+    @Test
+    void fromKeepsTheTree() {
+        Random random = new Random(11);
+        for (int round = 0; round < 200; round++) {
+            MyParser parser = new MyParser();
+            assertTrue(parser.parse(TestPrograms.runnable(random, round, 8, 80).generate()));
+            AbstractSyntaxTree.NodeProgram program = parser.getAst().getRoot();
+            ArenaAst arena = ArenaAst.from(program);
+            String message = "round " + round;
+            assertEquals(dump(program), dump(arena.toTree().getRoot()), message);
+            assertEquals(TestPrograms.sexpr(program), TestPrograms.sexpr(arena.toTree().getRoot()), message);
+            long footprint = arena.footprint();
+            arena.trim();
+            assertTrue(arena.footprint() <= footprint, message);
+            assertEquals(dump(program), dump(arena.toTree().getRoot()), message); // trimming keeps every node
+            assertShape(program, arena.getRoot(), message);
+        }
+    }
+
+    @Test
+    void nodesAddedAfterTrimGrowTheArena() {
+        MyParser parser = new MyParser();
+        assertTrue(parser.parse("declare x\n print x"));
+        ArenaAst arena = ArenaAst.from(parser.getAst().getRoot());
+        arena.trim();
+        int size = arena.size();
+        int node = arena.add(ArenaAst.INT, ArenaAst.NONE, 42);
+        assertEquals(size, node);
+        assertEquals(42, arena.new Node(node).value());
+        assertEquals(dump(parser.getAst().getRoot()), dump(arena.toTree().getRoot()));
+    }
+
+    /**
+     * Walks the arena beside the tree and compares kinds, names, values and the number of children
+     */
+    private static void assertShape(AbstractSyntaxTree.NodeProgram program, ArenaAst.Node root, String message) {
+        assertEquals(ArenaAst.PROGRAM, root.kind(), message);
+        ArenaAst.Node decls = root.firstChild();
+        assertEquals(ArenaAst.DECLS, decls.kind(), message);
+        ArenaAst.Node id = decls.firstChild();
+        for (AbstractSyntaxTree.NodeId decl : program.decls.decls) {
+            assertEquals(ArenaAst.ID, id.kind(), message);
+            assertEquals(decl.name, id.name(), message);
+            id = id.next();
+        }
+        assertNull(id, message);
+        assertStatements(program.stmts, decls.next(), message);
+        assertNull(decls.next().next(), message);
+    }
+
+    private static void assertStatements(AbstractSyntaxTree.NodeStmts stmts, ArenaAst.Node list, String message) {
+        assertEquals(ArenaAst.STMTS, list.kind(), message);
+        ArenaAst.Node node = list.firstChild();
+        for (AbstractSyntaxTree.NodeStmt stmt : stmts.stmts) {
+            if (stmt instanceof AbstractSyntaxTree.NodeSet set) {
+                assertEquals(ArenaAst.SET, node.kind(), message);
+                assertEquals(set.id.name, node.name(), message);
+                assertEquals(set.intLiteral.intLiteral, node.value(), message);
+            } else if (stmt instanceof AbstractSyntaxTree.NodeCalc calc) {
+                assertEquals(ArenaAst.CALC, node.kind(), message);
+                assertEquals(calc.id.name, node.name(), message);
+                assertExpression(calc.expr, node.firstChild(), message);
+            } else if (stmt instanceof AbstractSyntaxTree.NodePrint print) {
+                assertEquals(ArenaAst.PRINT, node.kind(), message);
+                assertEquals(print.id.name, node.name(), message);
+            } else {
+                AbstractSyntaxTree.NodeIf nodeIf = (AbstractSyntaxTree.NodeIf) stmt;
+                assertEquals(ArenaAst.IF, node.kind(), message);
+                assertEquals(nodeIf.lhs.name, node.name(), message);
+                assertEquals(nodeIf.rhs.name, node.rhsName(), message);
+                assertStatements(nodeIf.getStmts(), node.firstChild(), message);
+            }
+            node = node.next();
+        }
+        assertNull(node, message);
+    }
+
+    private static void assertExpression(AbstractSyntaxTree.NodeExpr expr, ArenaAst.Node node, String message) {
+        if (expr instanceof AbstractSyntaxTree.NodeSum sum) {
+            assertEquals(ArenaAst.SUM, node.kind(), message);
+            ArenaAst.Node operand = node.firstChild();
+            for (AbstractSyntaxTree.NodeExpr inner : sum.operands) {
+                assertExpression(inner, operand, message);
+                operand = operand.next();
+            }
+            assertNull(operand, message);
+        } else if (expr instanceof AbstractSyntaxTree.NodeId id) {
+            assertEquals(ArenaAst.ID, node.kind(), message);
+            assertEquals(id.name, node.name(), message);
+        } else {
+            assertEquals(ArenaAst.INT, node.kind(), message);
+            assertEquals(((AbstractSyntaxTree.NodeIntLiteral) expr).intLiteral, node.value(), message);
+        }
+    }
+
+    private static String dump(AbstractSyntaxTree.NodeBase root) {
+        StringBuilder out = new StringBuilder();
+        AstDumper.dump(root, out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,170 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The emitters must write the formats described on AstEmitter, the same as a plain recursive writer would
+ */
+class AstEmitterTest {
+    private static final String PROGRAM = "declare x\n declare y\n set x = 5\n calc y = x + 4\n"
+            + " if x = y then\n print y\n endif";
+
+    @Test
+    void documentedFormats() {
+        AbstractSyntaxTree.NodeProgram program = parse(PROGRAM, false);
+        assertEquals("(program (decls x y) (stmts (set x 5) (calc y (+ x 4)) (if x y (stmts (print y)))))",
+                sexpr(program));
+        assertEquals("{\"node\":\"program\",\"children\":["
+                + "{\"node\":\"decls\",\"children\":["
+                + "{\"node\":\"id\",\"name\":\"x\"},{\"node\":\"id\",\"name\":\"y\"}]},"
+                + "{\"node\":\"stmts\",\"children\":["
+                + "{\"node\":\"set\",\"children\":[{\"node\":\"id\",\"name\":\"x\"},{\"node\":\"int\",\"value\":5}]},"
+                + "{\"node\":\"calc\",\"children\":[{\"node\":\"id\",\"name\":\"y\"},{\"node\":\"sum\",\"children\":["
+                + "{\"node\":\"id\",\"name\":\"x\"},{\"node\":\"int\",\"value\":4}]}]},"
+                + "{\"node\":\"if\",\"children\":[{\"node\":\"id\",\"name\":\"x\"},{\"node\":\"id\",\"name\":\"y\"},"
+                + "{\"node\":\"stmts\",\"children\":["
+                + "{\"node\":\"print\",\"children\":[{\"node\":\"id\",\"name\":\"y\"}]}]}"
+                + "]}]}]}", json(program));
+    }
+
+    @Test
+    void generatedProgramsMatchARecursiveWriter() {
+        Random random = new Random(12);
+        for (int round = 0; round < 200; round++) {
+            String text = TestPrograms.runnable(random, round, 10, 100).generate();
+            boolean lazy = round % 2 == 0; // bodies parsed while they are written
+            String message = "round " + round;
+            StringBuilder sexpr = new StringBuilder();
+            StringBuilder json = new StringBuilder();
+            write(parse(text, false), false, sexpr);
+            write(parse(text, false), true, json);
+            assertEquals(sexpr.toString(), sexpr(parse(text, lazy)), message);
+            assertEquals(json.toString(), json(parse(text, lazy)), message);
+        }
+    }
+
+    @Test
+    void subtreesAreWrittenAlone() {
+        AbstractSyntaxTree.NodeProgram program = parse(PROGRAM, false);
+        assertEquals("(stmts (set x 5) (calc y (+ x 4)) (if x y (stmts (print y))))", sexpr(program.stmts));
+        assertEquals("(+ x 4)", sexpr(((AbstractSyntaxTree.NodeCalc) program.stmts.stmts.get(1)).expr));
+        assertEquals("x", sexpr(program.decls.decls.get(0)));
+        assertEquals("{\"node\":\"int\",\"value\":5}", json(((AbstractSyntaxTree.NodeSet) program.stmts.stmts.get(0))
+                .intLiteral));
+    }
+
+    @Test
+    void deepNestingDoesNotOverflowTheStack() {
+        int depth = 100_000; // deeper than the parser could recurse, so the tree is built by hand
+        AbstractSyntaxTree ast = new AbstractSyntaxTree();
+        AbstractSyntaxTree.NodeStmts body = ast.new NodeStmts();
+        body.addStmt(ast.new NodePrint(ast.new NodeId("x")));
+        for (int i = 0; i < depth; i++) {
+            AbstractSyntaxTree.NodeStmts outer = ast.new NodeStmts();
+            outer.addStmt(ast.new NodeIf(ast.new NodeId("x"), ast.new NodeId("x"), body));
+            body = outer;
+        }
+        String sexpr = sexpr(body);
+        assertEquals("(stmts (if x x ".repeat(depth) + "(stmts (print x))" + "))".repeat(depth), sexpr);
+        String json = json(body);
+        assertEquals(json.chars().filter(c -> c == '{').count(), json.chars().filter(c -> c == '}').count());
+        assertEquals(json.chars().filter(c -> c == '[').count(), json.chars().filter(c -> c == ']').count());
+    }
+
+    @Test
+    void writeErrorsAreUnchecked() {
+        Appendable failing = new Appendable() {
+            @Override
+            public Appendable append(CharSequence text) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public Appendable append(CharSequence text, int start, int end) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public Appendable append(char c) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        AbstractSyntaxTree.NodeProgram program = parse(PROGRAM, false);
+        assertEquals("disk full", assertThrows(UncheckedIOException.class, () -> AstEmitter.json(program, failing))
+                .getCause().getMessage());
+        assertEquals("disk full", assertThrows(UncheckedIOException.class, () -> AstEmitter.sexpr(program, failing))
+                .getCause().getMessage());
+    }
+
+    /**
+     * Writes a tree the way the class comment of AstEmitter describes, by plain recursion
+     */
+    private static void write(AbstractSyntaxTree.NodeBase node, boolean json, StringBuilder out) {
+        if (node instanceof AbstractSyntaxTree.NodeId id) {
+            out.append(json ? "{\"node\":\"id\",\"name\":\"" + id.name + "\"}" : id.name);
+            return;
+        }
+        if (node instanceof AbstractSyntaxTree.NodeIntLiteral literal) {
+            out.append(json ? "{\"node\":\"int\",\"value\":" + literal.intLiteral + "}" : literal.intLiteral);
+            return;
+        }
+        AbstractSyntaxTree.NodeBase[] children;
+        String type;
+        if (node instanceof AbstractSyntaxTree.NodeProgram program) {
+            type = "program";
+            children = new AbstractSyntaxTree.NodeBase[] {program.decls, program.stmts};
+        } else if (node instanceof AbstractSyntaxTree.NodeDecls decls) {
+            type = "decls";
+            children = decls.decls.toArray(new AbstractSyntaxTree.NodeBase[0]);
+        } else if (node instanceof AbstractSyntaxTree.NodeStmts stmts) {
+            type = "stmts";
+            children = stmts.stmts.toArray(new AbstractSyntaxTree.NodeBase[0]);
+        } else if (node instanceof AbstractSyntaxTree.NodeSet set) {
+            type = "set";
+            children = new AbstractSyntaxTree.NodeBase[] {set.id, set.intLiteral};
+        } else if (node instanceof AbstractSyntaxTree.NodeCalc calc) {
+            type = "calc";
+            children = new AbstractSyntaxTree.NodeBase[] {calc.id, calc.expr};
+        } else if (node instanceof AbstractSyntaxTree.NodePrint print) {
+            type = "print";
+            children = new AbstractSyntaxTree.NodeBase[] {print.id};
+        } else if (node instanceof AbstractSyntaxTree.NodeIf nodeIf) {
+            type = "if";
+            children = new AbstractSyntaxTree.NodeBase[] {nodeIf.lhs, nodeIf.rhs, nodeIf.getStmts()};
+        } else {
+            type = json ? "sum" : "+";
+            children = ((AbstractSyntaxTree.NodeSum) node).operands;
+        }
+        out.append(json ? "{\"node\":\"" + type + "\",\"children\":[" : "(" + type);
+        for (int i = 0; i < children.length; i++) {
+            out.append(json ? (i > 0 ? "," : "") : " ");
+            write(children[i], json, out);
+        }
+        out.append(json ? "]}" : ")");
+    }
+
+    private static AbstractSyntaxTree.NodeProgram parse(String text, boolean lazy) {
+        MyParser parser = new MyParser();
+        parser.setLazyBodies(lazy);
+        assertTrue(parser.parse(text), text);
+        return parser.getAst().getRoot();
+    }
+
+    private static String sexpr(AbstractSyntaxTree.NodeBase root) {
+        return TestPrograms.sexpr(root);
+    }
+
+    private static String json(AbstractSyntaxTree.NodeBase root) {
+        StringBuilder out = new StringBuilder();
+        AstEmitter.json(root, out);
+        return out.toString();
+    }
+}
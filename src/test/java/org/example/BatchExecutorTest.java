@@ -0,0 +1,54 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Every instance of a batch, run by the scalar kernels, the vector kernels or from optimized register
+ * code, must end like the interpreter run on its initial values
+ */
+class BatchExecutorTest {
+    @Test
+    void scalarAndVectorMatchTheInterpreter() {
+        assertTrue(BatchExecutor.isVectorAvailable(), "the tests run with --add-modules jdk.incubator.vector");
+        Random random = new Random(24);
+        for (int round = 0; round < 200; round++) {
+            MyParser parser = new MyParser();
+            assertTrue(parser.parse(TestPrograms.runnable(random, round, 5, 40).generate()));
+            AbstractSyntaxTree.NodeProgram program = parser.getAst().getRoot();
+            Interpreter interpreter = new Interpreter(program);
+            int rows = round % 10 == 0 ? 4096 + random.nextInt(5000) : 1 + random.nextInt(300); // some span several tiles
+            int[][] initial = new int[rows][interpreter.getSlots()];
+            for (int[] row : initial) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = random.nextInt(4) == 0 ? random.nextInt() : random.nextInt(3); // overflow and equal values
+                }
+            }
+            SsaProgram ssa = SsaProgram.build(program);
+            Optimizer optimizer = new Optimizer();
+            optimizer.setKeepVariables(true);
+            optimizer.optimize(ssa);
+            BatchExecutor scalar = new BatchExecutor(program);
+            scalar.setVectorized(false);
+            BatchExecutor[] executors = {scalar, new BatchExecutor(program), new BatchExecutor(ssa.lower())};
+            String[] names = {"scalar", "vector", "optimized"};
+            for (int k = 0; k < executors.length; k++) {
+                BatchExecutor.Result result = executors[k].run(initial);
+                for (int i = 0; i < rows; i++) {
+                    int[] frame = initial[i].clone();
+                    OutputBuffer out = new OutputBuffer();
+                    int executed = interpreter.run(frame, out);
+                    String message = names[k] + ", round " + round + ", instance " + i;
+                    assertEquals(executed, result.getExecuted(i), message);
+                    assertArrayEquals(frame, result.getValues(i), message);
+                    assertEquals(out.toString(), result.getOutput(i), message);
+                }
+            }
+        }
+    }
+}
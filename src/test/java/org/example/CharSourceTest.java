@@ -0,0 +1,153 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Every CharSource must read the characters of the text it was made from, and EOF past its end
+ */
+class CharSourceTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void sourcesReadTheText() {
+        Random random = new Random(1);
+        for (int round = 0; round < 50; round++) {
+            String text = TestPrograms.generator(random, 10, 200, 4).generate();
+            char[] padded = ("xx" + text + "yy").toCharArray();
+            ByteBuffer bytes = ByteBuffer.wrap(("xx" + text).getBytes(StandardCharsets.ISO_8859_1));
+            bytes.position(2);
+            CharSource[] sources = {CharSource.of(text.toCharArray()), CharSource.of(text),
+                    CharSource.of(new StringBuilder(text)), CharSource.of(CharBuffer.wrap(padded, 2, text.length())),
+                    CharSource.of(bytes), CharSource.of(new StringReader(text))};
+            for (CharSource source : sources) {
+                String message = "round " + round + " " + source.getClass().getSimpleName();
+                assertText(text, source, message);
+                assertEquals(CharSource.EOF, source.charAt(text.length() + 1000L), message);
+            }
+        }
+    }
+
+    @Test
+    void readerSourceRefillsAcrossBlocks() {
+        Random random = new Random(1);
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 100_000) { // many 8192 character blocks
+            builder.append((char) ('a' + random.nextInt(26)));
+        }
+        String text = builder.toString();
+        CharSource source = CharSource.of(new TrickleReader(text, random));
+        long kept = 0; // the scanner releases behind it and looks a little back and ahead
+        for (int i = 0; i < text.length(); i++) {
+            assertEquals(text.charAt(i), source.charAt(i), "position " + i);
+            long back = Math.max(kept, i - random.nextInt(50));
+            assertEquals(text.charAt((int) back), source.charAt(back), "back to " + back + " from " + i);
+            long ahead = Math.min(text.length() - 1, i + random.nextInt(20_000)); // may read several blocks ahead
+            assertEquals(text.charAt((int) ahead), source.charAt(ahead), "ahead to " + ahead + " from " + i);
+            if (random.nextInt(100) == 0) {
+                kept = i;
+                source.release(kept);
+            }
+        }
+        assertEquals(CharSource.EOF, source.charAt(text.length()));
+    }
+
+    @Test
+    void unreleasedTextIsKeptWhileTheWindowGrows() {
+        String text = "declare x\n".repeat(5000);
+        CharSource source = CharSource.of(new TrickleReader(text, new Random(1)));
+        source.release(10);
+        assertEquals(text.charAt(text.length() - 1), source.charAt(text.length() - 1)); // read it all
+        assertText(text.substring(10), position -> source.charAt(position + 10), "after growing");
+    }
+
+    @Test
+    void windowsSplitPositions() throws IOException {
+        Random random = new Random(1);
+        for (int shift = 2; shift <= 6; shift++) {
+            String text = TestPrograms.runnable(random, shift, 5, 30).generate();
+            Path file = dir.resolve("program" + shift);
+            Files.writeString(file, text, StandardCharsets.ISO_8859_1);
+            CharSource source;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                source = Compiler.map(channel, channel.size(), shift);
+            }
+            assertEquals(text.length(), source.length(), "shift " + shift);
+            assertText(text, source, "shift " + shift);
+            MyParser windowed = new MyParser(); // tokens span the windows
+            assertTrue(windowed.parse(source), "shift " + shift);
+            MyParser whole = new MyParser();
+            assertTrue(whole.parse(text));
+            assertEquals(TestPrograms.sexpr(whole.getAst().getRoot()), TestPrograms.sexpr(windowed.getAst().getRoot()));
+        }
+    }
+
+    @Test
+    void readerParsesLikeTheString() {
+        Random random = new Random(1);
+        for (int round = 0; round < 20; round++) {
+            String text = TestPrograms.runnable(random, round, 20, 3000).generate(); // several blocks
+            MyParser read = new MyParser();
+            assertTrue(read.parse(CharSource.of(new TrickleReader(text, random))), "round " + round);
+            MyParser whole = new MyParser();
+            assertTrue(whole.parse(text));
+            assertEquals(TestPrograms.sexpr(whole.getAst().getRoot()), TestPrograms.sexpr(read.getAst().getRoot()),
+                    "round " + round);
+        }
+    }
+
+    private static void assertText(String text, CharSource source, String message) {
+        if (source.length() >= 0) {
+            assertEquals(text.length(), source.length(), message);
+        }
+        for (int i = 0; i < text.length(); i++) {
+            assertEquals(text.charAt(i), source.charAt(i), message + " at " + i);
+        }
+        assertEquals(CharSource.EOF, source.charAt(text.length()), message);
+    }
+
+    /**
+     * Reader that hands out a few characters at a time, so blocks are filled by several reads
+     */
+    private static final class TrickleReader extends Reader {
+        private final String text;
+        private final Random random;
+        private int position;
+
+        TrickleReader(String text, Random random) {
+            this.text = text;
+            this.random = random;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position == text.length()) {
+                return -1;
+            }
+            int n = Math.min(Math.min(length, 1 + random.nextInt(3000)), text.length() - position);
+            text.getChars(position, position + n, buffer, offset);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
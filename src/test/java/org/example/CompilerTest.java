@@ -0,0 +1,98 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Measuring a compilation must not change what it reports
+ */
+class CompilerTest {
+    @Test
+    void metricsKeepTheDiagnostics() {
+        List<String> programs = new ArrayList<>(List.of("print 007", "declare x\n print 08 x", "declare x\n x = 1 $ 2"));
+        Random random = new Random(18);
+        for (int i = 0; i < 100; i++) {
+            programs.add(TestPrograms.edit(random, TestPrograms.generator(random, 100, 100, 3).generate(),
+                    TestPrograms.ERRORS, 3, false));
+        }
+        for (boolean recovery : new boolean[] {false, true}) {
+            List<Compiler.Compilation> plain = new Compiler(1, recovery).compileSources(programs);
+            List<Compiler.Compilation> measured = new Compiler(1, recovery, new CompilerMetrics())
+                    .compileSources(programs);
+            for (int i = 0; i < programs.size(); i++) {
+                assertNull(plain.get(i).getSample());
+                assertNotNull(measured.get(i).getSample());
+                assertEquals(plain.get(i).toString(), measured.get(i).toString(), programs.get(i));
+            }
+        }
+    }
+
+    @Test
+    void resolverErrorsAndWarningsAreReported() {
+        String program = "declare x\n declare y\n declare x\n print z\n set w = 1\n print z\n print y";
+        for (CompilerMetrics metrics : new CompilerMetrics[] {null, new CompilerMetrics()}) {
+            Compiler.Compilation compilation = new Compiler(1, false, metrics).compile("p", CharSource.of(program));
+            assertFalse(compilation.isSuccess());
+            assertNull(compilation.getExecutable());
+            assertNull(compilation.getFailure());
+            assertEquals(List.of(), compilation.getDiagnostics());
+            assertEquals(List.of("Undeclared variable: z", "Undeclared variable: w"), compilation.getErrors());
+            assertEquals(List.of("Duplicate declaration: x"), compilation.getWarnings());
+            assertEquals("p: [Undeclared variable: z, Undeclared variable: w], warnings [Duplicate declaration: x]",
+                    compilation.toString());
+        }
+        Compiler.Compilation warned = new Compiler(1, false).compile("q",
+                CharSource.of("declare x\n declare x\n print x"));
+        assertTrue(warned.isSuccess());
+        assertEquals("q: ok, warnings [Duplicate declaration: x]", warned.toString());
+    }
+
+    @Test
+    void windowsReadLikeOneBuffer(@TempDir Path directory) throws IOException {
+        ProgramGenerator generator = new ProgramGenerator(13);
+        generator.setStatements(2000);
+        String program = generator.generate() + "print 0080"; // tokens span windows, the error is in the last one
+        Path file = Files.writeString(directory.resolve("big"), program, StandardCharsets.US_ASCII);
+        Compiler compiler = new Compiler(1, true);
+        String expected = compiler.compile("big", CharSource.of(program)).toString();
+        for (int shift : new int[] {0, 3, 6, 12}) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                CharSource windows = Compiler.map(channel, channel.size(), shift);
+                assertEquals(program.length(), windows.length());
+                assertEquals(expected, compiler.compile("big", windows).toString(), "shift " + shift);
+            }
+        }
+    }
+
+    @Test
+    void phasesAddUpToTheParse() {
+        ProgramGenerator generator = new ProgramGenerator(18);
+        generator.setStatements(20000);
+        CompilerMetrics metrics = new CompilerMetrics();
+        Compiler.Compilation compilation = new Compiler(1, false, metrics).compile("big",
+                CharSource.of(generator.generate()));
+        CompilerMetrics.Sample sample = compilation.getSample();
+        assertTrue(compilation.isSuccess());
+        assertTrue(sample.getLexNanos() > 0);
+        assertTrue(sample.getBuildNanos() > 0);
+        assertTrue(sample.getParseNanos() >= 0);
+        assertEquals(sample.getLexNanos() + sample.getParseNanos() + sample.getBuildNanos(),
+                metrics.getLexNanos() + metrics.getParseNanos() + metrics.getBuildNanos());
+    }
+}
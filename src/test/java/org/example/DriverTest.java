@@ -0,0 +1,162 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The command line driver must print what the phases it was asked for produce, report errors on standard
+ * error with the file name and exit with 0, 1 or 2
+ */
+class DriverTest {
+    private static final String PROGRAM = "declare x\n declare y\n set x = 5\n calc y = x + 4\n print y\n"
+            + " if x = x then\n print x\n endif";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void everyWayOfRunningPrintsTheSame() throws IOException {
+        Random random = new Random(13);
+        for (int round = 0; round < 30; round++) {
+            String text = TestPrograms.runnable(random, round, 10, 300).generate();
+            Path file = write("program" + round, text);
+            String expected = interpret(text);
+            String message = "round " + round;
+            for (String[] flags : new String[][] {{}, {"--run"}, {"--optimize"}, {"--stream"}}) {
+                Result result = run("", concat(flags, file.toString()));
+                assertEquals(0, result.status, message + " " + String.join(" ", flags) + result.err);
+                assertEquals(expected, result.out, message + " " + String.join(" ", flags));
+            }
+            Result stdin = run(text, "-");
+            assertEquals(0, stdin.status, message + stdin.err);
+            assertEquals(expected, stdin.out, message);
+        }
+    }
+
+    @Test
+    void phasesPrintWhatTheyProduce() throws IOException {
+        Path file = write("program", PROGRAM);
+        Result lex = run("", "--lex", file.toString());
+        assertEquals(0, lex.status);
+        assertEquals(file + ": " + (TokenStream.lex(CharSource.of(PROGRAM)).size() - 1) + " tokens\n", lex.out);
+        Result parse = run("", "--parse", file.toString());
+        assertEquals(0, parse.status);
+        assertEquals("", parse.out);
+        Result dump = run("", "--dump", file.toString());
+        assertEquals(0, dump.status);
+        StringBuilder expected = new StringBuilder();
+        MyParser parser = new MyParser();
+        assertTrue(parser.parse(PROGRAM));
+        AstDumper.dump(parser.getAst().getRoot(), expected);
+        assertEquals(expected.toString(), dump.out);
+        Result both = run("", "--dump", "--run", file.toString());
+        assertEquals(expected + interpret(PROGRAM), both.out);
+        Result timed = run("", "--time", file.toString());
+        assertEquals(interpret(PROGRAM), timed.out); // timing goes to standard error only
+        assertTrue(timed.err.contains(file + ": parse"), timed.err);
+        assertTrue(timed.err.contains(file + ": run"), timed.err);
+    }
+
+    @Test
+    void errorsAreReportedPerFile() throws IOException {
+        Path good = write("good", PROGRAM);
+        Path syntax = write("syntax", "declare x\n print 5\n print x");
+        Path undeclared = write("undeclared", "declare x\n declare x\n print y");
+        Path missing = dir.resolve("missing");
+        Result result = run("", syntax.toString(), missing.toString(), undeclared.toString(), good.toString());
+        assertEquals(1, result.status);
+        assertEquals(interpret(PROGRAM), result.out); // the good file still runs
+        assertEquals(syntax + ": Parse Error at 17: Expected: ID after PRINT, Received: INTLITERAL, Buffer: 5\n"
+                + missing + ": no such file\n"
+                + undeclared + ": warning: Duplicate declaration: x\n"
+                + undeclared + ": Undeclared variable: y\n", result.err);
+        Result recovered = run("", "--parse", write("errors", "declare x\n print 5\n print x\n set x\n").toString());
+        assertEquals(1, recovered.status);
+        assertEquals(1, recovered.err.lines().count()); // the driver parses without recovery
+    }
+
+    @Test
+    void badCommandLinesAreRejected() throws IOException {
+        Result unknown = run("", "--fast", "program");
+        assertEquals(2, unknown.status);
+        assertTrue(unknown.err.startsWith("Unknown option: --fast\nUsage: java org.example.Main"), unknown.err);
+        assertEquals("", unknown.out);
+        Result stdin = run(PROGRAM, "--lex", "--parse");
+        assertEquals(1, stdin.status);
+        assertEquals("-: standard input can only be read once, use a file to lex and parse it\n", stdin.err);
+    }
+
+    /**
+     * Runs the driver with standard input, output and error replaced
+     * @param in text of standard input
+     * @param args the command line
+     * @return the exit status and what was printed
+     */
+    private static Result run(String in, String... args) {
+        InputStream oldIn = System.in;
+        PrintStream oldOut = System.out;
+        PrintStream oldErr = System.err;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        try {
+            System.setIn(new ByteArrayInputStream(in.getBytes(StandardCharsets.ISO_8859_1)));
+            System.setOut(new PrintStream(out, true, StandardCharsets.US_ASCII));
+            System.setErr(new PrintStream(err, true, StandardCharsets.US_ASCII));
+            int status = Driver.run(args);
+            return new Result(status, out.toString(StandardCharsets.US_ASCII),
+                    err.toString(StandardCharsets.US_ASCII).replace(System.lineSeparator(), "\n"));
+        } finally {
+            System.setIn(oldIn);
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+        }
+    }
+
+    private static String interpret(String text) {
+        MyParser parser = new MyParser();
+        assertTrue(parser.parse(text), text);
+        OutputBuffer out = new OutputBuffer();
+        Interpreter interpreter = new Interpreter(parser.getAst().getRoot());
+        interpreter.run(new int[interpreter.getSlots()], out);
+        return out.toString();
+    }
+
+    private Path write(String name, String text) throws IOException {
+        return Files.writeString(dir.resolve(name), text, StandardCharsets.ISO_8859_1);
+    }
+
+    private static String[] concat(String[] flags, String file) {
+        String[] args = Arrays.copyOf(flags, flags.length + 1);
+        args[flags.length] = file;
+        return args;
+    }
+
+    /**
+     * Exit status and output of one run of the driver
+     */
+    private static final class Result {
+        final int status;
+        final String out;
+        final String err;
+
+        Result(int status, String out, String err) {
+            this.status = status;
+            this.out = out;
+            this.err = err;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * After any sequence of edits an IncrementalParser must hold the tree and diagnostics of a full parse with recovery
+ */
+class IncrementalParserTest {
+    private static final String[] PIECES = {"declare ", "set ", "calc ", "print ", "if ", "then", "endif", "va", "vb",
+            "vc", " = ", " + ", "1", "42", "\n", " ", "#", "9999999999", "q", "if va = vb then\n", "endif\n",
+            "calc va = vb + 1\n", "if vb = vb then\nif va = va then\nprint va\nendif\n"};
+
+    @Test
+    void randomEditsMatchAFullParse() {
+        Random random = new Random(15);
+        for (int round = 0; round < 150; round++) {
+            String text = TestPrograms.generator(random, 5, 30, 3).generate();
+            IncrementalParser parser = new IncrementalParser(text);
+            assertEquals(full(text), incremental(parser), text);
+            for (int edit = 0; edit < 40; edit++) {
+                TestPrograms.Edit change = TestPrograms.Edit.random(random, text, PIECES, 8, 2);
+                String before = text;
+                text = change.apply(text);
+                parser.edit(change.offset, change.removed, change.inserted);
+                String message = "round " + round + " edit " + edit + " " + change + " into\n" + before;
+                assertEquals(text, parser.getText(), message);
+                assertEquals(full(text), incremental(parser), message);
+            }
+        }
+    }
+
+    private static String full(String text) {
+        MyParser parser = new MyParser();
+        parser.setRecovery(true);
+        parser.parse(text);
+        return TestPrograms.sexpr(parser.getAst(), parser.getDiagnostics());
+    }
+
+    private static String incremental(IncrementalParser parser) {
+        return TestPrograms.sexpr(parser.getProgram()) + "\n" + parser.getDiagnostics();
+    }
+}
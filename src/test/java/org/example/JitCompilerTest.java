@@ -0,0 +1,89 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A compiled program must print, count and leave its variables like the interpreter, also when it is
+ * too large for one class file
+ */
+class JitCompilerTest {
+    @Test
+    void generatedProgramsMatchTheInterpreter() {
+        Random random = new Random(8);
+        for (int round = 0; round < 200; round++) {
+            ProgramGenerator generator = new ProgramGenerator(round);
+            generator.setDeclarations(1 + random.nextInt(300));
+            generator.setStatements(1 + random.nextInt(round % 20 == 0 ? 5000 : 200)); // some need several chunks
+            generator.setMix(random.nextInt(4), random.nextInt(4), random.nextInt(3), 1 + random.nextInt(3));
+            generator.setSumLength(1 + random.nextInt(round % 10 == 0 ? 3000 : 5)); // some sums need parts
+            generator.setIfs(random.nextInt(4), 1 + random.nextInt(round % 7 == 0 ? 400 : 5)); // some ifs need chunks
+            List<String> warnings = new ArrayList<>();
+            ExecutableProgram compiled = assertMatches(generator.generate(), warnings, random, "round " + round);
+            assertFalse(compiled instanceof Interpreter, "round " + round);
+            assertTrue(warnings.isEmpty(), "round " + round);
+        }
+    }
+
+    @Test
+    void largeLiteralsMatchTheInterpreter() {
+        StringBuilder text = new StringBuilder("declare x\ndeclare y\n");
+        int[] literals = {0, 5, 6, 127, 128, 32767, 32768, Integer.MAX_VALUE, 1000000};
+        for (int literal : literals) {
+            text.append("set x = ").append(literal).append("\ncalc y = y + x + ").append(literal).append("\nprint y\n");
+        }
+        List<String> warnings = new ArrayList<>();
+        assertFalse(assertMatches(text.toString(), warnings, new Random(8), "literals") instanceof Interpreter);
+    }
+
+    @Test
+    void constantPoolOverflowFallsBackToTheInterpreter() {
+        StringBuilder text = new StringBuilder("declare x\n");
+        for (int i = 0; i < 70_000; i++) {
+            text.append("set x = ").append(40_000 + i).append("\nprint x\n"); // each literal is its own constant
+        }
+        List<String> warnings = new ArrayList<>();
+        assertInstanceOf(Interpreter.class, assertMatches(text.toString(), warnings, new Random(8), "overflow"));
+        assertEquals(1, warnings.size());
+        assertTrue(warnings.get(0).contains("65535"), warnings.get(0));
+        assertNull(new JitCompiler().classFile(parse(text.toString())));
+    }
+
+    /**
+     * Compiles a program and checks it against the interpreter from a random frame
+     * @return the compiled program
+     */
+    private static ExecutableProgram assertMatches(String text, List<String> warnings, Random random, String message) {
+        AbstractSyntaxTree.NodeProgram program = parse(text);
+        ExecutableProgram compiled = JitCompiler.compile(program, warnings);
+        Interpreter interpreter = new Interpreter(program);
+        assertEquals(interpreter.getSlots(), compiled.getSlots(), message);
+        int[] expected = new int[interpreter.getSlots()];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = random.nextInt(4) == 0 ? random.nextInt() : random.nextInt(3); // overflow and equal values
+        }
+        int[] actual = expected.clone();
+        OutputBuffer expectedOut = new OutputBuffer();
+        OutputBuffer actualOut = new OutputBuffer();
+        assertEquals(interpreter.run(expected, expectedOut), compiled.run(actual, actualOut), message);
+        assertArrayEquals(expected, actual, message);
+        assertEquals(expectedOut.toString(), actualOut.toString(), message);
+        return compiled;
+    }
+
+    private static AbstractSyntaxTree.NodeProgram parse(String text) {
+        MyParser parser = new MyParser();
+        assertTrue(parser.parse(text));
+        return parser.getAst().getRoot();
+    }
+}
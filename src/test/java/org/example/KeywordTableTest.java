@@ -0,0 +1,85 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The perfect hash keyword table must find every reserved word and nothing else, also for words of the
+ * same length as a keyword or landing in its slot
+ */
+class KeywordTableTest {
+    private static final Map<String, MyScanner.TOKEN> KEYWORDS = new HashMap<>();
+
+    static {
+        for (MyScanner.TOKEN token : MyScanner.TOKEN.values()) {
+            if (token.keyword != null) {
+                KEYWORDS.put(token.keyword, token);
+            }
+        }
+    }
+
+    @Test
+    void everyKeywordIsFound() {
+        assertEquals(8, KEYWORDS.size());
+        for (Map.Entry<String, MyScanner.TOKEN> keyword : KEYWORDS.entrySet()) {
+            assertSame(keyword.getValue(), classify(keyword.getKey()), keyword.getKey());
+            assertSame(keyword.getValue(), scan(keyword.getKey()), keyword.getKey());
+            assertSame(keyword.getValue(), scan("  " + keyword.getKey() + "\n"), keyword.getKey()); // in place
+        }
+    }
+
+    @Test
+    void nearMissesAreIdentifiers() {
+        for (String keyword : KEYWORDS.keySet()) {
+            for (int i = 0; i < keyword.length(); i++) {
+                for (char c = 'a'; c <= 'z'; c++) { // every word one letter away, same length and hash shape
+                    String near = keyword.substring(0, i) + c + keyword.substring(i + 1);
+                    assertSame(KEYWORDS.get(near), classify(near), near);
+                }
+                String upper = keyword.substring(0, i) + Character.toUpperCase(keyword.charAt(i))
+                        + keyword.substring(i + 1);
+                assertNull(classify(upper), upper);
+                assertSame(MyScanner.TOKEN.ID, scan(upper), upper);
+            }
+            for (String near : new String[] {keyword.substring(1), keyword.substring(0, keyword.length() - 1),
+                    keyword + "s", "x" + keyword, keyword + keyword}) {
+                assertNull(classify(near), near);
+                assertSame(MyScanner.TOKEN.ID, scan(near), near);
+            }
+        }
+    }
+
+    @Test
+    void wordsSharingAKeywordSlotAreIdentifiers() {
+        Random random = new Random(3);
+        for (int round = 0; round < 200_000; round++) { // the table is small, so most words share a keyword's slot
+            char[] chars = new char[1 + random.nextInt(8)];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = (char) ('a' + random.nextInt(26));
+            }
+            String word = new String(chars);
+            assertSame(KEYWORDS.get(word), classify(word), word);
+        }
+        for (String keyword : KEYWORDS.keySet()) { // words with the very same hash
+            String twin = keyword.substring(0, keyword.length() - 2) + (char) (keyword.charAt(keyword.length() - 2) + 1)
+                    + (char) (keyword.charAt(keyword.length() - 1) - 31);
+            assertEquals(SymbolPool.hash(keyword), SymbolPool.hash(twin), twin);
+            assertNull(classify(twin), twin);
+        }
+    }
+
+    private static MyScanner.TOKEN classify(String word) {
+        return MyScanner.keyword(CharSource.of(word), 0, word.length(), SymbolPool.hash(word));
+    }
+
+    private static MyScanner.TOKEN scan(String text) {
+        return new MyScanner(CharSource.of(text)).scan();
+    }
+}
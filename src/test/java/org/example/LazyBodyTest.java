@@ -0,0 +1,94 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A tree with lazy if bodies must be the tree parsed eagerly once its bodies are read, and must only parse
+ * the bodies something asks for
+ */
+class LazyBodyTest {
+    @Test
+    void lazyTreesAreTheEagerTrees() {
+        Random random = new Random(16);
+        for (int round = 0; round < 300; round++) {
+            String text = TestPrograms.runnable(random, round, 10, 200).generate();
+            String message = "round " + round;
+            MyParser eager = new MyParser();
+            assertTrue(eager.parse(text), message);
+            for (boolean lexed : new boolean[] {false, true}) {
+                MyParser lazy = new MyParser();
+                lazy.setLazyBodies(true);
+                assertTrue(lexed ? lazy.parse(TokenStream.lex(CharSource.of(text))) : lazy.parse(text), message);
+                assertEquals(TestPrograms.sexpr(eager.getAst().getRoot()), TestPrograms.sexpr(lazy.getAst().getRoot()),
+                        message);
+            }
+        }
+    }
+
+    @Test
+    void errorsInBodiesAreFoundByTheFirstParse() {
+        Random random = new Random(16);
+        for (int round = 0; round < 300; round++) {
+            String text = TestPrograms.edit(random, TestPrograms.generator(random, 6, 40, 4).generate(),
+                    TestPrograms.ERRORS, 3, true);
+            for (boolean recovery : new boolean[] {false, true}) {
+                String message = "round " + round + " recovery " + recovery + "\n" + text;
+                MyParser eager = new MyParser();
+                eager.setRecovery(recovery);
+                MyParser lazy = new MyParser();
+                lazy.setRecovery(recovery);
+                lazy.setLazyBodies(true);
+                assertEquals(eager.parse(text), lazy.parse(text), message);
+                assertEquals(eager.getDiagnostics().toString(), lazy.getDiagnostics().toString(), message);
+                assertEquals(TestPrograms.sexpr(eager.getAst().getRoot()), TestPrograms.sexpr(lazy.getAst().getRoot()),
+                        message); // recovered bodies parse the same later
+            }
+        }
+    }
+
+    @Test
+    void onlyBodiesThatAreReadAreParsed() {
+        String text = "declare x\n declare y\n set y = 1\n"
+                + " if x = y then\n if x = x then\n print x\n endif\n endif\n"
+                + " if x = x then\n if y = x then\n print y\n endif\n print x\n endif";
+        MyParser parser = new MyParser();
+        parser.setLazyBodies(true);
+        assertTrue(parser.parse(text));
+        AbstractSyntaxTree.NodeProgram program = parser.getAst().getRoot();
+        AbstractSyntaxTree.NodeIf first = (AbstractSyntaxTree.NodeIf) program.stmts.stmts.get(1);
+        AbstractSyntaxTree.NodeIf second = (AbstractSyntaxTree.NodeIf) program.stmts.stmts.get(2);
+        assertFalse(first.isParsed());
+        assertFalse(second.isParsed());
+        AbstractSyntaxTree.NodeStmts body = second.getStmts();
+        assertTrue(second.isParsed());
+        assertFalse(first.isParsed()); // reading one body leaves the others alone
+        assertFalse(((AbstractSyntaxTree.NodeIf) body.stmts.get(0)).isParsed()); // nested bodies are lazy too
+        assertEquals("(stmts (if y x (stmts (print y))) (print x))", TestPrograms.sexpr(body));
+        OutputBuffer out = new OutputBuffer();
+        Interpreter interpreter = new Interpreter(program); // resolving reads every body
+        interpreter.run(new int[interpreter.getSlots()], out);
+        assertTrue(first.isParsed());
+        assertEquals("0\n", out.toString());
+    }
+
+    @Test
+    void sourcesReadOnceAreParsedEagerly() {
+        String text = "declare x\n if x = x then\n print x\n endif";
+        MyParser read = new MyParser();
+        read.setLazyBodies(true);
+        assertTrue(read.parse(CharSource.of(new StringReader(text))));
+        assertTrue(((AbstractSyntaxTree.NodeIf) read.getAst().getRoot().stmts.stmts.get(0)).isParsed());
+        MyParser pipelined = new MyParser();
+        pipelined.setLazyBodies(true);
+        pipelined.setPipelined(true);
+        assertTrue(pipelined.parse(text));
+        assertTrue(((AbstractSyntaxTree.NodeIf) pipelined.getAst().getRoot().stmts.stmts.get(0)).isParsed());
+    }
+}
@@ -0,0 +1,91 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A sum parsed into a NodeSum with its adjacent literals folded must evaluate like the unfolded sum
+ * of its operands, overflow included
+ */
+class NodeSumTest {
+    private static final String[] NAMES = {"a", "b", "c"};
+
+    @Test
+    void foldedSumsEvaluateLikeTheOperands() {
+        Random random = new Random(10);
+        for (int round = 0; round < 500; round++) {
+            int[] frame = {random.nextInt(), random.nextInt(5), random.nextInt()};
+            StringBuilder text = new StringBuilder("declare a\ndeclare b\ndeclare c\ncalc a = ");
+            int expected = 0;
+            int operands = 1 + random.nextInt(8);
+            for (int i = 0; i < operands; i++) {
+                if (i > 0) {
+                    text.append(" + ");
+                }
+                if (random.nextInt(3) == 0) {
+                    int slot = random.nextInt(NAMES.length);
+                    text.append(NAMES[slot]);
+                    expected += frame[slot];
+                } else {
+                    int literal = random.nextBoolean() ? random.nextInt(10) : random.nextInt(Integer.MAX_VALUE);
+                    text.append(literal);
+                    expected += literal; // overflows like the interpreter
+                }
+            }
+            MyParser parser = new MyParser();
+            assertTrue(parser.parse(text.toString()), text.toString());
+            AbstractSyntaxTree.NodeProgram program = parser.getAst().getRoot();
+            AbstractSyntaxTree.NodeExpr expr = ((AbstractSyntaxTree.NodeCalc) program.stmts.stmts.get(0)).expr;
+            if (expr instanceof AbstractSyntaxTree.NodeSum sum) {
+                for (int i = 1; i < sum.operands.length; i++) {
+                    assertFalse(sum.operands[i - 1] instanceof AbstractSyntaxTree.NodeIntLiteral
+                            && sum.operands[i] instanceof AbstractSyntaxTree.NodeIntLiteral, text.toString());
+                }
+            }
+            new Interpreter(program).run(frame, new OutputBuffer());
+            assertEquals(expected, frame[0], text.toString());
+        }
+    }
+
+    @Test
+    void foldingBuildsNewLiterals() {
+        MyParser parser = new MyParser();
+        assertTrue(parser.parse("declare x\n calc x = x + 1 + 2 + x + 3\n calc x = 4 + 5"));
+        AbstractSyntaxTree.NodeProgram program = parser.getAst().getRoot();
+        AbstractSyntaxTree.NodeSum sum = assertInstanceOf(AbstractSyntaxTree.NodeSum.class,
+                ((AbstractSyntaxTree.NodeCalc) program.stmts.stmts.get(0)).expr);
+        assertEquals(4, sum.operands.length);
+        assertEquals(3, ((AbstractSyntaxTree.NodeIntLiteral) sum.operands[1]).intLiteral);
+        assertEquals(3, ((AbstractSyntaxTree.NodeIntLiteral) sum.operands[3]).intLiteral);
+        AbstractSyntaxTree.NodeExpr literal = ((AbstractSyntaxTree.NodeCalc) program.stmts.stmts.get(1)).expr;
+        assertEquals(9, assertInstanceOf(AbstractSyntaxTree.NodeIntLiteral.class, literal).intLiteral);
+        assertEquals("(program (decls x) (stmts (calc x (+ x 3 x 3)) (calc x 9)))", TestPrograms.sexpr(program));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void nodePlusIsAFlatSum() {
+        AbstractSyntaxTree ast = new AbstractSyntaxTree();
+        AbstractSyntaxTree.NodeDecls decls = ast.new NodeDecls();
+        decls.addDecl(ast.new NodeId("x"));
+        AbstractSyntaxTree.NodePlus plus = ast.new NodePlus(ast.new NodeId("x"),
+                ast.new NodePlus(ast.new NodeIntLiteral(2),
+                        ast.new NodePlus(ast.new NodeId("x"), ast.new NodeIntLiteral(5))));
+        assertEquals(4, plus.operands.length);
+        AbstractSyntaxTree.NodeStmts stmts = ast.new NodeStmts();
+        stmts.addStmt(ast.new NodeCalc(ast.new NodeId("x"), plus));
+        AbstractSyntaxTree.NodeProgram program = ast.new NodeProgram(decls, stmts);
+        int[] frame = {10};
+        new Interpreter(program).run(frame, new OutputBuffer());
+        assertEquals(27, frame[0]);
+        int[] compiled = {10};
+        JitCompiler.compile(program).run(compiled, new OutputBuffer());
+        assertEquals(27, compiled[0]);
+    }
+}
@@ -0,0 +1,59 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Optimized register code must print what the interpreter prints and execute as many statements,
+ * with every subset of the passes
+ */
+class OptimizerTest {
+    @Test
+    void everySubsetOfPassesKeepsTheOutput() {
+        Random random = new Random(23);
+        Optimizer.Pass[] passes = Optimizer.Pass.values();
+        for (int round = 0; round < 300; round++) {
+            String text = TestPrograms.runnable(random, round, 6, 60).generate();
+            MyParser parser = new MyParser();
+            assertTrue(parser.parse(text), text);
+            AbstractSyntaxTree.NodeProgram program = parser.getAst().getRoot();
+            Interpreter interpreter = new Interpreter(program);
+            int[] initial = new int[interpreter.getSlots()];
+            for (int i = 0; i < initial.length; i++) {
+                initial[i] = random.nextInt(3) == 0 ? random.nextInt(1000) : random.nextInt(3); // equal values take ifs
+            }
+            int[] expected = initial.clone();
+            OutputBuffer expectedOut = new OutputBuffer();
+            int executed = interpreter.run(expected, expectedOut);
+            for (int mask = 0; mask < 1 << passes.length; mask++) {
+                for (boolean keep : new boolean[] {false, true}) {
+                    SsaProgram ssa = SsaProgram.build(program);
+                    int size = ssa.size();
+                    Optimizer optimizer = new Optimizer();
+                    optimizer.setKeepVariables(keep);
+                    for (Optimizer.Pass pass : passes) {
+                        optimizer.setEnabled(pass, (mask >> pass.ordinal() & 1) != 0);
+                    }
+                    int removed = optimizer.optimize(ssa);
+                    String message = "round " + round + " passes " + mask + (keep ? " keeping variables\n" : "\n") + text;
+                    int sum = 0;
+                    for (Optimizer.Pass pass : passes) {
+                        sum += optimizer.getRemoved(pass);
+                    }
+                    assertEquals(removed, sum, message);
+                    assertEquals(size - removed, ssa.size(), message);
+                    int[] frame = initial.clone();
+                    OutputBuffer out = new OutputBuffer();
+                    assertEquals(executed, new RegisterVM(ssa.lower()).run(frame, out), message);
+                    assertEquals(expectedOut.toString(), out.toString(), message);
+                    assertArrayEquals(keep ? expected : initial, frame, message); // only kept variables are written back
+                }
+            }
+        }
+    }
+}
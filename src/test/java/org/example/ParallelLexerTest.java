@@ -0,0 +1,53 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.InputMismatchException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A ParallelLexer must give the tokens, symbol ids and first lexical error of sequential lexing,
+ * wherever the chunks are cut
+ */
+class ParallelLexerTest {
+    @Test
+    void generatedProgramsMatchSequential() {
+        Random random = new Random(20);
+        for (int round = 0; round < 500; round++) {
+            String program = TestPrograms.edit(random, TestPrograms.generator(random, 30, 200, 3).generate(),
+                    TestPrograms.LEXICAL_ERRORS, 4, true);
+            CharSource source = random.nextBoolean() ? CharSource.of(program) : CharSource.of(program.toCharArray());
+            ParallelLexer lexer = new ParallelLexer(2 + random.nextInt(3), 1 + random.nextInt(40)); // tiny chunks
+            String message = "round " + round + "\n" + program;
+            TokenStream sequential;
+            try {
+                sequential = TokenStream.lex(source);
+            } catch (InputMismatchException e) {
+                assertEquals(e.getMessage(), error(lexer, source), message);
+                continue;
+            }
+            TokenStream parallel = lexer.lex(source);
+            assertEquals(sequential.size(), parallel.size(), message);
+            for (int i = 0; i < sequential.size(); i++) {
+                assertEquals(sequential.kind(i), parallel.kind(i), message);
+                assertEquals(sequential.start(i), parallel.start(i), message);
+                assertEquals(sequential.length(i), parallel.length(i), message);
+                assertEquals(sequential.intValue(i), parallel.intValue(i), message);
+                assertEquals(sequential.symbol(i), parallel.symbol(i), message);
+                assertEquals(sequential.text(i), parallel.text(i), message);
+            }
+            assertEquals(sequential.getSymbolPool().size(), parallel.getSymbolPool().size(), message);
+        }
+    }
+
+    private static String error(ParallelLexer lexer, CharSource source) {
+        try {
+            lexer.lex(source);
+            return null;
+        } catch (InputMismatchException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.InputMismatchException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A ParallelParser must give the result, AST and diagnostics of a sequential parse, from tokens and from text
+ */
+class ParallelParserTest {
+    @Test
+    void generatedProgramsMatchSequential() {
+        Random random = new Random(21);
+        for (int round = 0; round < 500; round++) {
+            String program = TestPrograms.edit(random, TestPrograms.generator(random, 10, 120, 4).generate(),
+                    TestPrograms.SYNTAX_ERRORS, 4, true);
+            TokenStream tokens;
+            try {
+                tokens = TokenStream.lex(CharSource.of(program));
+            } catch (InputMismatchException e) {
+                continue; // a cut made an integer literal too large
+            }
+            boolean recovery = random.nextBoolean();
+            MyParser sequential = new MyParser();
+            sequential.setRecovery(recovery);
+            boolean expected = sequential.parse(tokens);
+            String tree = TestPrograms.sexpr(sequential.getAst(), sequential.getDiagnostics());
+            ParallelParser parallel = new ParallelParser(2 + random.nextInt(3), 1 + random.nextInt(30)); // tiny chunks
+            parallel.setRecovery(recovery);
+            String message = "round " + round + (recovery ? " with recovery\n" : "\n") + program;
+            assertEquals(expected, parallel.parse(tokens), message);
+            assertEquals(tree, TestPrograms.sexpr(parallel.getAst(), parallel.getDiagnostics()), message);
+            assertEquals(expected, parallel.parse(CharSource.of(program)), message);
+            assertEquals(tree, TestPrograms.sexpr(parallel.getAst(), parallel.getDiagnostics()), message);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A listener must see every token the parser matches, every error and the end of the parse, the same way
+ * whichever source the parser reads
+ */
+class ParseListenerTest {
+    @Test
+    void matchedTokensAreTheProgram() {
+        Random random = new Random(5);
+        for (int round = 0; round < 100; round++) {
+            String text = TestPrograms.runnable(random, round, 10, 100).generate();
+            TokenStream tokens = TokenStream.lex(CharSource.of(text));
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < tokens.size(); i++) {
+                expected.add("match " + tokens.kind(i) + " " + tokens.text(i));
+            }
+            expected.add("match SCANEOF "); // program() matches the end and parse() matches it again
+            expected.add("finished true");
+            Recorder recorder = new Recorder();
+            MyParser parser = new MyParser();
+            parser.setListener(recorder);
+            assertTrue(parser.parse(text), text);
+            assertEquals(expected, recorder.events, "round " + round);
+        }
+    }
+
+    @Test
+    void everySourceReportsTheSameEvents() {
+        Random random = new Random(5);
+        for (int round = 0; round < 200; round++) {
+            String text = TestPrograms.edit(random, TestPrograms.generator(random, 6, 40, 3).generate(),
+                    TestPrograms.ERRORS, 4, true);
+            for (boolean recovery : new boolean[] {false, true}) {
+                String message = "round " + round + " recovery " + recovery + "\n" + text;
+                List<String> scanned = events(recovery, parser -> parser.parse(text));
+                TokenStream tokens = lex(text);
+                if (tokens != null) { // a lexical error leaves nothing to parse
+                    assertEquals(scanned, events(recovery, parser -> parser.parse(tokens)), message);
+                }
+                assertEquals(scanned, events(recovery, parser -> {
+                    parser.setPipelined(true);
+                    return parser.parse(text);
+                }), message);
+                assertEquals(scanned, events(recovery, parser -> parser.validate(CharSource.of(text)) == null),
+                        message);
+            }
+        }
+    }
+
+    @Test
+    void counterAddsUpTheEvents() {
+        Random random = new Random(5);
+        ParseCounter counter = new ParseCounter();
+        Recorder recorder = new Recorder();
+        int failures = 0;
+        for (int round = 0; round < 100; round++) {
+            String text = TestPrograms.edit(random, TestPrograms.generator(random, 6, 40, 3).generate(),
+                    TestPrograms.ERRORS, 3, true);
+            MyParser parser = new MyParser();
+            parser.setRecovery(round % 2 == 0);
+            parser.setListener(counter);
+            boolean counted = parser.parse(text);
+            parser.setListener(recorder);
+            assertEquals(counted, parser.parse(text));
+            failures += counted ? 0 : 1;
+        }
+        assertEquals(100, counter.getParses());
+        assertEquals(failures, counter.getFailures());
+        assertEquals(count(recorder.events, "match "), counter.getMatched());
+        assertEquals(count(recorder.events, "mismatch "), counter.getMismatched());
+        assertEquals(count(recorder.events, "error "), counter.getErrors());
+        long byToken = 0;
+        for (MyScanner.TOKEN token : MyScanner.TOKEN.values()) {
+            assertEquals(count(recorder.events, "match " + token + " "), counter.getMatched(token), token.toString());
+            byToken += counter.getMatched(token);
+        }
+        assertEquals(counter.getMatched(), byToken);
+    }
+
+    @Test
+    void tracerWritesOneLinePerEvent() {
+        ParseTracer tracer = new ParseTracer();
+        MyParser parser = new MyParser();
+        parser.setListener(tracer);
+        assertTrue(parser.parse("declare x\n print x"));
+        assertFalse(parser.parse("print"));
+        assertEquals("The tokens matched! Token: DECLARE, Buffer: declare\n"
+                + "The tokens matched! Token: ID, Buffer: x\n"
+                + "The tokens matched! Token: PRINT, Buffer: print\n"
+                + "The tokens matched! Token: ID, Buffer: x\n"
+                + "The tokens matched! Token: SCANEOF, Buffer: \n"
+                + "The tokens matched! Token: SCANEOF, Buffer: \n"
+                + "parsed successfully\n"
+                + "The tokens matched! Token: PRINT, Buffer: print\n"
+                + "The tokens do not match, expected: ID, received: SCANEOF\n"
+                + "Parse Error: " + parser.getDiagnostics().get(0).getMessage() + "\n"
+                + "Received: SCANEOF, Buffer: \n"
+                + "parsing failed\n", tracer.toString());
+    }
+
+    private static List<String> events(boolean recovery, Parse parse) {
+        Recorder recorder = new Recorder();
+        MyParser parser = new MyParser();
+        parser.setRecovery(recovery);
+        parser.setListener(recorder);
+        parse.run(parser);
+        return recorder.events;
+    }
+
+    private static TokenStream lex(String text) {
+        try {
+            return TokenStream.lex(CharSource.of(text));
+        } catch (InputMismatchException e) {
+            return null;
+        }
+    }
+
+    private static long count(List<String> events, String prefix) {
+        return events.stream().filter(event -> event.startsWith(prefix)).count();
+    }
+
+    private interface Parse {
+        boolean run(MyParser parser);
+    }
+
+    /**
+     * Listener that keeps every event as a line of text
+     */
+    private static final class Recorder implements ParseListener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void tokenMatched(MyScanner.TOKEN token, CharSequence text) {
+            events.add("match " + token + " " + text);
+        }
+
+        @Override
+        public void tokenMismatched(MyScanner.TOKEN expected, MyScanner.TOKEN received) {
+            events.add("mismatch " + expected + " " + received);
+        }
+
+        @Override
+        public void error(String message, MyScanner.TOKEN received, CharSequence text) {
+            events.add("error " + message + " " + received + " " + text);
+        }
+
+        @Override
+        public void finished(boolean success) {
+            events.add("finished " + success);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.StringReader;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A pipelined parse must give the AST and diagnostics of a sequential parse
+ */
+class PipelinedParserTest {
+    @Test
+    void literalKeepsItsText() {
+        MyParser parser = new MyParser();
+        parser.setPipelined(true);
+        assertFalse(parser.parse(CharSource.of(new StringReader("declare x\n print 08"))));
+        assertEquals("[Parse Error at 17: Expected: ID after PRINT, Received: INTLITERAL, Buffer: 08]",
+                parser.getDiagnostics().toString());
+    }
+
+    @Test
+    void generatedProgramsMatchSequential() {
+        Random random = new Random(290);
+        MyParser pipelined = new MyParser();
+        pipelined.setPipelined(true);
+        for (int round = 0; round < 300; round++) {
+            ProgramGenerator generator = TestPrograms.generator(random, 10, round % 50 == 0 ? 20000 : 200, 4);
+            String program = TestPrograms.edit(random, generator.generate(), TestPrograms.ERRORS, 4, false);
+            boolean recovery = random.nextBoolean();
+            MyParser sequential = new MyParser();
+            sequential.setRecovery(recovery);
+            boolean expected = sequential.parse(program);
+            pipelined.setRecovery(recovery);
+            boolean reader = random.nextBoolean();
+            boolean actual = reader ? pipelined.parse(CharSource.of(new StringReader(program)))
+                    : pipelined.parse(program);
+            String message = "round " + round + (reader ? " from a Reader" : " from a String");
+            assertEquals(expected, actual, message);
+            assertEquals(TestPrograms.sexpr(sequential.getAst(), sequential.getDiagnostics()),
+                    TestPrograms.sexpr(pipelined.getAst(), pipelined.getDiagnostics()), message);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * With panic mode recovery the parser must report every error in source order, starting with the one a
+ * parse without recovery stops at, and keep the statements around them
+ */
+class RecoveryTest {
+    private static final String[] BROKEN = {"print 5", "set", "calc va = va +",
+            "set va = va", "calc = 3", "endif"}; // each starts at a token recovery stops at
+
+    @Test
+    void everyErrorIsReported() {
+        MyParser parser = new MyParser();
+        parser.setRecovery(true);
+        assertFalse(parser.parse("declare x\n print 5\n set x = 3\n calc x = x +\n print x\n endif\n declare y\n"
+                + " print $ x\n if x = then print x endif\n print x"));
+        List<String> errors = new ArrayList<>();
+        for (ParseException e : parser.getDiagnostics()) {
+            errors.add(e.toString());
+        }
+        assertEquals(List.of("Parse Error at 17: Expected: ID after PRINT, Received: INTLITERAL, Buffer: 5",
+                "Parse Error at 45: Expected: ID or INTLITERAL, Received: PRINT, Buffer: print",
+                "Parse Error at 54: Expected: SCANEOF, Received: ENDIF, Buffer: endif",
+                "Parse Error at 61: Expected: Statements or ENDIF or SCANEOF, Received: DECLARE, Buffer: declare",
+                "Parse Error at 78: No match found, Buffer: $",
+                "Parse Error at 90: Expected: ID after EQUALS in IF, Received: THEN, Buffer: then",
+                "Parse Error at 103: Expected: SCANEOF, Received: ENDIF, Buffer: endif"), errors);
+        assertEquals("(program (decls x) (stmts (set x 3) (print x) (print x) (print x) (print x)))",
+                TestPrograms.sexpr(parser.getAst().getRoot()));
+    }
+
+    @Test
+    void firstErrorIsTheOneWithoutRecovery() {
+        Random random = new Random(6);
+        for (int round = 0; round < 500; round++) {
+            String text = TestPrograms.edit(random, TestPrograms.generator(random, 6, 40, 4).generate(),
+                    TestPrograms.ERRORS, 5, true);
+            MyParser stopping = new MyParser();
+            MyParser recovering = new MyParser();
+            recovering.setRecovery(true);
+            boolean valid = stopping.parse(text);
+            String message = "round " + round + "\n" + text;
+            assertEquals(valid, recovering.parse(text), message);
+            if (valid) {
+                assertTrue(recovering.getDiagnostics().isEmpty(), message);
+                assertEquals(TestPrograms.sexpr(stopping.getAst().getRoot()),
+                        TestPrograms.sexpr(recovering.getAst().getRoot()), message);
+                continue;
+            }
+            assertEquals(1, stopping.getDiagnostics().size(), message);
+            assertEquals(stopping.getDiagnostics().get(0).toString(), recovering.getDiagnostics().get(0).toString(),
+                    message);
+            long position = -1;
+            for (ParseException e : recovering.getDiagnostics()) {
+                assertTrue(e.getPosition() >= position, message); // in source order
+                position = e.getPosition();
+            }
+        }
+    }
+
+    @Test
+    void brokenStatementsAreLeftOut() {
+        Random random = new Random(6);
+        for (int round = 0; round < 300; round++) {
+            ProgramGenerator generator = new ProgramGenerator(round);
+            generator.setDeclarations(1 + random.nextInt(5));
+            generator.setStatements(1 + random.nextInt(30));
+            generator.setIfs(0, 1); // one statement per line
+            String[] lines = generator.generate().split("\n");
+            StringBuilder broken = new StringBuilder();
+            StringBuilder kept = new StringBuilder();
+            int errors = 0;
+            for (String line : lines) {
+                boolean statement = !line.startsWith("declare");
+                if (statement && random.nextInt(4) == 0) {
+                    broken.append(BROKEN[random.nextInt(BROKEN.length)]).append('\n');
+                    errors++;
+                } else {
+                    broken.append(line).append('\n');
+                    kept.append(line).append('\n');
+                }
+            }
+            MyParser recovering = new MyParser();
+            recovering.setRecovery(true);
+            MyParser clean = new MyParser();
+            String message = "round " + round + "\n" + broken;
+            assertEquals(errors == 0, recovering.parse(broken.toString()), message);
+            assertEquals(errors, recovering.getDiagnostics().size(), message);
+            assertTrue(clean.parse(kept.toString()), message);
+            assertEquals(TestPrograms.sexpr(clean.getAst().getRoot()), TestPrograms.sexpr(recovering.getAst().getRoot()),
+                    message);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Register code read back must be the code written, and anything else must be rejected with an IOException
+ */
+class RegisterCodeTest {
+    @Test
+    void writtenCodeReadsBack() throws IOException {
+        Random random = new Random(9);
+        for (int round = 0; round < 100; round++) {
+            AbstractSyntaxTree.NodeProgram program = parse(TestPrograms.runnable(random, round, 6, 60).generate());
+            RegisterCode[] codes = {RegisterCode.lower(program), SsaProgram.build(program).lower()};
+            for (RegisterCode code : codes) {
+                RegisterCode read = read(write(code));
+                String message = "round " + round + "\n" + code.disassemble();
+                assertEquals(code.slots, read.slots, message);
+                assertEquals(code.registers, read.registers, message);
+                assertArrayEquals(code.code, read.code, message);
+                OutputBuffer expected = new OutputBuffer();
+                OutputBuffer actual = new OutputBuffer();
+                assertEquals(new RegisterVM(code).run(new int[code.slots], expected),
+                        new RegisterVM(read).run(new int[read.slots], actual), message);
+                assertEquals(expected.toString(), actual.toString(), message);
+            }
+        }
+    }
+
+    @Test
+    void largeCodeReadsBack() throws IOException {
+        ProgramGenerator generator = new ProgramGenerator(9);
+        generator.setStatements(100_000); // code spans several read blocks
+        RegisterCode code = RegisterCode.lower(parse(generator.generate()));
+        assertArrayEquals(code.code, read(write(code)).code);
+    }
+
+    @Test
+    void truncatedCodeIsCorrupt() throws IOException {
+        byte[] bytes = write(RegisterCode.lower(parse("declare x\n set x = 5\n calc x = x + 1\n print x")));
+        for (int length = 8; length < bytes.length; length++) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            IOException e = assertThrows(IOException.class, () -> read(truncated));
+            assertEquals("Corrupt register code", e.getMessage(), "length " + length);
+        }
+    }
+
+    @Test
+    void corruptHeaderIsRejected() throws IOException {
+        byte[] bytes = write(RegisterCode.lower(parse("declare x\n set x = 5\n print x")));
+        int[][] headers = { // slots, registers, code length
+                {-1, 2, 7}, {1, 0, 7}, {1, 1 << 30, 7}, {1, Integer.MAX_VALUE, 7}, {1, 2, -1},
+                {1, 2, Integer.MIN_VALUE}, {1, 2, Integer.MAX_VALUE}, {1, 2, Integer.MAX_VALUE / 4}, {1, 2, 1 << 28},
+                {1, 2, 6}};
+        for (int[] header : headers) {
+            ByteBuffer corrupt = ByteBuffer.wrap(bytes.clone());
+            corrupt.putInt(8, header[0]).putInt(12, header[1]).putInt(16, header[2]);
+            IOException e = assertThrows(IOException.class, () -> read(corrupt.array()));
+            assertEquals("Corrupt register code", e.getMessage(), Arrays.toString(header));
+        }
+    }
+
+    @Test
+    void randomBytesNeverEscapeAsRuntimeExceptions() throws IOException {
+        byte[] bytes = write(RegisterCode.lower(parse("declare x\n declare y\n set x = 5\n if x = y then\n"
+                + " calc y = x + y + 3\n endif\n print y")));
+        Random random = new Random(9);
+        for (int round = 0; round < 2000; round++) {
+            byte[] corrupt = bytes.clone();
+            corrupt[8 + random.nextInt(corrupt.length - 8)] = (byte) random.nextInt(256); // after magic and version
+            try {
+                RegisterCode code = read(corrupt);
+                assertTrue(code.registers >= code.slots); // a corruption that happens to be valid code
+            } catch (IOException e) {
+                assertEquals("Corrupt register code", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    void otherDataIsNotRegisterCode() throws IOException {
+        byte[] bytes = write(RegisterCode.lower(parse("declare x\n print x")));
+        bytes[0] ^= 1;
+        assertEquals("Not register code", assertThrows(IOException.class, () -> read(bytes)).getMessage());
+    }
+
+    private static AbstractSyntaxTree.NodeProgram parse(String text) {
+        MyParser parser = new MyParser();
+        assertTrue(parser.parse(text), text);
+        return parser.getAst().getRoot();
+    }
+
+    private static byte[] write(RegisterCode code) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        code.write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static RegisterCode read(byte[] bytes) throws IOException {
+        return RegisterCode.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+}
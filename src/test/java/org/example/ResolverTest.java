@@ -0,0 +1,174 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Resolver against a plain map from names to slots, for trees whose NodeIds come from the scanner's
+ * SymbolPool, from other pools and from no pool at all
+ */
+class ResolverTest {
+    private static final String[] NAMES = {"a", "b", "c", "d", "e", "zz", "yy"}; // zz and yy are rarely declared
+
+    @Test
+    void parsedPrograms() {
+        Random random = new Random(19);
+        for (int round = 0; round < 300; round++) {
+            MyParser parser = new MyParser();
+            parser.setLazyBodies(round % 2 == 0); // lazy bodies are parsed with pools of their own
+            assertTrue(parser.parse(program(random)));
+            check(parser.getAst().getRoot());
+        }
+    }
+
+    @Test
+    void incrementalPrograms() {
+        Random random = new Random(190);
+        for (int round = 0; round < 100; round++) {
+            String text = program(random);
+            IncrementalParser parser = new IncrementalParser(text.substring(0, text.length() / 2));
+            parser.edit(text.length() / 2, 0, text.substring(text.length() / 2));
+            assertTrue(parser.getDiagnostics().isEmpty());
+            check(parser.getProgram()); // a tree without a pool, its nodes come from several parsers
+        }
+    }
+
+    @Test
+    void treePoolIsOnlyRead() {
+        Random random = new Random(191);
+        for (int round = 0; round < 100; round++) {
+            MyParser parser = new MyParser();
+            parser.setLazyBodies(round % 2 == 0);
+            assertTrue(parser.parse(program(random)));
+            AbstractSyntaxTree ast = parser.getAst();
+            AbstractSyntaxTree.NodeProgram program = ast.getRoot();
+            program.stmts.addStmt(ast.new NodePrint(ast.new NodeId("fresh"))); // a name the scanner never saw
+            program.decls.addDecl(ast.new NodeId("other"));
+            SymbolPool pool = ast.getSymbolPool();
+            int size = pool.size();
+            Resolver resolver = new Resolver();
+            int slots = resolver.resolve(program);
+            assertEquals(size, pool.size());
+            List<String> errors = List.copyOf(resolver.getErrors());
+            assertEquals(slots, resolver.resolve(program)); // resolving again gives the same result
+            assertEquals(errors, resolver.getErrors());
+            assertEquals(size, pool.size());
+            check(program);
+        }
+    }
+
+    @Test
+    void builtTree() {
+        AbstractSyntaxTree ast = new AbstractSyntaxTree();
+        AbstractSyntaxTree.NodeDecls decls = ast.new NodeDecls();
+        decls.addDecl(ast.new NodeId("x"));
+        decls.addDecl(ast.new NodeId("y"));
+        decls.addDecl(ast.new NodeId("x"));
+        AbstractSyntaxTree.NodeStmts stmts = ast.new NodeStmts();
+        stmts.addStmt(ast.new NodePrint(ast.new NodeId("y")));
+        stmts.addStmt(ast.new NodePrint(ast.new NodeId("w")));
+        stmts.addStmt(ast.new NodePrint(ast.new NodeId("w")));
+        check(ast.new NodeProgram(decls, stmts));
+    }
+
+    /**
+     * Resolves a program and compares every slot, error and warning with the map
+     */
+    private static void check(AbstractSyntaxTree.NodeProgram program) {
+        Resolver resolver = new Resolver();
+        int slots = resolver.resolve(program);
+        Map<String, Integer> map = new HashMap<>();
+        List<String> warnings = new ArrayList<>();
+        for (AbstractSyntaxTree.NodeId id : program.decls.decls) {
+            if (map.putIfAbsent(id.name, map.size()) != null) {
+                warnings.add("Duplicate declaration: " + id.name);
+            }
+            assertEquals(map.get(id.name), id.slot, id.name);
+        }
+        List<AbstractSyntaxTree.NodeId> uses = new ArrayList<>();
+        uses(program.stmts, uses);
+        Set<String> errors = new LinkedHashSet<>();
+        for (AbstractSyntaxTree.NodeId id : uses) {
+            assertEquals(map.getOrDefault(id.name, -1), id.slot, id.name);
+            if (!map.containsKey(id.name)) {
+                errors.add("Undeclared variable: " + id.name);
+            }
+        }
+        assertEquals(map.size(), slots);
+        assertEquals(List.copyOf(errors), resolver.getErrors());
+        assertEquals(warnings, resolver.getWarnings());
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            assertEquals(entry.getKey(), resolver.getName(entry.getValue()));
+        }
+    }
+
+    /**
+     * Lists the NodeIds the statements use, in the order the Resolver visits them
+     */
+    private static void uses(AbstractSyntaxTree.NodeStmts stmts, List<AbstractSyntaxTree.NodeId> uses) {
+        for (AbstractSyntaxTree.NodeStmt stmt : stmts.stmts) {
+            if (stmt instanceof AbstractSyntaxTree.NodeSet set) {
+                uses.add(set.id);
+            } else if (stmt instanceof AbstractSyntaxTree.NodeCalc calc) {
+                uses.add(calc.id);
+                if (calc.expr instanceof AbstractSyntaxTree.NodeId id) {
+                    uses.add(id);
+                } else if (calc.expr instanceof AbstractSyntaxTree.NodeSum sum) {
+                    for (AbstractSyntaxTree.NodeExpr operand : sum.operands) {
+                        if (operand instanceof AbstractSyntaxTree.NodeId id) {
+                            uses.add(id);
+                        }
+                    }
+                }
+            } else if (stmt instanceof AbstractSyntaxTree.NodePrint print) {
+                uses.add(print.id);
+            } else if (stmt instanceof AbstractSyntaxTree.NodeIf nodeIf) {
+                uses.add(nodeIf.lhs);
+                uses.add(nodeIf.rhs);
+                uses(nodeIf.getStmts(), uses);
+            }
+        }
+    }
+
+    /**
+     * Writes a random valid program with duplicate declarations and undeclared variables
+     */
+    private static String program(Random random) {
+        StringBuilder out = new StringBuilder();
+        for (int i = random.nextInt(8); i > 0; i--) {
+            out.append("declare ").append(NAMES[random.nextInt(5)]).append('\n');
+        }
+        statements(random, out, 1 + random.nextInt(20), 3);
+        return out.toString();
+    }
+
+    private static void statements(Random random, StringBuilder out, int count, int depth) {
+        for (int i = 0; i < count; i++) {
+            switch (random.nextInt(depth > 0 ? 4 : 3)) {
+                case 0 -> out.append("print ").append(name(random)).append('\n');
+                case 1 -> out.append("set ").append(name(random)).append(" = ").append(random.nextInt(9)).append('\n');
+                case 2 -> out.append("calc ").append(name(random)).append(" = ").append(name(random)).append(" + ")
+                        .append(random.nextInt(9)).append(" + ").append(name(random)).append('\n');
+                default -> {
+                    out.append("if ").append(name(random)).append(" = ").append(name(random)).append(" then\n");
+                    statements(random, out, random.nextInt(4), depth - 1);
+                    out.append("endif\n");
+                }
+            }
+        }
+    }
+
+    private static String name(Random random) {
+        return NAMES[random.nextInt(random.nextInt(8) == 0 ? NAMES.length : 5)];
+    }
+}
@@ -0,0 +1,108 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A stream is read in constant memory however long it is, here past the 2^31 characters an int position holds
+ */
+class StreamingRunnerTest {
+    private static final int LINE = 4096; // characters per generated line
+    private static final long LINES = (1L << 31) / LINE + 16; // lines of the stream, a little over 2^31 characters
+    private static final String TAIL = "print x\nprint 08\n"; // the last statement has a syntax error
+
+    @Test
+    void streamLongerThanAnInt() {
+        OutputBuffer out = new OutputBuffer();
+        StreamingRunner runner = new StreamingRunner(out);
+        assertFalse(runner.run(CharSource.of(new ProgramReader())));
+        assertEquals(LINES, runner.getStatements());
+        assertEquals(LINES - 1 + "\n", out.toString());
+        ParseException error = runner.getDiagnostics().get(0);
+        assertEquals(LINES * LINE + TAIL.indexOf("08"), error.getPosition());
+        assertEquals("08", error.getText());
+    }
+
+    @Test
+    void generatedProgramsMatchTheInterpreter() {
+        Random random = new Random(25);
+        for (int round = 0; round < 300; round++) {
+            String program = TestPrograms.generator(random, 10, 200, 4).generate();
+            if (round % 3 == 0) {
+                program = TestPrograms.edit(random, program, TestPrograms.SYNTAX_ERRORS, 4, false);
+            }
+            MyParser parser = new MyParser();
+            boolean parsed = parser.parse(program);
+            OutputBuffer out = new OutputBuffer();
+            StreamingRunner runner = new StreamingRunner(out);
+            boolean reader = random.nextBoolean();
+            boolean ran = runner.run(reader ? CharSource.of(new StringReader(program)) : CharSource.of(program));
+            String message = "round " + round + (reader ? " from a Reader\n" : " from a String\n") + program;
+            if (!parsed) {
+                assertFalse(ran, message); // unless an undeclared variable before it stopped the run first
+                if (runner.getErrors().isEmpty()) {
+                    assertEquals(parser.getDiagnostics().toString(), runner.getDiagnostics().toString(), message);
+                }
+                continue;
+            }
+            Resolver resolver = new Resolver();
+            int slots = resolver.resolve(parser.getAst().getRoot());
+            if (resolver.hasErrors()) {
+                assertFalse(ran, message);
+                assertEquals(resolver.getErrors().get(0), runner.getErrors().get(0), message);
+                continue;
+            }
+            assertTrue(ran, message);
+            OutputBuffer expected = new OutputBuffer();
+            int executed = new Interpreter(parser.getAst().getRoot(), slots).run(new int[slots], expected);
+            assertEquals(expected.toString(), out.toString(), message);
+            assertEquals(executed, runner.getExecuted(), message);
+            assertEquals(parser.getAst().getRoot().stmts.stmts.size(), runner.getStatements(), message);
+        }
+    }
+
+    /**
+     * Writes "declare x" padded to a line, LINES - 1 lines that add 1 to x padded with spaces, then the tail,
+     * without ever holding more than one line
+     */
+    private static final class ProgramReader extends Reader {
+        private final char[] first = line("declare x");
+        private final char[] body = line("calc x = x + 1");
+        private final char[] tail = TAIL.toCharArray();
+        private long position; // characters read so far
+
+        private static char[] line(String statement) {
+            char[] line = new char[LINE];
+            Arrays.fill(line, ' ');
+            statement.getChars(0, statement.length(), line, 0);
+            line[LINE - 1] = '\n';
+            return line;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            long line = position / LINE;
+            char[] text = line == 0 ? first : line < LINES ? body : tail;
+            int column = (int) (position - Math.min(line, LINES) * LINE);
+            if (column == text.length) {
+                return -1; // only the tail ends before its line does
+            }
+            int n = Math.min(length, text.length - column);
+            System.arraycopy(text, column, buffer, offset, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A SymbolPool must give each distinct name one dense id, in the order the names were first seen
+ */
+class SymbolPoolTest {
+    @Test
+    void namesGetDenseIdsInOrder() {
+        Random random = new Random(2);
+        SymbolPool pool = new SymbolPool();
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> order = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) { // grows the names and rehashes the table many times
+            String name = name(random);
+            int id = pool.intern(name);
+            Integer expected = ids.putIfAbsent(name, order.size());
+            if (expected == null) {
+                assertEquals(order.size(), id, name);
+                order.add(name);
+            } else {
+                assertEquals(expected.intValue(), id, name);
+            }
+        }
+        assertEquals(order.size(), pool.size());
+        for (int id = 0; id < order.size(); id++) {
+            assertEquals(order.get(id), pool.name(id));
+            assertSame(pool.name(id), pool.name(pool.intern(new String(order.get(id))))); // one canonical String
+            assertEquals(id, pool.find(order.get(id)));
+        }
+        assertEquals(-1, pool.find("notinterned"));
+        assertEquals(order.size(), pool.size()); // find never interns
+    }
+
+    @Test
+    void slicesOfASourceInternLikeStrings() {
+        String text = "xx alpha beta alpha alphabet alp beta";
+        SymbolPool pool = new SymbolPool();
+        int alpha = pool.intern(CharSource.of(text), 3, 8, SymbolPool.hash("alpha"));
+        assertEquals(alpha, pool.intern("alpha"));
+        assertEquals(alpha, pool.intern(CharSource.of(text), 14, 19, SymbolPool.hash("alpha")));
+        int alphabet = pool.intern(CharSource.of(text), 20, 28, SymbolPool.hash("alphabet"));
+        int alp = pool.intern(CharSource.of(text), 29, 32, SymbolPool.hash("alp"));
+        assertEquals(3, List.of(alpha, alphabet, alp).stream().distinct().count()); // prefixes are other names
+        assertEquals("alphabet", pool.name(alphabet));
+        assertEquals("alp", pool.name(alp));
+    }
+
+    @Test
+    void equalHashesStayApart() {
+        String[] names = {"Aa", "BB", "AaAa", "AaBB", "BBAa", "BBBB"}; // two groups of equal String hashes
+        assertEquals(SymbolPool.hash(names[0]), SymbolPool.hash(names[1]));
+        assertEquals(SymbolPool.hash(names[2]), SymbolPool.hash(names[5]));
+        SymbolPool pool = new SymbolPool();
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < names.length; i++) {
+                assertEquals(i, pool.intern(names[i]), names[i]);
+            }
+        }
+        assertEquals(names.length, pool.size());
+    }
+
+    @Test
+    void scannedIdsShareTheTreePool() {
+        Random random = new Random(2);
+        for (int round = 0; round < 50; round++) {
+            MyParser parser = new MyParser();
+            assertTrue(parser.parse(TestPrograms.runnable(random, round, 30, 200).generate()), "round " + round);
+            SymbolPool pool = parser.getAst().getSymbolPool();
+            assertNotNull(pool);
+            for (AbstractSyntaxTree.NodeId decl : parser.getAst().getRoot().decls.decls) {
+                assertEquals(decl.name, pool.name(decl.symbol), "round " + round);
+                assertSame(pool.name(decl.symbol), decl.name, "round " + round); // the name is not copied
+                assertEquals(decl.symbol, pool.find(decl.name), "round " + round);
+            }
+        }
+    }
+
+    private static String name(Random random) {
+        char[] chars = new char[1 + random.nextInt(4)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(8));
+        }
+        return new String(chars);
+    }
+}
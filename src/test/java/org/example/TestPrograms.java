@@ -0,0 +1,143 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random programs for the tests that compare two ways of doing the same thing: generated programs,
+ * random edits that inject errors, and a dump of the tree to compare
+ */
+final class TestPrograms {
+    static final String[] SYNTAX_ERRORS = {" if ", " endif ", " declare q ", " 5 ", " 08 ", " 007 ", " = ", " set ",
+            " then ", " print ", " calc x = ", "+"}; // pieces that lex but break the grammar
+    static final String[] LEXICAL_ERRORS = {"$", " 99999999999 ", "abc12de", "  \n\t", "", "=+"}; // and odd spacing
+    static final String[] ERRORS = concat(SYNTAX_ERRORS, LEXICAL_ERRORS);
+
+    private TestPrograms() {
+    }
+
+    /**
+     * Creates a generator for a program of random size
+     * @param random source of the size, the seed of the program is drawn from it too
+     * @param declarations upper bound of the declared variables, at least 1
+     * @param statements upper bound of the statements, exclusive
+     * @param ifDepth upper bound of the if nesting, exclusive
+     * @return the generator
+     */
+    static ProgramGenerator generator(Random random, int declarations, int statements, int ifDepth) {
+        ProgramGenerator generator = new ProgramGenerator(random.nextLong());
+        generator.setDeclarations(1 + random.nextInt(declarations));
+        generator.setStatements(random.nextInt(statements));
+        generator.setIfs(random.nextInt(ifDepth), 1 + random.nextInt(4));
+        return generator;
+    }
+
+    /**
+     * Creates a generator for a valid program of random size and mix, with at least one statement,
+     * for the tests that run what they generate
+     * @param random source of the settings
+     * @param seed seed of the program
+     * @param declarations upper bound of the declared variables, at least 1
+     * @param statements upper bound of the statements
+     * @return the generator
+     */
+    static ProgramGenerator runnable(Random random, long seed, int declarations, int statements) {
+        ProgramGenerator generator = new ProgramGenerator(seed);
+        generator.setDeclarations(1 + random.nextInt(declarations));
+        generator.setStatements(1 + random.nextInt(statements));
+        generator.setMix(random.nextInt(4), random.nextInt(4), random.nextInt(3), 1 + random.nextInt(3));
+        generator.setSumLength(1 + random.nextInt(4));
+        generator.setIfs(random.nextInt(4), 1 + random.nextInt(5));
+        return generator;
+    }
+
+    /**
+     * Applies up to a number of random edits to a text, each cutting up to 10 characters and inserting one piece
+     * @param random source of the edits
+     * @param text the text
+     * @param pieces what an edit inserts
+     * @param edits upper bound of the edits, exclusive
+     * @param cut true if edits may remove characters
+     * @return the edited text
+     */
+    static String edit(Random random, String text, String[] pieces, int edits, boolean cut) {
+        for (int i = random.nextInt(edits); i > 0; i--) {
+            text = Edit.random(random, text, pieces, cut ? 10 : 0, 1).apply(text);
+        }
+        return text;
+    }
+
+    /**
+     * Dumps a tree as an s-expression
+     * @param root root of the tree, or null after a failed parse
+     * @return the dump, or "null"
+     */
+    static String sexpr(AbstractSyntaxTree.NodeBase root) {
+        if (root == null) {
+            return "null";
+        }
+        StringBuilder out = new StringBuilder();
+        AstEmitter.sexpr(root, out);
+        return out.toString();
+    }
+
+    /**
+     * Dumps the tree of a parse and its diagnostics
+     * @param ast the tree
+     * @param diagnostics the errors of the parse
+     * @return the dump
+     */
+    static String sexpr(AbstractSyntaxTree ast, List<ParseException> diagnostics) {
+        return sexpr(ast.getRoot()) + "\n" + diagnostics;
+    }
+
+    private static String[] concat(String[] a, String[] b) {
+        String[] all = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, all, a.length, b.length);
+        return all;
+    }
+
+    /**
+     * A replacement of part of a text
+     */
+    static final class Edit {
+        final int offset; // where the edit starts
+        final int removed; // number of characters removed
+        final String inserted; // what replaces them
+
+        Edit(int offset, int removed, String inserted) {
+            this.offset = offset;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+
+        /**
+         * Picks a random edit of a text
+         * @param random source of the edit
+         * @param text the text
+         * @param pieces what the edit can insert
+         * @param removed upper bound of the removed characters
+         * @param count upper bound of the inserted pieces, an edit that removes nothing inserts at least one
+         * @return the edit
+         */
+        static Edit random(Random random, String text, String[] pieces, int removed, int count) {
+            int offset = random.nextInt(text.length() + 1);
+            int cut = removed == 0 ? 0 : random.nextInt(Math.min(removed, text.length() - offset) + 1);
+            StringBuilder inserted = new StringBuilder();
+            for (int i = Math.max(cut == 0 ? 1 : 0, random.nextInt(count + 1)); i > 0; i--) {
+                inserted.append(pieces[random.nextInt(pieces.length)]);
+            }
+            return new Edit(offset, cut, inserted.toString());
+        }
+
+        String apply(String text) {
+            return text.substring(0, offset) + inserted + text.substring(offset + removed);
+        }
+
+        @Override
+        public String toString() {
+            return "at " + offset + " removing " + removed + " inserting [" + inserted + "]";
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A TokenStream keeps tokens as values, these tests check that it still reports them as written
+ */
+class TokenStreamTest {
+    private static final String LITERALS = "declare x\n x = 007\n x = 0\n x = 10\n x = 00\n x = ١٠\n print 08 x";
+
+    @Test
+    void textIsTheSource() {
+        TokenStream tokens = TokenStream.lex(CharSource.of(LITERALS));
+        for (int i = 0; i < tokens.size(); i++) {
+            String written = LITERALS.substring((int) tokens.start(i), (int) tokens.start(i) + tokens.length(i));
+            assertEquals(written, tokens.text(i), "token " + i);
+        }
+    }
+
+    @Test
+    void parallelTextIsTheSource() {
+        TokenStream tokens = new ParallelLexer(4, 8).lex(CharSource.of(LITERALS));
+        for (int i = 0; i < tokens.size(); i++) {
+            String written = LITERALS.substring((int) tokens.start(i), (int) tokens.start(i) + tokens.length(i));
+            assertEquals(written, tokens.text(i), "token " + i);
+        }
+    }
+
+    @Test
+    void manyLiteralTextsAreKept() {
+        StringBuilder program = new StringBuilder("declare x\n");
+        for (int i = 0; i < 500; i++) {
+            program.append(i % 3 == 0 ? " x = 0" : " x = ").append(i).append('\n'); // every third is written as 0i
+        }
+        String text = program.toString();
+        for (TokenStream tokens : new TokenStream[] {TokenStream.lex(CharSource.of(text)),
+                new ParallelLexer(4, 64).lex(CharSource.of(text))}) {
+            assertEquals(167, tokens.literalCount);
+            for (int i = 0; i < tokens.size(); i++) {
+                String written = text.substring((int) tokens.start(i), (int) tokens.start(i) + tokens.length(i));
+                assertEquals(written, tokens.text(i), "token " + i);
+            }
+        }
+    }
+
+    @Test
+    void errorsMatchTheScanner() {
+        String program = "declare x\n print 08\n 007 = x\n x = 1 + 0010 then";
+        MyParser scanned = new MyParser();
+        scanned.setRecovery(true);
+        assertFalse(scanned.parse(CharSource.of(program)));
+        MyParser lexed = new MyParser();
+        lexed.setRecovery(true);
+        assertFalse(lexed.parse(TokenStream.lex(CharSource.of(program))));
+        assertEquals(scanned.getDiagnostics().toString(), lexed.getDiagnostics().toString());
+    }
+
+    @Test
+    void generatedProgramsMatchTheScanner() {
+        Random random = new Random(290);
+        for (int round = 0; round < 200; round++) {
+            String program = TestPrograms.edit(random, TestPrograms.generator(random, 100, 60, 3).generate(),
+                    TestPrograms.SYNTAX_ERRORS, 4, false); // no lexical errors, TokenStream.lex() throws them
+            MyParser scanned = new MyParser();
+            scanned.setRecovery(true);
+            scanned.parse(CharSource.of(program));
+            MyParser lexed = new MyParser();
+            lexed.setRecovery(true);
+            lexed.parse(TokenStream.lex(CharSource.of(program)));
+            assertEquals(scanned.getDiagnostics().toString(), lexed.getDiagnostics().toString(), program);
+        }
+    }
+}
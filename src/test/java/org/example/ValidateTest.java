@@ -0,0 +1,65 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.InputMismatchException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Validating a program must accept and reject exactly what parsing does, with the same errors, and build nothing
+ */
+class ValidateTest {
+    @Test
+    void validateAgreesWithParse() {
+        Random random = new Random(16);
+        for (int round = 0; round < 500; round++) {
+            String text = TestPrograms.edit(random, TestPrograms.generator(random, 6, 40, 4).generate(),
+                    TestPrograms.ERRORS, 3, true);
+            for (boolean recovery : new boolean[] {false, true}) {
+                String message = "round " + round + " recovery " + recovery + "\n" + text;
+                MyParser parsing = new MyParser();
+                parsing.setRecovery(recovery);
+                boolean valid = parsing.parse(text);
+                MyParser validating = new MyParser();
+                validating.setRecovery(recovery);
+                ParseException first = validating.validate(CharSource.of(text));
+                assertEquals(valid, first == null, message);
+                assertEquals(parsing.getDiagnostics().toString(), validating.getDiagnostics().toString(), message);
+                if (first != null) {
+                    assertEquals(parsing.getDiagnostics().get(0).toString(), first.toString(), message);
+                }
+                assertNull(validating.getAst().getRoot(), message); // nothing was built
+                TokenStream tokens = lex(text);
+                if (tokens != null) {
+                    MyParser lexed = new MyParser();
+                    lexed.setRecovery(recovery);
+                    assertEquals(valid, lexed.validate(tokens) == null, message);
+                    assertEquals(parsing.getDiagnostics().toString(), lexed.getDiagnostics().toString(), message);
+                }
+            }
+        }
+    }
+
+    @Test
+    void parserBuildsAgainAfterValidating() {
+        MyParser parser = new MyParser();
+        parser.setLazyBodies(true);
+        assertEquals("Expected: ID after PRINT", parser.validate(CharSource.of("declare x\n print 5")).getMessage());
+        assertNull(parser.validate(CharSource.of("declare x\n if x = x then\n print x\n endif")));
+        assertTrue(parser.parse("declare x\n if x = x then\n print x\n endif"));
+        assertEquals("(program (decls x) (stmts (if x x (stmts (print x)))))",
+                TestPrograms.sexpr(parser.getAst().getRoot()));
+    }
+
+    private static TokenStream lex(String text) {
+        try {
+            return TokenStream.lex(CharSource.of(text));
+        } catch (InputMismatchException e) {
+            return null; // a lexical error leaves nothing to validate
+        }
+    }
+}